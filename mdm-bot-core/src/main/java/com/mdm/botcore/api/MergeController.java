@@ -3,7 +3,12 @@ package com.mdm.botcore.api;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mdm.botcore.domain.model.MDMEntity;
 import com.mdm.botcore.domain.model.MergeCandidatePair;
+import com.mdm.botcore.domain.model.MergeGroup;
+import com.mdm.botcore.matching.BlockingMonitor;
+import com.mdm.botcore.service.MatchStatistics;
+import com.mdm.botcore.service.MatchStatisticsRegistry;
 import com.mdm.botcore.service.MergeService;
+import com.mdm.botcore.service.RuleSetManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -23,11 +28,19 @@ import java.util.stream.Collectors;
 public class MergeController {
 
     private final MergeService mergeService;
+    private final MatchStatisticsRegistry statisticsRegistry;
+    private final BlockingMonitor blockingMonitor;
+    private final RuleSetManager ruleSetManager;
     private final ObjectMapper objectMapper; // For converting Map<String, Object> to MDMEntity
 
     @Autowired
-    public MergeController(MergeService mergeService, ObjectMapper objectMapper) {
+    public MergeController(MergeService mergeService, MatchStatisticsRegistry statisticsRegistry,
+                           BlockingMonitor blockingMonitor, RuleSetManager ruleSetManager,
+                           ObjectMapper objectMapper) {
         this.mergeService = mergeService;
+        this.statisticsRegistry = statisticsRegistry;
+        this.blockingMonitor = blockingMonitor;
+        this.ruleSetManager = ruleSetManager;
         this.objectMapper = objectMapper;
     }
 
@@ -105,4 +118,74 @@ public class MergeController {
                 .map(updatedPair -> new ResponseEntity<>(updatedPair, HttpStatus.OK))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves all merge groups that are pending review.
+     * A group holds every entity connected by matched pairs, with one golden record.
+     * @return A list of MergeGroup objects.
+     */
+    @GetMapping("/groups/pending-review")
+    public ResponseEntity<List<MergeGroup>> getPendingMergeGroups() {
+        List<MergeGroup> pendingGroups = mergeService.getMergeGroupsByStatus(MergeCandidatePair.MergeStatus.PENDING_REVIEW);
+        return new ResponseEntity<>(pendingGroups, HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint for human agents to approve or reject a whole merge group (and all its pairs).
+     * @param id The ID of the MergeGroup.
+     * @param statusUpdateRequest A map containing "status" ("APPROVED" or "REJECTED") and optional "comment".
+     * @return ResponseEntity with the updated MergeGroup.
+     */
+    @PutMapping("/groups/{id}/status")
+    public ResponseEntity<MergeGroup> updateMergeGroupStatus(
+            @PathVariable Long id,
+            @RequestBody Map<String, String> statusUpdateRequest) {
+        String statusString = statusUpdateRequest.get("status");
+        String comment = statusUpdateRequest.get("comment");
+
+        if (statusString == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Status is required.");
+        }
+
+        MergeCandidatePair.MergeStatus newStatus;
+        try {
+            newStatus = MergeCandidatePair.MergeStatus.valueOf(statusString.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid status: " + statusString);
+        }
+
+        return mergeService.updateMergeGroupStatus(id, newStatus, comment)
+                .map(updatedGroup -> new ResponseEntity<>(updatedGroup, HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * Retrieves the statistics of the most recently processed batches, newest first,
+     * including the oversized blocks whose candidates were limited to the top K.
+     * @return A list of MatchStatistics objects.
+     */
+    @GetMapping("/statistics")
+    public ResponseEntity<List<MatchStatistics>> getMatchStatistics() {
+        return new ResponseEntity<>(statisticsRegistry.getRecent(), HttpStatus.OK);
+    }
+
+    /**
+     * Retrieves the latest blocking report of every exact rule: the block size histogram, the keys
+     * that exceeded the block size cap, and the learned stop keys.
+     * @return A list of BlockingReport objects, by rule name.
+     */
+    @GetMapping("/statistics/blocking")
+    public ResponseEntity<List<BlockingMonitor.BlockingReport>> getBlockingStatistics() {
+        return new ResponseEntity<>(blockingMonitor.getReports(), HttpStatus.OK);
+    }
+
+    /**
+     * Retrieves the active Drools rule version of every company and domain, with the version
+     * compiling in the background, if any, and the latest compile error.
+     * @return A list of RuleSetVersion objects, by company and domain.
+     */
+    @GetMapping("/rule-sets")
+    public ResponseEntity<List<RuleSetManager.RuleSetVersion>> getRuleSetVersions() {
+        return new ResponseEntity<>(ruleSetManager.getVersions(), HttpStatus.OK);
+    }
+}
@@ -1,18 +1,30 @@
 package com.mdm.botcore.config;
 
+import org.drools.compiler.kie.builder.impl.InternalKieModule;
+import org.drools.model.codegen.ExecutableModelProject;
 import org.kie.api.KieServices;
 import org.kie.api.builder.KieBuilder;
 import org.kie.api.builder.KieFileSystem;
-import org.kie.api.builder.KieRepository;
+import org.kie.api.builder.KieModule;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.builder.model.KieModuleModel;
 import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
 import org.kie.internal.io.ResourceFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
 
+import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Configuration class for setting up the Drools KieContainer and KieSession.
@@ -21,7 +33,33 @@ import java.util.List;
 @Configuration
 public class DroolsConfig {
 
+    private static final String RULE_SET_GROUP_ID = "com.mdm.rules";
+
     private KieServices kieServices = KieServices.Factory.get();
+    private final AtomicLong compilations = new AtomicLong();
+    private final boolean executableModel;
+    private final Path kjarDirectory;
+
+    public DroolsConfig(boolean executableModel) {
+        this(executableModel, "");
+    }
+
+    /**
+     * @param executableModel Whether rule sets are compiled to the Drools executable model
+     *                        ({@code mdm.drools.executable-model}) rather than interpreted DRL.
+     *                        Compiled at runtime, the executable model takes longer to build (the
+     *                        generated Java is compiled in-process) but fires sooner on a fresh
+     *                        KieBase; see {@code DroolsBuildBenchmark}.
+     * @param kjarDirectory Where executable-model kjars are kept per rule set fingerprint
+     *                      ({@code mdm.drools.kjar-dir}); empty to compile every time. A rule set
+     *                      found there is loaded from its precompiled classes instead of being compiled.
+     */
+    @Autowired
+    public DroolsConfig(@Value("${mdm.drools.executable-model:false}") boolean executableModel,
+                        @Value("${mdm.drools.kjar-dir:data/rule-sets}") String kjarDirectory) {
+        this.executableModel = executableModel;
+        this.kjarDirectory = executableModel && !kjarDirectory.isBlank() ? Path.of(kjarDirectory) : null;
+    }
 
     /**
      * Creates and returns a KieFileSystem bean.
@@ -38,15 +76,81 @@ public class DroolsConfig {
      * The KieContainer holds the KieBase (compiled rules) and provides a way to get KieSessions.
      * This method dynamically builds the KieContainer from the provided DRL strings.
      *
+     * The container gets a ReleaseId of its own; pass it to {@link #releaseKieContainer(KieContainer)}
+     * once it is no longer used.
+     *
      * @param drlRules A list of DRL rule strings obtained from the rule management service.
      * @return A KieContainer with the compiled rules.
      */
     @Bean
     @Scope("prototype") // New KieContainer is created each time this bean is requested with rules
     public KieContainer kieContainer(List<String> drlRules) {
-        KieRepository kieRepository = kieServices.getRepository();
+        return compile(KieBaseCache.fingerprint(drlRules), drlRules);
+    }
+
+    /**
+     * Creates the cache of compiled KieBases used by the Drools rule engine, so that a rule set
+     * is only compiled again when its DRL changes. Evicted rule sets release their KieModule, and
+     * the context closes the cache on shutdown, releasing the rest.
+     * @param maxSize Largest number of cached rule sets ({@code mdm.drools.kie-base-cache.max-size}).
+     * @param ttlMinutes Minutes an unused rule set stays cached ({@code mdm.drools.kie-base-cache.ttl-minutes}).
+     * @param initialPoolSize Sessions pooled per rule set up front ({@code mdm.drools.session-pool.initial-size}).
+     * @param maxConcurrentSessions Sessions of one rule set in use at once ({@code mdm.drools.session-pool.max-concurrent}, 0 = no limit).
+     * @param maxLayers Shared rule layers kept compiled ({@code mdm.drools.layers.max-size}); 0 disables layered
+     *                  compilation, which is also off with the executable model.
+     * @return The KieBase cache.
+     */
+    @Bean
+    public KieBaseCache kieBaseCache(@Value("${mdm.drools.kie-base-cache.max-size:32}") int maxSize,
+                                     @Value("${mdm.drools.kie-base-cache.ttl-minutes:60}") long ttlMinutes,
+                                     @Value("${mdm.drools.session-pool.initial-size:2}") int initialPoolSize,
+                                     @Value("${mdm.drools.session-pool.max-concurrent:8}") int maxConcurrentSessions,
+                                     @Value("${mdm.drools.layers.max-size:16}") int maxLayers) {
+        LayeredRuleCompiler layeredCompiler = maxLayers > 0 && !executableModel ? new LayeredRuleCompiler(maxLayers) : null;
+        return new KieBaseCache(maxSize, ttlMinutes, TimeUnit.MINUTES, this::compile, this::releaseKieContainer,
+                initialPoolSize, maxConcurrentSessions, layeredCompiler);
+    }
+
+    /**
+     * Removes the KieModule of a container built by this configuration from the KieRepository.
+     * Sessions already opened on its KieBase keep working; the KieBase is collected once they are gone.
+     * @param kieContainer The container to release.
+     */
+    public void releaseKieContainer(KieContainer kieContainer) {
+        kieServices.getRepository().removeKieModule(kieContainer.getReleaseId());
+    }
+
+    /**
+     * Compiles a rule set into a KieModule with its own ReleaseId and returns a container for it.
+     * Every rule set used to be written to the repository's default ReleaseId, so two requests
+     * compiling different companies' rules at once could each load the other's KieModule.
+     * The artifact id is derived from the fingerprint and the version is unique per compilation,
+     * so even two compilations of the same rule set never share a module.
+     * With the executable model and a kjar directory, the built kjar is stored under the full
+     * fingerprint, and a later compilation of the same rule set, also after a restart, loads it
+     * instead of generating and compiling the Java again; it keeps the ReleaseId it was built with.
+     */
+    private KieContainer compile(String fingerprint, List<String> drlRules) {
+        Path kjar = kjarDirectory != null ? kjarDirectory.resolve("ruleset-" + fingerprint + ".jar") : null;
+        if (kjar != null && Files.exists(kjar)) {
+            KieContainer loaded = load(kjar);
+            if (loaded != null) {
+                return loaded;
+            }
+        }
+
+        ReleaseId releaseId = kieServices.newReleaseId(RULE_SET_GROUP_ID, "ruleset-" + fingerprint.substring(0, 16),
+                "1.0." + compilations.incrementAndGet());
 
         KieFileSystem kieFileSystem = kieServices.newKieFileSystem();
+        kieFileSystem.generateAndWritePomXML(releaseId);
+        if (kjar != null) {
+            // A kjar read back from bytes needs its kmodule.xml; a module built in memory defaults without one
+            KieModuleModel kieModuleModel = kieServices.newKieModuleModel();
+            kieModuleModel.newKieBaseModel("rules").setDefault(true).addPackage("*")
+                    .newKieSessionModel("session").setDefault(true);
+            kieFileSystem.writeKModuleXML(kieModuleModel.toXML());
+        }
 
         // Add each DRL rule string as a resource to the KieFileSystem
         for (int i = 0; i < drlRules.size(); i++) {
@@ -58,14 +162,56 @@ public class DroolsConfig {
         }
 
         KieBuilder kieBuilder = kieServices.newKieBuilder(kieFileSystem);
-        kieBuilder.buildAll(); // Compile all rules
+        if (executableModel) {
+            // Constraints and consequences are generated as Java lambdas and compiled once, instead of
+            // being parsed and interpreted through MVEL; the KieBase loads from the compiled model
+            kieBuilder.buildAll(ExecutableModelProject.class);
+        } else {
+            kieBuilder.buildAll(); // Compile all rules
+        }
 
         if (kieBuilder.getResults().hasMessages(org.kie.api.builder.Message.Level.ERROR)) {
             throw new RuntimeException("Error building Drools KieBase: " + kieBuilder.getResults().toString());
         }
+        if (kjar != null) {
+            save(kjar, ((InternalKieModule) kieBuilder.getKieModule()).getBytes());
+        }
 
-        // Return a new KieContainer associated with the default release ID, which now contains our compiled rules.
-        return kieServices.newKieContainer(kieRepository.getDefaultReleaseId());
+        // buildAll() added the module to the repository under the rule set's own release ID
+        return kieServices.newKieContainer(releaseId);
+    }
+
+    /**
+     * Loads a precompiled kjar into the repository under the release ID it was built with.
+     * @return A container for it, or {@code null} when the file cannot be loaded and is removed.
+     */
+    private KieContainer load(Path kjar) {
+        try {
+            KieModule kieModule = kieServices.getRepository()
+                    .addKieModule(kieServices.getResources().newByteArrayResource(Files.readAllBytes(kjar)));
+            System.out.println("Drools: loaded precompiled rule set " + kjar.getFileName());
+            return kieServices.newKieContainer(kieModule.getReleaseId());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Drools: cannot load precompiled rule set " + kjar + ", compiling it again: " + e.getMessage());
+            try {
+                Files.deleteIfExists(kjar);
+            } catch (IOException deleteError) {
+                System.err.println("Drools: cannot remove " + kjar + ": " + deleteError.getMessage());
+            }
+            return null;
+        }
+    }
+
+    // Written to a temporary file first, so a reader never sees a partial kjar
+    private void save(Path kjar, byte[] bytes) {
+        try {
+            Files.createDirectories(kjar.getParent());
+            Path temporary = Files.createTempFile(kjar.getParent(), kjar.getFileName().toString(), ".tmp");
+            Files.write(temporary, bytes);
+            Files.move(temporary, kjar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Drools: cannot store precompiled rule set " + kjar + ": " + e.getMessage());
+        }
     }
 
     /**
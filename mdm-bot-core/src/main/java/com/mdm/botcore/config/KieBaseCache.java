@@ -0,0 +1,294 @@
+package com.mdm.botcore.config;
+
+import org.kie.api.KieBase;
+import org.kie.api.runtime.KieContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Cache of compiled KieBases, keyed by a fingerprint of the ordered DRL list.
+ *
+ * Compiling a rule set (KieFileSystem plus {@code KieBuilder.buildAll()}) costs hundreds of
+ * milliseconds or more, while a company's rules rarely change between requests. A rule set is
+ * compiled once per fingerprint; requests then only open a new session on the cached KieBase.
+ * Changed rules produce a new fingerprint, so stale KieBases are never served.
+ *
+ * Every compiled rule set lives in its own KieContainer (see {@link DroolsConfig} for the
+ * per-fingerprint ReleaseId). The cache holds at most {@code maxSize} rule sets, evicting the least
+ * recently used one, and drops rule sets not used for {@code ttl}; evicted containers are handed to
+ * the eviction listener, outside the cache lock, to release their KieModule. Sessions already opened
+ * on an evicted KieBase keep running. Concurrent requests for the same rule set compile it once;
+ * different rule sets compile in parallel. {@link #close()} evicts everything.
+ *
+ * Each cached rule set carries its own session pool (see {@link PooledKieBase}), shut down on eviction.
+ *
+ * With a {@link LayeredRuleCompiler}, a rule set can also be given as a shared base layer plus a
+ * delta ({@link #get(List, List)}); it is cached under the fingerprints of both layers.
+ */
+public class KieBaseCache implements AutoCloseable {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final BiFunction<String, List<String>, KieContainer> compiler;
+    private final Consumer<KieContainer> evictionListener;
+    private final LayeredRuleCompiler layeredCompiler;
+    private final int initialPoolSize;
+    private final int maxConcurrentSessions;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static final class Entry {
+        private volatile PooledKieBase pooledKieBase;
+        private long lastAccess;
+    }
+
+    /**
+     * @param maxSize Largest number of cached rule sets; at least 1.
+     * @param ttl Idle time after which a rule set is dropped; 0 or less keeps it until evicted by size.
+     * @param unit The unit of {@code ttl}.
+     * @param compiler Compiles an ordered DRL list, given with its fingerprint, into a KieContainer of its own.
+     * @param evictionListener Releases the container of an evicted rule set.
+     * @param initialPoolSize Sessions created with each rule set's pool.
+     * @param maxConcurrentSessions Sessions of one rule set in use at once; 0 or less for no limit.
+     */
+    public KieBaseCache(int maxSize, long ttl, TimeUnit unit, BiFunction<String, List<String>, KieContainer> compiler,
+                        Consumer<KieContainer> evictionListener, int initialPoolSize, int maxConcurrentSessions) {
+        this(maxSize, ttl, unit, compiler, evictionListener, initialPoolSize, maxConcurrentSessions, null, System::nanoTime);
+    }
+
+    /**
+     * @param layeredCompiler Compiles rule sets given as base layer plus delta; {@code null} when not supported.
+     */
+    public KieBaseCache(int maxSize, long ttl, TimeUnit unit, BiFunction<String, List<String>, KieContainer> compiler,
+                        Consumer<KieContainer> evictionListener, int initialPoolSize, int maxConcurrentSessions,
+                        LayeredRuleCompiler layeredCompiler) {
+        this(maxSize, ttl, unit, compiler, evictionListener, initialPoolSize, maxConcurrentSessions, layeredCompiler,
+                System::nanoTime);
+    }
+
+    KieBaseCache(int maxSize, long ttl, TimeUnit unit, BiFunction<String, List<String>, KieContainer> compiler,
+                 Consumer<KieContainer> evictionListener, int initialPoolSize, int maxConcurrentSessions, LongSupplier clock) {
+        this(maxSize, ttl, unit, compiler, evictionListener, initialPoolSize, maxConcurrentSessions, null, clock);
+    }
+
+    private KieBaseCache(int maxSize, long ttl, TimeUnit unit, BiFunction<String, List<String>, KieContainer> compiler,
+                         Consumer<KieContainer> evictionListener, int initialPoolSize, int maxConcurrentSessions,
+                         LayeredRuleCompiler layeredCompiler, LongSupplier clock) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = ttl > 0 ? unit.toNanos(ttl) : 0;
+        this.compiler = compiler;
+        this.evictionListener = evictionListener;
+        this.layeredCompiler = layeredCompiler;
+        this.initialPoolSize = initialPoolSize;
+        this.maxConcurrentSessions = maxConcurrentSessions;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the KieBase of the rule set, compiling it on a miss.
+     * @param drlRules The DRL sources; their order is part of the fingerprint.
+     * @return The compiled KieBase.
+     */
+    public KieBase getKieBase(List<String> drlRules) {
+        return get(drlRules).getKieBase();
+    }
+
+    /**
+     * Returns the rule set with its session pool, compiling it on a miss.
+     * @param drlRules The DRL sources; their order is part of the fingerprint.
+     * @return The compiled rule set.
+     */
+    public PooledKieBase get(List<String> drlRules) {
+        String fingerprint = fingerprint(drlRules);
+        return get(fingerprint, "rule set", drlRules.size(), () -> new PooledKieBase(
+                compiler.apply(fingerprint, drlRules), initialPoolSize, maxConcurrentSessions));
+    }
+
+    /**
+     * Returns the rule set made of a base layer and a delta on top of it, compiling it on a miss;
+     * the base layer is compiled once for every rule set sharing it (see {@link LayeredRuleCompiler}).
+     * @param baseLayer The DRL sources of the shared layer.
+     * @param delta The DRL sources added on top; a delta rule replaces the base rule of the same name.
+     * @return The compiled rule set.
+     * @throws IllegalStateException When the cache has no layered compiler.
+     */
+    public PooledKieBase get(List<String> baseLayer, List<String> delta) {
+        if (layeredCompiler == null) {
+            throw new IllegalStateException("Layered compilation is not enabled");
+        }
+        String fingerprint = layeredFingerprint(baseLayer, delta);
+        return get(fingerprint, "layered rule set", baseLayer.size() + delta.size(), () -> new PooledKieBase(
+                layeredCompiler.compile(baseLayer, delta), initialPoolSize, maxConcurrentSessions));
+    }
+
+    /**
+     * @return Whether rule sets can be given as base layer plus delta.
+     */
+    public boolean isLayered() {
+        return layeredCompiler != null;
+    }
+
+    /**
+     * @return The fingerprint a layered rule set is cached under; never equal to a flat rule set's.
+     */
+    public static String layeredFingerprint(List<String> baseLayer, List<String> delta) {
+        return fingerprint(List.of("layered", fingerprint(baseLayer), fingerprint(delta)));
+    }
+
+    private PooledKieBase get(String fingerprint, String kind, int drlCount, Supplier<PooledKieBase> compile) {
+        Entry entry;
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            long now = clock.getAsLong();
+            expire(now, evicted);
+            entry = entries.get(fingerprint);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(fingerprint, entry);
+                evictOverflow(evicted);
+            }
+            entry.lastAccess = now;
+        }
+        release(evicted);
+        PooledKieBase pooledKieBase = entry.pooledKieBase;
+        if (pooledKieBase != null) {
+            countHit();
+            return pooledKieBase;
+        }
+        synchronized (entry) {
+            if (entry.pooledKieBase == null) {
+                long start = System.nanoTime();
+                try {
+                    entry.pooledKieBase = compile.get();
+                } catch (RuntimeException e) {
+                    // A broken rule set is not cached; the next request reports the error again
+                    remove(fingerprint, entry);
+                    throw e;
+                }
+                countMiss();
+                if (!isCached(fingerprint, entry)) {
+                    // Evicted while compiling: release the module now, the caller still gets its KieBase
+                    release(List.of(entry));
+                }
+                System.out.println("Drools: Compiled " + kind + " " + fingerprint.substring(0, 12) + " (" + drlCount
+                        + " DRLs) in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            } else {
+                countHit();
+            }
+            return entry.pooledKieBase;
+        }
+    }
+
+    /**
+     * @return The hex SHA-256 of the DRL list; each DRL is length-prefixed so that the split between sources counts.
+     */
+    public static String fingerprint(List<String> drlRules) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String drl : drlRules) {
+                byte[] bytes = drl.getBytes(StandardCharsets.UTF_8);
+                digest.update(new byte[] {(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+                        (byte) (bytes.length >>> 8), (byte) bytes.length});
+                digest.update(bytes);
+            }
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Evicts every cached rule set.
+     */
+    @Override
+    public void close() {
+        List<Entry> evicted;
+        synchronized (this) {
+            evicted = new ArrayList<>(entries.values());
+            evictions += entries.size();
+            entries.clear();
+        }
+        release(evicted);
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+
+    private synchronized void countHit() { hits++; }
+    private synchronized void countMiss() { misses++; }
+
+    private synchronized void remove(String fingerprint, Entry entry) {
+        entries.remove(fingerprint, entry);
+    }
+
+    private synchronized boolean isCached(String fingerprint, Entry entry) {
+        return entries.get(fingerprint) == entry;
+    }
+
+    // Entries still compiling are released by their compiling thread once done
+    private void release(List<Entry> evicted) {
+        for (Entry entry : evicted) {
+            PooledKieBase pooledKieBase = entry.pooledKieBase;
+            if (pooledKieBase != null) {
+                try {
+                    pooledKieBase.close();
+                    if (pooledKieBase.getKieContainer() != null) {
+                        evictionListener.accept(pooledKieBase.getKieContainer());
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Drools: Error releasing evicted rule set: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Entries are in access order, so expired entries are at the head
+    private void expire(long now, List<Entry> evicted) {
+        if (ttlNanos <= 0) {
+            return;
+        }
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.lastAccess < ttlNanos) {
+                return;
+            }
+            iterator.remove();
+            evicted.add(entry);
+            evictions++;
+        }
+    }
+
+    private void evictOverflow(List<Entry> evicted) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            evicted.add(iterator.next());
+            iterator.remove();
+            evictions++;
+        }
+    }
+}
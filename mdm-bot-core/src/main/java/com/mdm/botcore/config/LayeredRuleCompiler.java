@@ -0,0 +1,133 @@
+package com.mdm.botcore.config;
+
+import org.drools.kiesession.rulebase.InternalKnowledgeBase;
+import org.drools.kiesession.rulebase.KnowledgeBaseFactory;
+import org.kie.api.KieBase;
+import org.kie.api.definition.KiePackage;
+import org.kie.api.io.ResourceType;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiles a rule set in two layers: a base layer shared by many rule sets, such as a domain's
+ * global rules, and a small delta on top of it, such as one company's rules.
+ *
+ * The base layer is compiled once per fingerprint into knowledge packages and kept for the next
+ * rule set built on it; only the delta is compiled per rule set. Delta packages are added after
+ * the base packages, so a delta rule replaces the base rule of the same name in the same package.
+ * Every KieBase still builds its own network from copies of the base packages, so this saves the
+ * compilation of the base rules (parsing, type checking, consequence code generation), not the
+ * memory of a KieBase. At most {@code maxLayers} base layers are kept, least recently used first
+ * out; KieBases already built keep working when their layer is dropped.
+ *
+ * Layers are compiled from DRL; the executable model is not used for layered rule sets.
+ */
+public class LayeredRuleCompiler {
+
+    private final int maxLayers;
+    private final Map<String, Layer> layers = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+
+    private static final class Layer {
+        private volatile Collection<KiePackage> packages;
+    }
+
+    /**
+     * @param maxLayers Largest number of base layers kept; at least 1.
+     */
+    public LayeredRuleCompiler(int maxLayers) {
+        this.maxLayers = Math.max(1, maxLayers);
+    }
+
+    /**
+     * Builds a KieBase from a base layer, compiled on first use, and a delta compiled now.
+     * @param baseLayer The DRL sources of the shared layer.
+     * @param delta The DRL sources added on top; may be empty.
+     * @return A new KieBase with the rules of both layers.
+     */
+    public KieBase compile(List<String> baseLayer, List<String> delta) {
+        Layer layer = layer(baseLayer);
+        InternalKnowledgeBase kieBase = KnowledgeBaseFactory.newKnowledgeBase();
+        // Adding copies the layer's packages when another KieBase already uses them
+        synchronized (layer) {
+            kieBase.addPackages(layer.packages);
+        }
+        if (!delta.isEmpty()) {
+            kieBase.addPackages(compilePackages(delta));
+        }
+        return kieBase;
+    }
+
+    public synchronized int size() {
+        return layers.size();
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+
+    private Layer layer(List<String> baseLayer) {
+        String fingerprint = KieBaseCache.fingerprint(baseLayer);
+        Layer layer;
+        synchronized (this) {
+            layer = layers.get(fingerprint);
+            if (layer == null) {
+                layer = new Layer();
+                layers.put(fingerprint, layer);
+                Iterator<Layer> iterator = layers.values().iterator();
+                while (layers.size() > maxLayers && iterator.hasNext()) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+        }
+        if (layer.packages != null) {
+            countHit();
+            return layer;
+        }
+        synchronized (layer) {
+            if (layer.packages == null) {
+                long start = System.nanoTime();
+                try {
+                    layer.packages = compilePackages(baseLayer);
+                } catch (RuntimeException e) {
+                    remove(fingerprint, layer);
+                    throw e;
+                }
+                countMiss();
+                System.out.println("Drools: Compiled rule layer " + fingerprint.substring(0, 12) + " (" + baseLayer.size()
+                        + " DRLs) in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+            } else {
+                countHit();
+            }
+            return layer;
+        }
+    }
+
+    private static Collection<KiePackage> compilePackages(List<String> drlRules) {
+        KnowledgeBuilder knowledgeBuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+        for (String drl : drlRules) {
+            knowledgeBuilder.add(ResourceFactory.newByteArrayResource(drl.getBytes(StandardCharsets.UTF_8)), ResourceType.DRL);
+        }
+        if (knowledgeBuilder.hasErrors()) {
+            throw new RuntimeException("Error building Drools KieBase: " + knowledgeBuilder.getErrors());
+        }
+        return knowledgeBuilder.getKnowledgePackages();
+    }
+
+    private synchronized void countHit() { hits++; }
+    private synchronized void countMiss() { misses++; }
+
+    private synchronized void remove(String fingerprint, Layer layer) {
+        layers.remove(fingerprint, layer);
+    }
+}
@@ -0,0 +1,235 @@
+package com.mdm.botcore.config;
+
+import com.mdm.botcore.matching.BlockingPolicy;
+import com.mdm.botcore.matching.CandidateStrategy;
+import com.mdm.botcore.matching.MatchKeys;
+import com.mdm.botcore.matching.SimilarityMeasure;
+import com.mdm.botcore.matching.SortKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matching settings for the Java rule engines, resolvable per rule.
+ *
+ * A setting is looked up as {@code mdm.matching.rules.<RuleName>.<setting>} first, then as the
+ * shared default {@code mdm.matching.defaults.<setting>}, and finally falls back to the built-in
+ * default. For example:
+ * <pre>
+ * mdm.matching.rules.FuzzyNameMatch.enabled=true
+ * mdm.matching.rules.FuzzyNameMatch.candidates=sorted-neighbourhood
+ * mdm.matching.rules.FuzzyNameMatch.window=8
+ * mdm.matching.rules.FuzzyNameMatch.sort-keys=name:6+phone:-4,phone:-7+name:3
+ * mdm.matching.rules.FuzzyNameMatch.bands=16
+ * mdm.matching.rules.FuzzyNameMatch.rows=4
+ * mdm.matching.defaults.window=10
+ * </pre>
+ * A few pipeline settings can also be set per company, as {@code mdm.matching.companies.<companyId>.<setting>}
+ * falling back to {@code mdm.matching.<setting>}.
+ */
+@Component
+public class MatchingProperties {
+
+    public static final int DEFAULT_WINDOW = 10;
+    public static final String DEFAULT_SORT_KEYS = "name:6+phone:-4,phone:-7+name:3";
+    public static final int DEFAULT_SHINGLE_SIZE = 3;
+    public static final int DEFAULT_BANDS = 16;
+    public static final int DEFAULT_ROWS = 4;
+    public static final double DEFAULT_MIN_OVERLAP = 0.5;
+    public static final double DEFAULT_MAX_TOKEN_FREQUENCY = 0.05;
+
+    private static final String PREFIX = "mdm.matching.";
+    private static final String RULE_PREFIX = "mdm.matching.rules.";
+    private static final String DEFAULT_PREFIX = "mdm.matching.defaults.";
+    private static final String COMPANY_PREFIX = "mdm.matching.companies.";
+
+    private final PropertyResolver propertyResolver;
+
+    @Autowired
+    public MatchingProperties(Environment environment) {
+        this((PropertyResolver) environment);
+    }
+
+    public MatchingProperties(PropertyResolver propertyResolver) {
+        this.propertyResolver = propertyResolver;
+    }
+
+    /**
+     * @return Settings with every value at its built-in default, for use outside a Spring context.
+     */
+    public static MatchingProperties defaults() {
+        return new MatchingProperties(new PropertySourcesPropertyResolver(new MutablePropertySources()));
+    }
+
+    /**
+     * Resolves an engine-wide setting {@code mdm.matching.<setting>}.
+     * @param setting The setting name, e.g. "fused-evaluation".
+     * @param type The target type.
+     * @param defaultValue Value used when the property is not set.
+     * @return The resolved value.
+     */
+    public <T> T getProperty(String setting, Class<T> type, T defaultValue) {
+        T value = propertyResolver.getProperty(PREFIX + setting, type);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Resolves a per-rule setting, falling back to the shared default and then to {@code defaultValue}.
+     * @param ruleName The rule name, e.g. "FuzzyNameMatch".
+     * @param setting The setting name, e.g. "window".
+     * @param type The target type.
+     * @param defaultValue Value used when neither property is set.
+     * @return The resolved value.
+     */
+    public <T> T getRuleProperty(String ruleName, String setting, Class<T> type, T defaultValue) {
+        T value = propertyResolver.getProperty(RULE_PREFIX + ruleName + "." + setting, type);
+        if (value == null) {
+            value = propertyResolver.getProperty(DEFAULT_PREFIX + setting, type);
+        }
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Resolves a per-company setting, falling back to the engine-wide setting and then to {@code defaultValue}.
+     * @param companyId The company ID.
+     * @param setting The setting name, e.g. "top-k".
+     * @param type The target type.
+     * @param defaultValue Value used when neither property is set.
+     * @return The resolved value.
+     */
+    public <T> T getCompanyProperty(String companyId, String setting, Class<T> type, T defaultValue) {
+        T value = companyId != null ? propertyResolver.getProperty(COMPANY_PREFIX + companyId + "." + setting, type) : null;
+        return value != null ? value : getProperty(setting, type, defaultValue);
+    }
+
+    public boolean isRuleEnabled(String ruleName, boolean defaultValue) {
+        return getRuleProperty(ruleName, "enabled", Boolean.class, defaultValue);
+    }
+
+    public double getThreshold(String ruleName, double defaultValue) {
+        return getRuleProperty(ruleName, "threshold", Double.class, defaultValue);
+    }
+
+    public CandidateStrategy getCandidateStrategy(String ruleName, CandidateStrategy defaultValue) {
+        String value = getRuleProperty(ruleName, "candidates", String.class, null);
+        return value != null ? CandidateStrategy.parse(value) : defaultValue;
+    }
+
+    public int getWindow(String ruleName) {
+        return getRuleProperty(ruleName, "window", Integer.class, DEFAULT_WINDOW);
+    }
+
+    public List<SortKey> getSortKeys(String ruleName) {
+        return SortKey.parseAll(getRuleProperty(ruleName, "sort-keys", String.class, DEFAULT_SORT_KEYS));
+    }
+
+    public int getShingleSize(String ruleName) {
+        return getRuleProperty(ruleName, "shingle-size", Integer.class, DEFAULT_SHINGLE_SIZE);
+    }
+
+    public int getBands(String ruleName) {
+        return getRuleProperty(ruleName, "bands", Integer.class, DEFAULT_BANDS);
+    }
+
+    public int getRows(String ruleName) {
+        return getRuleProperty(ruleName, "rows", Integer.class, DEFAULT_ROWS);
+    }
+
+    /**
+     * @return Fraction of the smaller trigram set two values must share to become trigram candidates.
+     */
+    public double getMinOverlap(String ruleName) {
+        return getRuleProperty(ruleName, "min-overlap", Double.class, DEFAULT_MIN_OVERLAP);
+    }
+
+    /**
+     * @return Fraction of the batch above which a name token becomes a stop token for TF-IDF candidates.
+     */
+    public double getMaxTokenFrequency(String ruleName) {
+        return getRuleProperty(ruleName, "max-token-frequency", Double.class, DEFAULT_MAX_TOKEN_FREQUENCY);
+    }
+
+    /**
+     * @return Matches of the rule each entity keeps, best scores first; 0 keeps all.
+     */
+    public int getTopK(String ruleName) {
+        return getRuleProperty(ruleName, "top-k", Integer.class, 0);
+    }
+
+    /**
+     * @return Candidate pairs (all rules combined) each entity of the company keeps; 0 keeps all.
+     */
+    public int getCompanyTopK(String companyId) {
+        return getCompanyProperty(companyId, "top-k", Integer.class, 0);
+    }
+
+    /**
+     * Resolves the blocking guards of an exact rule: {@code max-block-size}, {@code sub-block-key}
+     * (a sort key spec such as {@code name:4}), {@code stop-keys} (comma-separated; empty clears the
+     * defaults) and {@code stop-key-learn-after}.
+     * @param ruleName The rule name.
+     * @param defaultPolicy The rule's own defaults.
+     * @return The resolved policy.
+     */
+    public BlockingPolicy getBlockingPolicy(String ruleName, BlockingPolicy defaultPolicy) {
+        int maxBlockSize = getRuleProperty(ruleName, "max-block-size", Integer.class, defaultPolicy.maxBlockSize());
+        String subBlockKey = getRuleProperty(ruleName, "sub-block-key", String.class, null);
+        String stopKeys = getRuleProperty(ruleName, "stop-keys", String.class, null);
+        int learnAfter = getRuleProperty(ruleName, "stop-key-learn-after", Integer.class, defaultPolicy.learnAfter());
+        return new BlockingPolicy(maxBlockSize,
+                subBlockKey != null && !subBlockKey.isBlank() ? SortKey.parse(subBlockKey.trim()) : defaultPolicy.subBlockKey(),
+                stopKeys != null ? parseKeys(stopKeys) : defaultPolicy.stopKeys(),
+                learnAfter);
+    }
+
+    private static Set<String> parseKeys(String keys) {
+        Set<String> parsed = new HashSet<>();
+        for (String key : keys.split(",")) {
+            if (!key.isBlank()) {
+                parsed.add(MatchKeys.foldCase(key.trim()));
+            }
+        }
+        return parsed;
+    }
+
+    public SimilarityMeasure getSimilarityMeasure(String ruleName, SimilarityMeasure defaultValue) {
+        String value = getRuleProperty(ruleName, "similarity", String.class, null);
+        return value != null ? SimilarityMeasure.parse(value) : defaultValue;
+    }
+
+    /**
+     * @return Whether the comparisons saved by candidate generation (e.g. LSH candidate pairs) are logged for the rule.
+     */
+    public boolean isReportEnabled(String ruleName) {
+        return getRuleProperty(ruleName, "report", Boolean.class, false);
+    }
+
+    /**
+     * @return Whether the Easy Rules engine walks candidate pairs once for all rules instead of once per rule.
+     */
+    public boolean isFusedEvaluation() {
+        return getProperty("fused-evaluation", Boolean.class, true);
+    }
+
+    /**
+     * @return Distinct pairs per batch the fuzzy rules may score together ({@code mdm.matching.max-comparisons}); 0 means unlimited.
+     */
+    public long getMaxComparisons() {
+        return getProperty("max-comparisons", Long.class, 0L);
+    }
+
+    /**
+     * @return Worker threads for pair matching; {@code mdm.matching.parallelism=0} means one per available core.
+     */
+    public int getParallelism() {
+        int parallelism = getProperty("parallelism", Integer.class, 1);
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+}
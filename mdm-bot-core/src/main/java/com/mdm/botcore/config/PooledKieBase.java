@@ -0,0 +1,146 @@
+package com.mdm.botcore.config;
+
+import org.kie.api.KieBase;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.KieSessionsPool;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * A compiled rule set together with a pool of its sessions.
+ *
+ * Creating and disposing a stateful session per request is costly next to firing a small batch,
+ * so sessions come from a Drools {@link KieSessionsPool}: disposing a pooled session resets it
+ * (facts, agenda, globals) and returns it to the pool. A semaphore caps the sessions in use at
+ * once, so a burst of requests for one rule set queues instead of growing the pool without
+ * bound. The pool is created on first use.
+ *
+ * A rule set assembled without a KieModule (see {@link LayeredRuleCompiler}) has no container;
+ * its sessions are pooled on the KieBase itself.
+ */
+public class PooledKieBase implements AutoCloseable {
+
+    private final KieContainer kieContainer;
+    private final KieBase kieBase;
+    private final int initialPoolSize;
+    private final Semaphore permits;
+    private volatile KieSessionsPool sessionsPool;
+    private volatile boolean closed;
+
+    /**
+     * @param kieContainer The container of the rule set.
+     * @param initialPoolSize Sessions created with the pool.
+     * @param maxConcurrentSessions Sessions in use at once; 0 or less for no limit.
+     */
+    public PooledKieBase(KieContainer kieContainer, int initialPoolSize, int maxConcurrentSessions) {
+        this(kieContainer, kieContainer.getKieBase(), initialPoolSize, maxConcurrentSessions);
+    }
+
+    /**
+     * @param kieBase A rule set that has no container.
+     * @param initialPoolSize Sessions created with the pool.
+     * @param maxConcurrentSessions Sessions in use at once; 0 or less for no limit.
+     */
+    public PooledKieBase(KieBase kieBase, int initialPoolSize, int maxConcurrentSessions) {
+        this(null, kieBase, initialPoolSize, maxConcurrentSessions);
+    }
+
+    private PooledKieBase(KieContainer kieContainer, KieBase kieBase, int initialPoolSize, int maxConcurrentSessions) {
+        this.kieContainer = kieContainer;
+        this.kieBase = kieBase;
+        this.initialPoolSize = Math.max(1, initialPoolSize);
+        this.permits = maxConcurrentSessions > 0 ? new Semaphore(maxConcurrentSessions, true) : null;
+    }
+
+    /**
+     * @return The container of the rule set, or {@code null} when it was assembled without one.
+     */
+    public KieContainer getKieContainer() {
+        return kieContainer;
+    }
+
+    public KieBase getKieBase() {
+        return kieBase;
+    }
+
+    /**
+     * @return Whether the pool was shut down, e.g. because the rule set was evicted from the cache.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Runs work on a pooled session, waiting for a permit when the concurrency cap is reached.
+     * The session is returned to the pool, reset, when the work completes.
+     * @param work Sets globals, inserts facts and fires the rules.
+     */
+    public void execute(Consumer<KieSession> work) {
+        if (permits != null) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a Drools session", e);
+            }
+        }
+        try {
+            KieSession kieSession = newKieSession();
+            try {
+                work.accept(kieSession);
+            } finally {
+                kieSession.dispose();
+            }
+        } finally {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Shuts the pool down; sessions still in use are disposed when their work completes, and later
+     * work runs on unpooled sessions.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (sessionsPool != null) {
+            sessionsPool.shutdown();
+        }
+    }
+
+    private KieSession newKieSession() {
+        if (!closed) {
+            try {
+                return sessionsPool().newKieSession();
+            } catch (IllegalStateException e) {
+                if (!closed) {
+                    throw e;
+                }
+                // The pool was shut down concurrently
+            }
+        }
+        return kieBase.newKieSession();
+    }
+
+    private KieSessionsPool sessionsPool() {
+        KieSessionsPool pool = sessionsPool;
+        if (pool == null) {
+            synchronized (this) {
+                if (closed) {
+                    throw new IllegalStateException("The session pool is closed");
+                }
+                pool = sessionsPool;
+                if (pool == null) {
+                    pool = kieContainer != null ? kieContainer.newKieSessionsPool(initialPoolSize)
+                            : kieBase.newKieSessionsPool(initialPoolSize);
+                    sessionsPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+}
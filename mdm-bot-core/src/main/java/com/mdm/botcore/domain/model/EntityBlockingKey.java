@@ -0,0 +1,97 @@
+package com.mdm.botcore.domain.model;
+
+import jakarta.persistence.*;
+
+import java.util.Objects;
+
+/**
+ * One blocking key of an indexed entity, stored as a 64-bit hash.
+ * A new batch looks up the hashes of its own keys to find the earlier entities sharing a bucket.
+ */
+@Entity
+@Table(name = "entity_blocking_keys", indexes = {
+        @Index(name = "idx_entity_blocking_keys_scope_hash", columnList = "company_id, domain, key_hash"),
+        @Index(name = "idx_entity_blocking_keys_scope_entity", columnList = "company_id, domain, entity_id")
+})
+public class EntityBlockingKey {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String companyId;
+
+    @Column(nullable = false)
+    private String domain;
+
+    @Column(nullable = false)
+    private String entityId;
+
+    @Column(nullable = false)
+    private long keyHash; // Hash of the rule name and its normalized key value
+
+    // Constructors
+    public EntityBlockingKey() {}
+
+    public EntityBlockingKey(String companyId, String domain, String entityId, long keyHash) {
+        this.companyId = companyId;
+        this.domain = domain;
+        this.entityId = entityId;
+        this.keyHash = keyHash;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getCompanyId() {
+        return companyId;
+    }
+
+    public void setCompanyId(String companyId) {
+        this.companyId = companyId;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public void setDomain(String domain) {
+        this.domain = domain;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(String entityId) {
+        this.entityId = entityId;
+    }
+
+    public long getKeyHash() {
+        return keyHash;
+    }
+
+    public void setKeyHash(long keyHash) {
+        this.keyHash = keyHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        EntityBlockingKey that = (EntityBlockingKey) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
@@ -0,0 +1,134 @@
+package com.mdm.botcore.domain.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * An entity from an earlier batch, kept so that later batches can be matched against it.
+ * Entities are scoped per company and domain, the same scope the matching rules are fetched for.
+ */
+@Entity
+@Table(name = "indexed_entities", indexes = {
+        @Index(name = "idx_indexed_entities_scope_entity", columnList = "company_id, domain, entity_id", unique = true)
+})
+@EntityListeners(AuditingEntityListener.class)
+public class IndexedEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String companyId;
+
+    @Column(nullable = false)
+    private String domain;
+
+    @Column(nullable = false)
+    private String entityId; // MDMEntity id from the source batch
+
+    @Column(nullable = false, columnDefinition = "TEXT") // Store JSON of the latest version of the entity
+    private String entityJson;
+
+    @CreatedDate
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public IndexedEntity() {}
+
+    public IndexedEntity(String companyId, String domain, String entityId, String entityJson) {
+        this.companyId = companyId;
+        this.domain = domain;
+        this.entityId = entityId;
+        this.entityJson = entityJson;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getCompanyId() {
+        return companyId;
+    }
+
+    public void setCompanyId(String companyId) {
+        this.companyId = companyId;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public void setDomain(String domain) {
+        this.domain = domain;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(String entityId) {
+        this.entityId = entityId;
+    }
+
+    public String getEntityJson() {
+        return entityJson;
+    }
+
+    public void setEntityJson(String entityJson) {
+        this.entityJson = entityJson;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IndexedEntity that = (IndexedEntity) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedEntity{" +
+                "id=" + id +
+                ", companyId='" + companyId + '\'' +
+                ", domain='" + domain + '\'' +
+                ", entityId='" + entityId + '\'' +
+                '}';
+    }
+}
@@ -1,5 +1,8 @@
 package com.mdm.botcore.domain.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.mdm.botcore.matching.MatchFeatures;
+
 import java.util.Map;
 import java.util.Objects;
 
@@ -29,6 +32,10 @@ public class MDMEntity {
     private String mergeReason;
     private String proposedMergedEntityJson; // JSON representation of the proposed merged entity
 
+    // Normalized match features, computed once per batch by MatchFeatures.prepare (not serialized)
+    @JsonIgnore
+    private transient MatchFeatures matchFeatures;
+
     // Constructors
     public MDMEntity() {}
 
@@ -132,6 +139,15 @@ public class MDMEntity {
         this.proposedMergedEntityJson = proposedMergedEntityJson;
     }
 
+    @JsonIgnore
+    public MatchFeatures getMatchFeatures() {
+        return matchFeatures;
+    }
+
+    public void setMatchFeatures(MatchFeatures matchFeatures) {
+        this.matchFeatures = matchFeatures;
+    }
+
     // Utility to get a specific attribute from the map
     public Object getAttribute(String key) {
         return attributes != null ? attributes.get(key) : null;
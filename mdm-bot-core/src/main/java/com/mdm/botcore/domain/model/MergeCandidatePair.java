@@ -1,5 +1,6 @@
 package com.mdm.botcore.domain.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
@@ -44,6 +45,11 @@ public class MergeCandidatePair {
     @Column(columnDefinition = "TEXT") // Comments from human review on approval/rejection
     private String reviewComment;
 
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "merge_group_id")
+    private MergeGroup mergeGroup; // The connected group this pair belongs to
+
     @CreatedDate
     @Column(updatable = false)
     private LocalDateTime createdAt;
@@ -119,6 +125,15 @@ public class MergeCandidatePair {
         this.reviewComment = reviewComment;
     }
 
+    @JsonIgnore
+    public MergeGroup getMergeGroup() {
+        return mergeGroup;
+    }
+
+    public void setMergeGroup(MergeGroup mergeGroup) {
+        this.mergeGroup = mergeGroup;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,157 @@
+package com.mdm.botcore.domain.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Represents a group of entities that are all connected by merge candidate pairs.
+ * The group carries a single golden record, so reviewers decide once per group instead of
+ * once per pair.
+ */
+@Entity
+@Table(name = "merge_groups")
+@EntityListeners(AuditingEntityListener.class)
+public class MergeGroup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, columnDefinition = "TEXT") // Store JSON array of the member entities
+    private String membersJson;
+
+    @Column(nullable = false)
+    private int memberCount;
+
+    @Column(columnDefinition = "TEXT") // JSON of the survivorship-computed golden record
+    private String goldenRecordJson;
+
+    @Column(columnDefinition = "TEXT") // JSON with the members, matching rules and per-pair evidence
+    private String reasoningJson;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private MergeCandidatePair.MergeStatus status = MergeCandidatePair.MergeStatus.PENDING_REVIEW;
+
+    @Column(columnDefinition = "TEXT") // Comments from human review on approval/rejection
+    private String reviewComment;
+
+    @CreatedDate
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public MergeGroup() {}
+
+    public MergeGroup(String membersJson, int memberCount, String goldenRecordJson, String reasoningJson) {
+        this.membersJson = membersJson;
+        this.memberCount = memberCount;
+        this.goldenRecordJson = goldenRecordJson;
+        this.reasoningJson = reasoningJson;
+        this.status = MergeCandidatePair.MergeStatus.PENDING_REVIEW;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getMembersJson() {
+        return membersJson;
+    }
+
+    public void setMembersJson(String membersJson) {
+        this.membersJson = membersJson;
+    }
+
+    public int getMemberCount() {
+        return memberCount;
+    }
+
+    public void setMemberCount(int memberCount) {
+        this.memberCount = memberCount;
+    }
+
+    public String getGoldenRecordJson() {
+        return goldenRecordJson;
+    }
+
+    public void setGoldenRecordJson(String goldenRecordJson) {
+        this.goldenRecordJson = goldenRecordJson;
+    }
+
+    public String getReasoningJson() {
+        return reasoningJson;
+    }
+
+    public void setReasoningJson(String reasoningJson) {
+        this.reasoningJson = reasoningJson;
+    }
+
+    public MergeCandidatePair.MergeStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(MergeCandidatePair.MergeStatus status) {
+        this.status = status;
+    }
+
+    public String getReviewComment() {
+        return reviewComment;
+    }
+
+    public void setReviewComment(String reviewComment) {
+        this.reviewComment = reviewComment;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MergeGroup that = (MergeGroup) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+
+    @Override
+    public String toString() {
+        return "MergeGroup{" +
+                "id=" + id +
+                ", memberCount=" + memberCount +
+                ", status=" + status +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
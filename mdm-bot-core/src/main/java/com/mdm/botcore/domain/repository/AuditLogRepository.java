@@ -1,9 +1,13 @@
 package com.mdm.botcore.domain.repository;
 
 import com.mdm.botcore.domain.model.AuditLog;
+import com.mdm.botcore.domain.model.MergeCandidatePair;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -18,4 +22,23 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
      * @return A list of matching AuditLog entries.
      */
     List<AuditLog> findByMergeCandidatePairId(Long mergeCandidatePairId);
-}
\ No newline at end of file
+
+    /**
+     * Finds the entity id pairs of candidate pairs with the given review status that involve any of the given entities.
+     * @param status The review status, e.g. REJECTED.
+     * @param entityIds The entity ids to look up.
+     * @return The distinct id pairs, as recorded on the audit logs.
+     */
+    @Query("select distinct a.entity1Id as entity1Id, a.entity2Id as entity2Id from AuditLog a " +
+            "where a.mergeCandidatePair.status = :status and (a.entity1Id in :entityIds or a.entity2Id in :entityIds)")
+    List<EntityIdPair> findEntityIdPairsByStatus(@Param("status") MergeCandidatePair.MergeStatus status,
+                                                 @Param("entityIds") Collection<String> entityIds);
+
+    /**
+     * Projection of the two entity ids of an audit log.
+     */
+    interface EntityIdPair {
+        String getEntity1Id();
+        String getEntity2Id();
+    }
+}
@@ -0,0 +1,55 @@
+package com.mdm.botcore.domain.repository;
+
+import com.mdm.botcore.domain.model.EntityBlockingKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JPA Repository for managing EntityBlockingKey entities.
+ */
+@Repository
+public interface EntityBlockingKeyRepository extends JpaRepository<EntityBlockingKey, Long> {
+
+    /**
+     * Finds the ids of indexed entities that have at least one of the given blocking keys.
+     * @param companyId The company ID.
+     * @param domain The domain.
+     * @param keyHashes The blocking key hashes to look up.
+     * @return The distinct matching entity ids.
+     */
+    @Query("select distinct k.entityId from EntityBlockingKey k " +
+            "where k.companyId = :companyId and k.domain = :domain and k.keyHash in :keyHashes")
+    List<String> findEntityIdsByKeyHashes(@Param("companyId") String companyId, @Param("domain") String domain,
+                                          @Param("keyHashes") Collection<Long> keyHashes);
+
+    /**
+     * Counts the indexed entities per blocking key, so that keys above a rule's block size cap are not looked up.
+     * @param companyId The company ID.
+     * @param domain The domain.
+     * @param keyHashes The blocking key hashes to count.
+     * @return Pairs of key hash and entity count; keys without entities are left out.
+     */
+    @Query("select k.keyHash, count(k) from EntityBlockingKey k " +
+            "where k.companyId = :companyId and k.domain = :domain and k.keyHash in :keyHashes group by k.keyHash")
+    List<Object[]> countByKeyHashes(@Param("companyId") String companyId, @Param("domain") String domain,
+                                    @Param("keyHashes") Collection<Long> keyHashes);
+
+    /**
+     * Deletes the blocking keys of the given entities, before their current keys are re-inserted.
+     * @param companyId The company ID.
+     * @param domain The domain.
+     * @param entityIds The source entity ids.
+     * @return The number of deleted keys.
+     */
+    @Modifying
+    @Query("delete from EntityBlockingKey k " +
+            "where k.companyId = :companyId and k.domain = :domain and k.entityId in :entityIds")
+    int deleteByEntityIds(@Param("companyId") String companyId, @Param("domain") String domain,
+                          @Param("entityIds") Collection<String> entityIds);
+}
@@ -0,0 +1,24 @@
+package com.mdm.botcore.domain.repository;
+
+import com.mdm.botcore.domain.model.IndexedEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JPA Repository for managing IndexedEntity entities.
+ */
+@Repository
+public interface IndexedEntityRepository extends JpaRepository<IndexedEntity, Long> {
+
+    /**
+     * Finds indexed entities of a company and domain by their source entity ids.
+     * @param companyId The company ID.
+     * @param domain The domain.
+     * @param entityIds The source entity ids.
+     * @return The matching IndexedEntity entries.
+     */
+    List<IndexedEntity> findByCompanyIdAndDomainAndEntityIdIn(String companyId, String domain, Collection<String> entityIds);
+}
@@ -18,4 +18,11 @@ public interface MergeCandidatePairRepository extends JpaRepository<MergeCandida
      * @return A list of matching MergeCandidatePair entities.
      */
     List<MergeCandidatePair> findByStatus(MergeCandidatePair.MergeStatus status);
+
+    /**
+     * Finds the merge candidate pairs belonging to a merge group.
+     * @param mergeGroupId The ID of the merge group.
+     * @return A list of matching MergeCandidatePair entities.
+     */
+    List<MergeCandidatePair> findByMergeGroupId(Long mergeGroupId);
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.mdm.botcore.domain.repository;
+
+import com.mdm.botcore.domain.model.MergeCandidatePair;
+import com.mdm.botcore.domain.model.MergeGroup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * JPA Repository for managing MergeGroup entities.
+ */
+@Repository
+public interface MergeGroupRepository extends JpaRepository<MergeGroup, Long> {
+
+    /**
+     * Finds merge groups by their status.
+     * @param status The status to filter by (e.g., PENDING_REVIEW, APPROVED, REJECTED).
+     * @return A list of matching MergeGroup entities.
+     */
+    List<MergeGroup> findByStatus(MergeCandidatePair.MergeStatus status);
+}
@@ -0,0 +1,122 @@
+package com.mdm.botcore.index;
+
+import com.mdm.botcore.config.MatchingProperties;
+import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.matching.BlockingPolicy;
+import com.mdm.botcore.matching.MatchFeatures;
+import com.mdm.botcore.matching.PairRule;
+import com.mdm.botcore.matching.StandardPairRules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * The blocking keys an entity is indexed under: one 64-bit hash per blockable standard rule,
+ * combining the rule name with the rule's normalized key, so equal values under different
+ * rules (e.g. a name that happens to equal an address) never share a bucket.
+ *
+ * Keys follow each rule's {@link BlockingPolicy}, as the in-batch blocking of
+ * {@code CandidateIndexFactory} does: stop keys such as free-mail domains are neither stored nor
+ * looked up. A key already stored for more than {@code max-block-size} entities is capped: it is
+ * no longer stored for further entities and no longer looked up, so a batch entity on a shared
+ * switchboard phone does not pull every entity on it out of the store. With a {@code sub-block-key}
+ * every key is also stored combined with the secondary key, which is looked up instead once the
+ * key is capped.
+ */
+public final class BlockingKeys {
+
+    private final List<PairRule> rules = new ArrayList<>();
+    private final List<BlockingPolicy> policies = new ArrayList<>();
+
+    /**
+     * @param matchingProperties Resolves the blocking policy of every rule ({@code mdm.matching.rules.<Rule>.*}).
+     */
+    public BlockingKeys(MatchingProperties matchingProperties) {
+        for (PairRule rule : StandardPairRules.ALL) {
+            if (rule.blockingKey() != null) {
+                rules.add(rule);
+                policies.add(matchingProperties.getBlockingPolicy(rule.getName(), rule.defaultBlockingPolicy()));
+            }
+        }
+    }
+
+    /**
+     * @return The keys under the rules' default policies.
+     */
+    public static BlockingKeys defaults() {
+        return new BlockingKeys(MatchingProperties.defaults());
+    }
+
+    /**
+     * @return The key hashes of the batch whose stored frequency decides whether they are capped.
+     */
+    public Set<Long> keys(List<MDMEntity> batch) {
+        Set<Long> hashes = new LinkedHashSet<>();
+        for (MDMEntity entity : batch) {
+            for (int r = 0; r < rules.size(); r++) {
+                String key = key(entity, r);
+                if (key != null) {
+                    hashes.add(hash(rules.get(r), key));
+                }
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * @param entity An entity of the batch.
+     * @param storedCount Number of entities stored under a key hash from {@link #keys(List)}.
+     * @return The key hashes to find the entity's candidates under.
+     */
+    public long[] lookup(MDMEntity entity, LongUnaryOperator storedCount) {
+        return of(entity, storedCount, false);
+    }
+
+    /**
+     * @param entity An entity to store.
+     * @param storedCount Number of entities stored under a key hash from {@link #keys(List)}.
+     * @return The key hashes to store the entity under.
+     */
+    public long[] index(MDMEntity entity, LongUnaryOperator storedCount) {
+        return of(entity, storedCount, true);
+    }
+
+    private long[] of(MDMEntity entity, LongUnaryOperator storedCount, boolean index) {
+        long[] hashes = new long[rules.size() * 2];
+        int count = 0;
+        for (int r = 0; r < rules.size(); r++) {
+            String key = key(entity, r);
+            if (key == null) {
+                continue;
+            }
+            PairRule rule = rules.get(r);
+            BlockingPolicy policy = policies.get(r);
+            long hash = hash(rule, key);
+            boolean capped = policy.maxBlockSize() > 0 && storedCount.applyAsLong(hash) > policy.maxBlockSize();
+            if (!capped) {
+                hashes[count++] = hash;
+            }
+            String subKey = policy.subBlockKey() != null ? policy.subBlockKey().apply(entity) : null;
+            if (subKey != null && (index || capped)) {
+                hashes[count++] = hash(rule, key + '\u0000' + subKey);
+            }
+        }
+        return count == hashes.length ? hashes : Arrays.copyOf(hashes, count);
+    }
+
+    // The rule's key of the entity, or null when it has none or it is a stop key
+    private String key(MDMEntity entity, int rule) {
+        Function<MDMEntity, String> keyFunction = rules.get(rule).blockingKey();
+        String key = keyFunction.apply(entity);
+        return key != null && !policies.get(rule).isStopKey(key) ? key : null;
+    }
+
+    private static long hash(PairRule rule, String key) {
+        return MatchFeatures.hash64(rule.getName() + '\u0000' + key);
+    }
+}
@@ -0,0 +1,32 @@
+package com.mdm.botcore.index;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+
+import java.util.List;
+
+/**
+ * Persistent store of previously processed entities, indexed by their blocking keys, so that a
+ * new batch is matched against earlier batches without resubmitting the whole corpus.
+ *
+ * Entities are scoped per company and domain.
+ */
+public interface EntityIndex {
+
+    /**
+     * Finds the indexed entities that share at least one blocking key with the batch.
+     * Entities whose id also occurs in the batch are not returned; the batch holds their latest version.
+     * @param companyId The company ID.
+     * @param domain The domain.
+     * @param batch The incoming entities.
+     * @return The earlier entities in the buckets the batch touches.
+     */
+    List<MDMEntity> findCandidates(String companyId, String domain, List<MDMEntity> batch);
+
+    /**
+     * Inserts the batch into the index, replacing earlier versions of the same entity ids.
+     * @param companyId The company ID.
+     * @param domain The domain.
+     * @param batch The entities to index.
+     */
+    void index(String companyId, String domain, List<MDMEntity> batch);
+}
@@ -0,0 +1,165 @@
+package com.mdm.botcore.index;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mdm.botcore.config.MatchingProperties;
+import com.mdm.botcore.domain.model.EntityBlockingKey;
+import com.mdm.botcore.domain.model.IndexedEntity;
+import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.domain.repository.EntityBlockingKeyRepository;
+import com.mdm.botcore.domain.repository.IndexedEntityRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link EntityIndex} backed by the bot-core database: entity JSON in {@code indexed_entities}
+ * and one row per blocking key hash in {@code entity_blocking_keys}.
+ *
+ * A lookup costs one indexed key query plus one load of the matched entities, so a batch only
+ * pays for the buckets it touches, not for the size of the corpus. Keys follow the rules' blocking
+ * policies (see {@link BlockingKeys}), so stop keys and oversized blocks are never loaded. This is
+ * the default store ({@code mdm.index.store=jpa}).
+ */
+@Component
+@ConditionalOnProperty(name = "mdm.index.store", havingValue = "jpa", matchIfMissing = true)
+public class JpaEntityIndex implements EntityIndex {
+
+    // Keeps IN lists well below database bind-parameter limits
+    private static final int QUERY_CHUNK_SIZE = 1000;
+
+    private final IndexedEntityRepository indexedEntityRepository;
+    private final EntityBlockingKeyRepository blockingKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final BlockingKeys blockingKeys;
+
+    @Autowired
+    public JpaEntityIndex(IndexedEntityRepository indexedEntityRepository,
+                          EntityBlockingKeyRepository blockingKeyRepository,
+                          ObjectMapper objectMapper,
+                          MatchingProperties matchingProperties) {
+        this.indexedEntityRepository = indexedEntityRepository;
+        this.blockingKeyRepository = blockingKeyRepository;
+        this.objectMapper = objectMapper;
+        this.blockingKeys = new BlockingKeys(matchingProperties);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<MDMEntity> findCandidates(String companyId, String domain, List<MDMEntity> batch) {
+        Map<Long, Long> storedCounts = countKeys(companyId, domain, blockingKeys.keys(batch));
+        Set<Long> keyHashes = new LinkedHashSet<>();
+        Set<String> batchIds = new HashSet<>();
+        for (MDMEntity entity : batch) {
+            batchIds.add(entity.getId());
+            for (long hash : blockingKeys.lookup(entity, key -> storedCounts.getOrDefault(key, 0L))) {
+                keyHashes.add(hash);
+            }
+        }
+
+        Set<String> candidateIds = new LinkedHashSet<>();
+        for (List<Long> chunk : chunks(keyHashes)) {
+            for (String entityId : blockingKeyRepository.findEntityIdsByKeyHashes(companyId, domain, chunk)) {
+                if (!batchIds.contains(entityId)) {
+                    candidateIds.add(entityId);
+                }
+            }
+        }
+
+        List<MDMEntity> candidates = new ArrayList<>();
+        for (List<String> chunk : chunks(candidateIds)) {
+            for (IndexedEntity indexed : indexedEntityRepository.findByCompanyIdAndDomainAndEntityIdIn(companyId, domain, chunk)) {
+                try {
+                    candidates.add(objectMapper.readValue(indexed.getEntityJson(), MDMEntity.class));
+                } catch (JsonProcessingException e) {
+                    System.err.println("Error reading indexed entity " + indexed.getEntityId() + ": " + e.getMessage());
+                }
+            }
+        }
+        System.out.println("Entity index: " + batch.size() + " batch entities touched " + candidateIds.size()
+                + " indexed entities via " + keyHashes.size() + " blocking keys.");
+        return candidates;
+    }
+
+    @Override
+    @Transactional
+    public void index(String companyId, String domain, List<MDMEntity> batch) {
+        // The last occurrence of an id within the batch wins
+        Map<String, MDMEntity> latest = new HashMap<>();
+        for (MDMEntity entity : batch) {
+            if (entity.getId() != null) {
+                latest.put(entity.getId(), entity);
+            }
+        }
+
+        Map<String, IndexedEntity> existing = new HashMap<>();
+        for (List<String> chunk : chunks(latest.keySet())) {
+            for (IndexedEntity indexed : indexedEntityRepository.findByCompanyIdAndDomainAndEntityIdIn(companyId, domain, chunk)) {
+                existing.put(indexed.getEntityId(), indexed);
+            }
+            blockingKeyRepository.deleteByEntityIds(companyId, domain, chunk);
+        }
+
+        // Counted without the re-indexed entities, whose keys were just deleted
+        Map<Long, Long> storedCounts = countKeys(companyId, domain, blockingKeys.keys(new ArrayList<>(latest.values())));
+        List<IndexedEntity> entities = new ArrayList<>();
+        List<EntityBlockingKey> keys = new ArrayList<>();
+        for (MDMEntity entity : latest.values()) {
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(entity);
+            } catch (JsonProcessingException e) {
+                System.err.println("Error indexing entity " + entity.getId() + ": " + e.getMessage());
+                continue;
+            }
+            IndexedEntity indexed = existing.get(entity.getId());
+            if (indexed == null) {
+                indexed = new IndexedEntity(companyId, domain, entity.getId(), json);
+            } else {
+                indexed.setEntityJson(json);
+            }
+            entities.add(indexed);
+            for (long hash : blockingKeys.index(entity, key -> storedCounts.getOrDefault(key, 0L))) {
+                keys.add(new EntityBlockingKey(companyId, domain, entity.getId(), hash));
+                storedCounts.merge(hash, 1L, Long::sum);
+            }
+        }
+        indexedEntityRepository.saveAll(entities);
+        blockingKeyRepository.saveAll(keys);
+    }
+
+    private Map<Long, Long> countKeys(String companyId, String domain, Set<Long> keyHashes) {
+        Map<Long, Long> counts = new HashMap<>();
+        for (List<Long> chunk : chunks(keyHashes)) {
+            for (Object[] row : blockingKeyRepository.countByKeyHashes(companyId, domain, chunk)) {
+                counts.put((Long) row[0], (Long) row[1]);
+            }
+        }
+        return counts;
+    }
+
+    private static <T> List<List<T>> chunks(Set<T> values) {
+        List<List<T>> chunks = new ArrayList<>();
+        List<T> chunk = new ArrayList<>();
+        for (T value : values) {
+            chunk.add(value);
+            if (chunk.size() == QUERY_CHUNK_SIZE) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
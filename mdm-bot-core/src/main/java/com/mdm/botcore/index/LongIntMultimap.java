@@ -0,0 +1,74 @@
+package com.mdm.botcore.index;
+
+import java.util.Arrays;
+
+/**
+ * Hash multimap from {@code long} keys to {@code int} values held in primitive arrays, so that
+ * millions of postings cost a few arrays instead of millions of boxed entries.
+ *
+ * Entries are chained per bucket; values of one key are visited newest first.
+ * Not thread-safe.
+ */
+final class LongIntMultimap {
+
+    /** Receives the values stored under a key. */
+    @FunctionalInterface
+    interface ValueConsumer {
+        void accept(int value);
+    }
+
+    private int[] heads;     // per bucket: index of the newest entry + 1, 0 when empty
+    private long[] keys;     // per entry
+    private int[] values;    // per entry
+    private int[] next;      // per entry: index of the next entry in the bucket + 1
+    private int size;
+
+    LongIntMultimap() {
+        heads = new int[1024];
+        keys = new long[1024];
+        values = new int[1024];
+        next = new int[1024];
+    }
+
+    void put(long key, int value) {
+        if (size == keys.length) {
+            grow();
+        }
+        int bucket = bucket(key, heads.length);
+        keys[size] = key;
+        values[size] = value;
+        next[size] = heads[bucket];
+        heads[bucket] = ++size;
+    }
+
+    void forEach(long key, ValueConsumer consumer) {
+        for (int entry = heads[bucket(key, heads.length)]; entry != 0; entry = next[entry - 1]) {
+            if (keys[entry - 1] == key) {
+                consumer.accept(values[entry - 1]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        next = new int[capacity];
+        heads = new int[capacity];
+        // Re-link in insertion order so that chains stay newest first
+        for (int entry = 0; entry < size; entry++) {
+            int bucket = bucket(keys[entry], capacity);
+            next[entry] = heads[bucket];
+            heads[bucket] = entry + 1;
+        }
+    }
+
+    private static int bucket(long key, int capacity) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32) & (capacity - 1);
+    }
+}
@@ -0,0 +1,235 @@
+package com.mdm.botcore.index;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mdm.botcore.config.MatchingProperties;
+import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.matching.MatchFeatures;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * {@link EntityIndex} backed by a {@link MappedEntityStore} under {@code mdm.index.data-dir},
+ * selected with {@code mdm.index.store=mapped}.
+ *
+ * Blocking keys are stored pre-scoped (company, domain and rule key hashed together), and on
+ * startup a single pass over the mapped records rebuilds two primitive hash tables: scoped key
+ * to records and entity to record. Finding candidates then reads key hashes and live flags
+ * straight from mapped memory; only the matched records have their strings decoded and their
+ * JSON turned back into entities. Like the JPA store, it only bounds what a batch loads; the
+ * candidates are matched as heap entities like the batch itself. Keys follow the rules' blocking policies (see {@link BlockingKeys}).
+ *
+ * Once at least {@value #COMPACT_MIN_RECORDS} records are stored and fewer than half of them are
+ * live, the store is compacted after indexing a batch.
+ */
+@Component
+@ConditionalOnProperty(name = "mdm.index.store", havingValue = "mapped")
+public class MappedEntityIndex implements EntityIndex, AutoCloseable {
+
+    static final int COMPACT_MIN_RECORDS = 10_000;
+
+    private final MappedEntityStore store;
+    private final ObjectMapper objectMapper;
+    private final BlockingKeys blockingKeys;
+    private LongIntMultimap recordsByKey;
+    private LongIntMultimap recordsByEntity;
+    private int liveRecords;
+
+    @Autowired
+    public MappedEntityIndex(ObjectMapper objectMapper, MatchingProperties matchingProperties,
+                             @Value("${mdm.index.data-dir:data/entity-index}") String dataDirectory) {
+        this(MappedEntityStore.open(Path.of(dataDirectory)), objectMapper, new BlockingKeys(matchingProperties));
+    }
+
+    public MappedEntityIndex(MappedEntityStore store, ObjectMapper objectMapper) {
+        this(store, objectMapper, BlockingKeys.defaults());
+    }
+
+    public MappedEntityIndex(MappedEntityStore store, ObjectMapper objectMapper, BlockingKeys blockingKeys) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.blockingKeys = blockingKeys;
+        rebuildPostings();
+        System.out.println("Entity index: opened mapped store with " + liveRecords + " live of " + store.size() + " records.");
+    }
+
+    @Override
+    public synchronized List<MDMEntity> findCandidates(String companyId, String domain, List<MDMEntity> batch) {
+        long scope = scopeHash(companyId, domain);
+        Set<String> batchIds = new HashSet<>();
+        Set<Long> keyHashes = new HashSet<>();
+        for (MDMEntity entity : batch) {
+            batchIds.add(entity.getId());
+            for (long hash : blockingKeys.lookup(entity, key -> liveRecords(scopedKey(scope, key)))) {
+                keyHashes.add(scopedKey(scope, hash));
+            }
+        }
+
+        // Record numbers follow insertion order, which keeps the candidate list deterministic
+        BitSet records = new BitSet();
+        for (long key : keyHashes) {
+            recordsByKey.forEach(key, record -> {
+                if (store.isLive(record)) {
+                    records.set(record);
+                }
+            });
+        }
+
+        List<MDMEntity> candidates = new ArrayList<>();
+        for (int record = records.nextSetBit(0); record >= 0; record = records.nextSetBit(record + 1)) {
+            // Guards against hash collisions across scopes
+            if (!Objects.equals(companyId, store.companyId(record)) || !Objects.equals(domain, store.domain(record))
+                    || batchIds.contains(store.entityId(record))) {
+                continue;
+            }
+            try {
+                candidates.add(objectMapper.readValue(store.entityJson(record), MDMEntity.class));
+            } catch (JsonProcessingException e) {
+                System.err.println("Error reading indexed entity " + store.entityId(record) + ": " + e.getMessage());
+            }
+        }
+        System.out.println("Entity index: " + batch.size() + " batch entities touched " + candidates.size()
+                + " indexed entities via " + keyHashes.size() + " blocking keys.");
+        return candidates;
+    }
+
+    @Override
+    public synchronized void index(String companyId, String domain, List<MDMEntity> batch) {
+        // The last occurrence of an id within the batch wins
+        Map<String, MDMEntity> latest = new LinkedHashMap<>();
+        for (MDMEntity entity : batch) {
+            if (entity.getId() != null) {
+                latest.put(entity.getId(), entity);
+            }
+        }
+
+        long scope = scopeHash(companyId, domain);
+        for (MDMEntity entity : latest.values()) {
+            String json;
+            try {
+                json = objectMapper.writeValueAsString(entity);
+            } catch (JsonProcessingException e) {
+                System.err.println("Error indexing entity " + entity.getId() + ": " + e.getMessage());
+                continue;
+            }
+            long entityHash = entityHash(companyId, domain, entity.getId());
+            int existing = find(entityHash, companyId, domain, entity.getId());
+
+            long[] keys = blockingKeys.index(entity, key -> liveRecords(scopedKey(scope, key)));
+            for (int k = 0; k < keys.length; k++) {
+                keys[k] = scopedKey(scope, keys[k]);
+            }
+            // The new version is appended before the old one is retired, so a crash in between keeps the entity
+            int record = store.append(new MappedEntityStore.Entry(companyId, domain, entity.getId(), entityHash, keys, json));
+            addPostings(record);
+            if (existing >= 0) {
+                store.delete(existing);
+            } else {
+                liveRecords++;
+            }
+        }
+        store.force();
+        if (store.size() >= COMPACT_MIN_RECORDS && liveRecords * 2 < store.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the store without its superseded records and rebuilds the in-memory tables.
+     */
+    public synchronized void compact() {
+        int before = store.size();
+        int stringBytes = store.stringBytes();
+        store.compact();
+        rebuildPostings();
+        System.out.println("Entity index: compacted mapped store from " + before + " to " + store.size()
+                + " records and from " + stringBytes + " to " + store.stringBytes() + " string bytes.");
+    }
+
+    /**
+     * @return The number of records in the underlying store, including superseded ones.
+     */
+    public synchronized int storedRecords() {
+        return store.size();
+    }
+
+    @Override
+    @PreDestroy
+    public synchronized void close() {
+        store.close();
+    }
+
+    private void rebuildPostings() {
+        recordsByKey = new LongIntMultimap();
+        recordsByEntity = new LongIntMultimap();
+        liveRecords = 0;
+        for (int record = 0; record < store.size(); record++) {
+            if (!store.isLive(record)) {
+                continue;
+            }
+            // Two live versions of an entity are left by a crash between appending the new one and retiring the old
+            int older = find(store.entityHash(record), store.companyId(record), store.domain(record), store.entityId(record));
+            if (older >= 0) {
+                store.delete(older);
+            } else {
+                liveRecords++;
+            }
+            addPostings(record);
+        }
+    }
+
+    private void addPostings(int record) {
+        recordsByEntity.put(store.entityHash(record), record);
+        for (int k = 0; k < store.keyCount(record); k++) {
+            recordsByKey.put(store.keyHash(record, k), record);
+        }
+    }
+
+    // Live records stored under a scoped key
+    private long liveRecords(long scopedKey) {
+        long[] count = {0};
+        recordsByKey.forEach(scopedKey, record -> {
+            if (store.isLive(record)) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    // Live record of the entity, or -1
+    private int find(long entityHash, String companyId, String domain, String entityId) {
+        int[] found = {-1};
+        recordsByEntity.forEach(entityHash, record -> {
+            if (found[0] < 0 && store.isLive(record) && entityId.equals(store.entityId(record))
+                    && Objects.equals(companyId, store.companyId(record)) && Objects.equals(domain, store.domain(record))) {
+                found[0] = record;
+            }
+        });
+        return found[0];
+    }
+
+    private static long scopeHash(String companyId, String domain) {
+        return MatchFeatures.hash64(companyId + '\u0000' + domain);
+    }
+
+    private static long scopedKey(long scopeHash, long keyHash) {
+        return (scopeHash * 0x100000001b3L) ^ keyHash;
+    }
+
+    private static long entityHash(String companyId, String domain, String entityId) {
+        return MatchFeatures.hash64(companyId + '\u0000' + domain + '\u0000' + entityId);
+    }
+}
@@ -0,0 +1,332 @@
+package com.mdm.botcore.index;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Off-heap store of indexed entities in two memory-mapped files under a data directory. It is a
+ * persistent index only: candidates are found by blocking key hash and read back from their JSON,
+ * no match features are stored.
+ *
+ * {@code records.dat} holds fixed-layout records, one per stored entity version: a flags word,
+ * offsets of the entity's strings, a hash identifying the entity and up to {@value #MAX_KEYS}
+ * blocking key hashes. {@code strings.dat} is the dictionary segment the offsets point into
+ * (length-prefixed UTF-8). Company and domain are deduplicated within a session. Both files start
+ * with a small header holding their fill level, so reopening only maps the files and reads two integers.
+ *
+ * Records are append-only; replacing an entity appends a new record and clears the live flag of
+ * the old one. {@link #compact()} rewrites the live records into fresh files, which reclaims the
+ * space of superseded records and their strings. Each file is mapped as a single region, which
+ * limits it to 2 GB.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public final class MappedEntityStore implements AutoCloseable {
+
+    public static final int MAX_KEYS = 4;
+
+    private static final int MAGIC = 0x4D444D46; // "MDMF"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;   // magic, version, fill level, reserved
+    private static final int INITIAL_SIZE = 1 << 20;
+
+    private static final String RECORDS_FILE = "records.dat";
+    private static final String STRINGS_FILE = "strings.dat";
+    private static final String COMPACTED_SUFFIX = ".compact";
+    // Written once both compacted files are complete; from then on the swap is finished on open
+    private static final String COMPACTED_MARKER = "compact.ready";
+
+    // Record layout
+    private static final int FLAGS = 0;
+    private static final int COMPANY = 4;
+    private static final int DOMAIN = 8;
+    private static final int ENTITY_ID = 12;
+    private static final int JSON = 16;
+    private static final int KEY_COUNT = 20;
+    private static final int ENTITY_HASH = 24;
+    private static final int KEY_HASHES = 32;
+    static final int RECORD_SIZE = KEY_HASHES + MAX_KEYS * 8;
+
+    private static final int LIVE = 1;
+    private static final int NULL_OFFSET = -1;
+    private static final int MAX_DEDUP_LENGTH = 64;
+
+    private final Path directory;
+    private Segment records;
+    private Segment strings;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private int recordCount;
+
+    private MappedEntityStore(Path directory, Segment records, Segment strings) {
+        this.directory = directory;
+        this.records = records;
+        this.strings = strings;
+        this.recordCount = (records.fill() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /**
+     * Opens the store in {@code dataDirectory}, creating the directory and files if needed and
+     * finishing or discarding an interrupted compaction.
+     * @throws UncheckedIOException if the files cannot be mapped or are not store files.
+     */
+    public static MappedEntityStore open(Path dataDirectory) {
+        try {
+            Files.createDirectories(dataDirectory);
+            Path marker = dataDirectory.resolve(COMPACTED_MARKER);
+            if (Files.exists(marker)) {
+                swapInCompacted(dataDirectory);
+            }
+            Files.deleteIfExists(dataDirectory.resolve(RECORDS_FILE + COMPACTED_SUFFIX));
+            Files.deleteIfExists(dataDirectory.resolve(STRINGS_FILE + COMPACTED_SUFFIX));
+            return new MappedEntityStore(dataDirectory,
+                    Segment.open(dataDirectory.resolve(RECORDS_FILE)),
+                    Segment.open(dataDirectory.resolve(STRINGS_FILE)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open entity store in " + dataDirectory, e);
+        }
+    }
+
+    /**
+     * One entity version, as written to a record.
+     */
+    public record Entry(String companyId, String domain, String entityId, long entityHash, long[] keyHashes,
+                        String entityJson) {
+    }
+
+    /**
+     * Appends a live record.
+     * @return The record number.
+     */
+    public int append(Entry entry) {
+        if (entry.keyHashes().length > MAX_KEYS) {
+            throw new IllegalArgumentException("At most " + MAX_KEYS + " blocking keys per record");
+        }
+        int record = recordCount;
+        int base = records.reserve(RECORD_SIZE);
+        MappedByteBuffer buffer = records.buffer();
+        buffer.putInt(base + COMPANY, string(entry.companyId(), true));
+        buffer.putInt(base + DOMAIN, string(entry.domain(), true));
+        buffer.putInt(base + ENTITY_ID, string(entry.entityId(), false));
+        buffer.putInt(base + JSON, string(entry.entityJson(), false));
+        buffer.putInt(base + KEY_COUNT, entry.keyHashes().length);
+        buffer.putLong(base + ENTITY_HASH, entry.entityHash());
+        for (int k = 0; k < entry.keyHashes().length; k++) {
+            buffer.putLong(base + KEY_HASHES + k * 8, entry.keyHashes()[k]);
+        }
+        // The flag is written last, so a record only becomes visible once complete
+        buffer.putInt(base + FLAGS, LIVE);
+        records.commit(base + RECORD_SIZE);
+        recordCount++;
+        return record;
+    }
+
+    /**
+     * Marks a record as superseded.
+     */
+    public void delete(int record) {
+        records.buffer().putInt(offset(record) + FLAGS, 0);
+    }
+
+    /**
+     * Flushes both segments to disk.
+     */
+    public void force() {
+        records.buffer().force();
+        strings.buffer().force();
+    }
+
+    /**
+     * Rewrites the live records, in their current order, into fresh files and switches to them.
+     * Record numbers change; callers rebuild anything that refers to them. A crash before the
+     * compacted files are complete leaves the old files in place; after that, {@link #open(Path)}
+     * finishes the switch.
+     */
+    public void compact() {
+        Path compactedRecords = directory.resolve(RECORDS_FILE + COMPACTED_SUFFIX);
+        Path compactedStrings = directory.resolve(STRINGS_FILE + COMPACTED_SUFFIX);
+        try {
+            Files.deleteIfExists(compactedRecords);
+            Files.deleteIfExists(compactedStrings);
+            MappedEntityStore compacted = new MappedEntityStore(directory,
+                    Segment.open(compactedRecords), Segment.open(compactedStrings));
+            for (int record = 0; record < recordCount; record++) {
+                if (isLive(record)) {
+                    long[] keyHashes = new long[keyCount(record)];
+                    for (int k = 0; k < keyHashes.length; k++) {
+                        keyHashes[k] = keyHash(record, k);
+                    }
+                    compacted.append(new Entry(companyId(record), domain(record), entityId(record),
+                            entityHash(record), keyHashes, entityJson(record)));
+                }
+            }
+            compacted.close();
+            close();
+            Files.createFile(directory.resolve(COMPACTED_MARKER));
+            swapInCompacted(directory);
+            records = Segment.open(directory.resolve(RECORDS_FILE));
+            strings = Segment.open(directory.resolve(STRINGS_FILE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot compact entity store in " + directory, e);
+        }
+        dictionary.clear();
+        recordCount = (records.fill() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    @Override
+    public void close() {
+        force();
+        records.close();
+        strings.close();
+    }
+
+    public int size() { return recordCount; }
+
+    /**
+     * @return Bytes used in the string segment, including strings of superseded records.
+     */
+    public int stringBytes() { return strings.fill() - HEADER_SIZE; }
+
+    public boolean isLive(int record) { return (records.buffer().getInt(offset(record) + FLAGS) & LIVE) != 0; }
+    public int keyCount(int record) { return records.buffer().getInt(offset(record) + KEY_COUNT); }
+    public long keyHash(int record, int key) { return records.buffer().getLong(offset(record) + KEY_HASHES + key * 8); }
+    public long entityHash(int record) { return records.buffer().getLong(offset(record) + ENTITY_HASH); }
+
+    public String companyId(int record) { return readString(record, COMPANY); }
+    public String domain(int record) { return readString(record, DOMAIN); }
+    public String entityId(int record) { return readString(record, ENTITY_ID); }
+    public String entityJson(int record) { return readString(record, JSON); }
+
+    // Moves both compacted files over the live ones; the marker is removed only once both have moved
+    private static void swapInCompacted(Path directory) throws IOException {
+        for (String file : new String[] {STRINGS_FILE, RECORDS_FILE}) {
+            Path compacted = directory.resolve(file + COMPACTED_SUFFIX);
+            if (Files.exists(compacted)) {
+                Files.move(compacted, directory.resolve(file), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        Files.delete(directory.resolve(COMPACTED_MARKER));
+    }
+
+    private int offset(int record) {
+        if (record < 0 || record >= recordCount) {
+            throw new IndexOutOfBoundsException("Record " + record + " of " + recordCount);
+        }
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    private String readString(int record, int field) {
+        int position = records.buffer().getInt(offset(record) + field);
+        if (position == NULL_OFFSET) {
+            return null;
+        }
+        MappedByteBuffer buffer = strings.buffer();
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int string(String value, boolean deduplicate) {
+        if (value == null) {
+            return NULL_OFFSET;
+        }
+        boolean cacheable = deduplicate && value.length() <= MAX_DEDUP_LENGTH;
+        if (cacheable) {
+            Integer cached = dictionary.get(value);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int position = strings.reserve(4 + bytes.length);
+        MappedByteBuffer buffer = strings.buffer();
+        buffer.putInt(position, bytes.length);
+        buffer.put(position + 4, bytes);
+        strings.commit(position + 4 + bytes.length);
+        if (cacheable) {
+            dictionary.put(value, position);
+        }
+        return position;
+    }
+
+    /** One memory-mapped file with a header recording how far it is filled. */
+    private static final class Segment {
+        private final RandomAccessFile file;
+        private MappedByteBuffer buffer;
+
+        private Segment(RandomAccessFile file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path) throws IOException {
+            boolean created = !Files.exists(path) || Files.size(path) == 0;
+            RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+            if (created) {
+                file.setLength(INITIAL_SIZE);
+            }
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+            if (created) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, HEADER_SIZE);
+            } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                file.close();
+                throw new IOException("Not an entity store segment (or unsupported version): " + path);
+            }
+            return new Segment(file, buffer);
+        }
+
+        MappedByteBuffer buffer() {
+            return buffer;
+        }
+
+        int fill() {
+            return buffer.getInt(8);
+        }
+
+        // Returns the position of bytes free space, growing (and remapping) the file when needed
+        int reserve(int bytes) {
+            int position = fill();
+            long needed = (long) position + bytes;
+            if (needed > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Entity store segment is full (2 GB)");
+            }
+            if (needed > buffer.capacity()) {
+                long size = buffer.capacity();
+                while (size < needed) {
+                    size = Math.min(Integer.MAX_VALUE, size * 2);
+                }
+                try {
+                    buffer.force();
+                    file.setLength(size);
+                    buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot grow entity store segment", e);
+                }
+            }
+            return position;
+        }
+
+        void commit(int fill) {
+            buffer.putInt(8, fill);
+        }
+
+        void close() {
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.mdm.botcore.matching;
+
+import java.util.List;
+
+/**
+ * Candidate index that emits every pair of items. This is the exhaustive baseline and is only
+ * suitable for small batches or for validating the recall of the other candidate indexes.
+ *
+ * @param <T> The item type.
+ */
+public final class AllPairsIndex<T> implements CandidateIndex<T> {
+
+    private final List<T> items;
+
+    public AllPairsIndex(List<T> items) {
+        this.items = items;
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public T item(int position) {
+        return items.get(position);
+    }
+
+    @Override
+    public void forEachPairIndex(int fromAnchor, int toAnchor, PairConsumer pairConsumer) {
+        for (int i = fromAnchor; i < toAnchor; i++) {
+            for (int j = i + 1; j < items.size(); j++) {
+                pairConsumer.accept(i, j);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.mdm.botcore.matching;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Distribution of block sizes of a blocking index, bucketed by powers of two ("1", "2-3", "4-7", ...),
+ * together with the pairs the blocks produce. Used to tune block size caps: a handful of blocks
+ * in the top size classes usually accounts for most of the pairs.
+ */
+public final class BlockSizeHistogram {
+
+    private final long[] blocksBySizeClass = new long[32];
+    private final long[] pairsBySizeClass = new long[32];
+    private long blocks;
+    private long items;
+    private long pairs;
+    private int largestBlock;
+
+    void add(int blockSize) {
+        int sizeClass = 31 - Integer.numberOfLeadingZeros(blockSize);
+        long blockPairs = (long) blockSize * (blockSize - 1) / 2;
+        blocksBySizeClass[sizeClass]++;
+        pairsBySizeClass[sizeClass] += blockPairs;
+        blocks++;
+        items += blockSize;
+        pairs += blockPairs;
+        largestBlock = Math.max(largestBlock, blockSize);
+    }
+
+    public long getBlocks() { return blocks; }
+    /** @return Items that sit in a block, i.e. have a (sub-)key. */
+    public long getItems() { return items; }
+    /** @return Candidate pairs produced by all blocks together. */
+    public long getPairs() { return pairs; }
+    public int getLargestBlock() { return largestBlock; }
+
+    /**
+     * @return Number of blocks per size class, smallest class first; empty classes are left out.
+     */
+    public Map<String, Long> getBlocksBySize() {
+        return bySizeClass(blocksBySizeClass);
+    }
+
+    /**
+     * @return Candidate pairs per size class, smallest class first; empty classes are left out.
+     */
+    public Map<String, Long> getPairsBySize() {
+        return bySizeClass(pairsBySizeClass);
+    }
+
+    private Map<String, Long> bySizeClass(long[] counts) {
+        Map<String, Long> bySize = new LinkedHashMap<>();
+        for (int c = 0; c < counts.length; c++) {
+            if (blocksBySizeClass[c] > 0) {
+                long low = 1L << c;
+                long high = (low << 1) - 1;
+                bySize.put(low == high ? Long.toString(low) : low + "-" + high, counts[c]);
+            }
+        }
+        return bySize;
+    }
+
+    @Override
+    public String toString() {
+        return blocks + " blocks, " + pairs + " pairs, largest " + largestBlock + ", by size " + getBlocksBySize();
+    }
+}
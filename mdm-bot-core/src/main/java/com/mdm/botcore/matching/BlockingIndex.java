@@ -0,0 +1,195 @@
+package com.mdm.botcore.matching;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Hash-blocking index over a list of items.
+ * Items are grouped into buckets by a normalized blocking key, and candidate pairs are only
+ * emitted for items that share a bucket. Items whose key is {@code null} are left out.
+ *
+ * Pairs are emitted as {@code (items[i], items[j])} with {@code i < j}, ordered by {@code i} and
+ * then {@code j}. This is the same order a nested {@code for i / for j > i} loop over the
+ * qualifying items would produce, so results stay identical to the all-pairs implementation
+ * while the cost drops to the number of pairs actually inside each bucket.
+ *
+ * A single very frequent key (a free-mail domain, a switchboard phone number) would still make
+ * its bucket quadratic, so blocks can be capped: see {@link #build(List, Function, int, Function)}.
+ *
+ * The index is immutable once built and may be read from several threads.
+ *
+ * @param <T> The item type (usually {@code MDMEntity}).
+ */
+public final class BlockingIndex<T> implements CandidateIndex<T> {
+
+    private final List<T> items;
+    private final int[] bucketOf;     // bucket id per item, -1 when the item has no key
+    private final int[] rankInBucket; // position of the item inside its bucket
+    private final int[][] buckets;    // item positions per bucket, ascending
+    private final Map<String, Integer> cappedKeys;
+
+    private BlockingIndex(List<T> items, int[] bucketOf, int[] rankInBucket, int[][] buckets,
+                          Map<String, Integer> cappedKeys) {
+        this.items = items;
+        this.bucketOf = bucketOf;
+        this.rankInBucket = rankInBucket;
+        this.buckets = buckets;
+        this.cappedKeys = cappedKeys;
+    }
+
+    /**
+     * Builds an index by computing the blocking key of every item once.
+     * @param items The items to index; the list is not copied and must not change while the index is used.
+     * @param blockingKey Key function; {@code null} keys exclude the item.
+     * @return The built index.
+     */
+    public static <T> BlockingIndex<T> build(List<T> items, Function<? super T, String> blockingKey) {
+        return build(items, blockingKey, 0, null);
+    }
+
+    /**
+     * Builds a frequency-capped index. Key frequencies are counted first; a key shared by more than
+     * {@code maxBlockSize} items is a capped key. Its items are sub-blocked on the secondary key
+     * (items sharing both keys are paired) or, without a secondary key, excluded altogether.
+     * Sub-blocks are not capped again.
+     * @param items The items to index; the list is not copied and must not change while the index is used.
+     * @param blockingKey Key function; {@code null} keys exclude the item.
+     * @param maxBlockSize Largest block that is paired as is; 0 or less disables the cap.
+     * @param secondaryKey Sub-block key for capped keys, or {@code null} to skip them.
+     * @return The built index.
+     */
+    public static <T> BlockingIndex<T> build(List<T> items, Function<? super T, String> blockingKey,
+                                             int maxBlockSize, Function<? super T, String> secondaryKey) {
+        int size = items.size();
+        String[] keys = new String[size];
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            keys[i] = blockingKey.apply(items.get(i));
+            if (keys[i] != null && maxBlockSize > 0) {
+                frequencies.merge(keys[i], 1, Integer::sum);
+            }
+        }
+        Map<String, Integer> cappedKeys = new LinkedHashMap<>();
+        if (maxBlockSize > 0) {
+            for (int i = 0; i < size; i++) {
+                String key = keys[i];
+                if (key == null) {
+                    continue;
+                }
+                int frequency = frequencies.get(key);
+                if (frequency <= maxBlockSize) {
+                    continue;
+                }
+                cappedKeys.putIfAbsent(key, frequency);
+                String subKey = secondaryKey != null ? secondaryKey.apply(items.get(i)) : null;
+                // NUL cannot occur in a normalized key, so sub-keys never collide with plain keys
+                keys[i] = subKey != null ? key + '\0' + subKey : null;
+            }
+        }
+
+        int[] bucketOf = new int[size];
+        int[] rankInBucket = new int[size];
+        Map<String, Integer> bucketIds = new HashMap<>();
+        List<int[]> members = new ArrayList<>();
+        int[] memberCounts = new int[16];
+
+        for (int i = 0; i < size; i++) {
+            String key = keys[i];
+            if (key == null) {
+                bucketOf[i] = -1;
+                continue;
+            }
+            Integer bucket = bucketIds.get(key);
+            if (bucket == null) {
+                bucket = members.size();
+                bucketIds.put(key, bucket);
+                members.add(new int[2]);
+                if (bucket == memberCounts.length) {
+                    memberCounts = Arrays.copyOf(memberCounts, bucket * 2);
+                }
+            }
+            int[] bucketMembers = members.get(bucket);
+            int count = memberCounts[bucket];
+            if (count == bucketMembers.length) {
+                bucketMembers = Arrays.copyOf(bucketMembers, count * 2);
+                members.set(bucket, bucketMembers);
+            }
+            bucketMembers[count] = i;
+            memberCounts[bucket] = count + 1;
+            bucketOf[i] = bucket;
+            rankInBucket[i] = count;
+        }
+
+        int[][] buckets = new int[members.size()][];
+        for (int b = 0; b < buckets.length; b++) {
+            buckets[b] = Arrays.copyOf(members.get(b), memberCounts[b]);
+        }
+        return new BlockingIndex<>(items, bucketOf, rankInBucket, buckets, cappedKeys);
+    }
+
+    /**
+     * @return The number of indexed items (including those without a key).
+     */
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * @return The number of distinct blocking keys.
+     */
+    public int bucketCount() {
+        return buckets.length;
+    }
+
+    /**
+     * @return The keys that exceeded the block size cap, with their frequency, in order of first occurrence.
+     */
+    public Map<String, Integer> getCappedKeys() {
+        return Collections.unmodifiableMap(cappedKeys);
+    }
+
+    /**
+     * @return The size distribution of the blocks that are actually paired.
+     */
+    public BlockSizeHistogram histogram() {
+        BlockSizeHistogram histogram = new BlockSizeHistogram();
+        for (int[] bucket : buckets) {
+            histogram.add(bucket.length);
+        }
+        return histogram;
+    }
+
+    /**
+     * @return Whether the items at both positions are paired by this index, i.e. share a block
+     *         that was neither left out nor capped away.
+     */
+    public boolean sameBlock(int i, int j) {
+        return bucketOf[i] >= 0 && bucketOf[i] == bucketOf[j];
+    }
+
+    @Override
+    public T item(int position) {
+        return items.get(position);
+    }
+
+    @Override
+    public void forEachPairIndex(int fromAnchor, int toAnchor, PairConsumer pairConsumer) {
+        for (int i = fromAnchor; i < toAnchor; i++) {
+            int bucket = bucketOf[i];
+            if (bucket < 0) {
+                continue;
+            }
+            int[] bucketMembers = buckets[bucket];
+            for (int k = rankInBucket[i] + 1; k < bucketMembers.length; k++) {
+                pairConsumer.accept(i, bucketMembers[k]);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.config.MatchingProperties;
+import com.mdm.botcore.domain.model.MDMEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A normalized match key of one entity, inserted into Drools sessions next to the entity.
+ *
+ * Pairwise DRL rules that join two {@code MDMEntity} patterns with {@code this != $entity1} and a
+ * method call or {@code eval(...)} cannot be indexed: every entity is compared with every other.
+ * Joining two keys of the same kind on {@code value} instead is an equality join, which Drools
+ * hash-indexes, so only entities sharing a key meet:
+ * <pre>
+ * rule "ExactCompanyNameMatch"
+ *     when
+ *         $key1 : BlockingKey(kind == "companyName")
+ *         $key2 : BlockingKey(kind == "companyName", value == $key1.value, position &gt; $key1.position)
+ *         $entity1 : MDMEntity() from $key1.entity
+ *         $entity2 : MDMEntity() from $key2.entity
+ *     then
+ *         ...
+ * end
+ * </pre>
+ * {@code position > $key1.position} fires each pair once and never pairs an entity with itself.
+ * An entity without a key of some kind (see {@link MatchKeys}) gets no fact of that kind.
+ *
+ * Each kind is blocked under the {@link BlockingPolicy} of the rule it stands for (see
+ * {@link #policies(MatchingProperties)}), as the other engines block that rule: stop keys such as
+ * free-mail domains get no fact, and a value shared by more than {@code max-block-size} entities
+ * gets no fact or, with a {@code sub-block-key}, a fact whose value also holds the secondary key.
+ */
+public final class BlockingKey {
+
+    /** {@link MatchKeys#companyName(MDMEntity)}: case-folded organization name. */
+    public static final String COMPANY_NAME = "companyName";
+    /** {@link MatchKeys#address(MDMEntity)}: case-folded address longer than 10 characters. */
+    public static final String ADDRESS = "address";
+    /** {@link MatchKeys#phoneNumber(MDMEntity)}: digits of a phone number of at least 10 characters. */
+    public static final String PHONE = "phone";
+    /** {@link MatchKeys#emailDomain(MDMEntity)}: email suffix starting at '@'. */
+    public static final String EMAIL_DOMAIN = "emailDomain";
+    /** {@link MatchKeys#namePrefix(MDMEntity)}: lossy block for fuzzy organization name rules. */
+    public static final String NAME_PREFIX = "namePrefix";
+
+    /** Rule whose blocking policy applies to {@link #NAME_PREFIX} keys. */
+    public static final String FUZZY_NAME_RULE = "FuzzyNameMatch";
+
+    private static final List<String> KINDS = List.of(COMPANY_NAME, ADDRESS, PHONE, EMAIL_DOMAIN, NAME_PREFIX);
+    private static final List<Function<MDMEntity, String>> KEYS = List.of(MatchKeys::companyName,
+            MatchKeys::address, MatchKeys::phoneNumber, MatchKeys::emailDomain, MatchKeys::namePrefix);
+    private static final Map<String, BlockingPolicy> DEFAULT_POLICIES = policies(MatchingProperties.defaults());
+
+    private final String kind;
+    private final String value;
+    private final MDMEntity entity;
+    private final int position;
+
+    public BlockingKey(String kind, String value, MDMEntity entity, int position) {
+        this.kind = kind;
+        this.value = value;
+        this.entity = entity;
+        this.position = position;
+    }
+
+    /**
+     * Resolves the blocking policy of every kind from the rule it stands for: the standard exact rules
+     * for the equality kinds and {@value #FUZZY_NAME_RULE} (unlimited by default) for {@link #NAME_PREFIX}.
+     * @param matchingProperties The rule settings.
+     * @return The policy per kind.
+     */
+    public static Map<String, BlockingPolicy> policies(MatchingProperties matchingProperties) {
+        List<PairRule> rules = List.of(StandardPairRules.EXACT_COMPANY_NAME, StandardPairRules.ADDRESS,
+                StandardPairRules.PHONE_NUMBER, StandardPairRules.EMAIL_DOMAIN);
+        Map<String, BlockingPolicy> policies = new HashMap<>();
+        for (int k = 0; k < rules.size(); k++) {
+            PairRule rule = rules.get(k);
+            policies.put(KINDS.get(k), matchingProperties.getBlockingPolicy(rule.getName(), rule.defaultBlockingPolicy()));
+        }
+        policies.put(NAME_PREFIX, matchingProperties.getBlockingPolicy(FUZZY_NAME_RULE, BlockingPolicy.UNLIMITED));
+        return policies;
+    }
+
+    /**
+     * Derives the keys of every entity in the batch under the default policies.
+     * @see #forBatch(List, Map)
+     */
+    public static List<BlockingKey> forBatch(List<MDMEntity> entities) {
+        return forBatch(entities, DEFAULT_POLICIES);
+    }
+
+    /**
+     * Derives the keys of every entity in the batch. Call after {@link MatchFeatures#prepare(List)}.
+     * Block sizes are counted over the whole batch, so a batch that is split afterwards must reuse these keys.
+     * @param entities The batch; an entity's position in it orders its pairs.
+     * @param policies Blocking policy per kind; kinds without one are not limited.
+     * @return The keys, at most one per kind and entity, by position and then kind.
+     */
+    public static List<BlockingKey> forBatch(List<MDMEntity> entities, Map<String, BlockingPolicy> policies) {
+        String[][] values = new String[KINDS.size()][];
+        for (int k = 0; k < KINDS.size(); k++) {
+            values[k] = values(entities, KEYS.get(k), policies.getOrDefault(KINDS.get(k), BlockingPolicy.UNLIMITED));
+        }
+        List<BlockingKey> keys = new ArrayList<>(entities.size() * KINDS.size());
+        for (int position = 0; position < entities.size(); position++) {
+            for (int k = 0; k < KINDS.size(); k++) {
+                if (values[k][position] != null) {
+                    keys.add(new BlockingKey(KINDS.get(k), values[k][position], entities.get(position), position));
+                }
+            }
+        }
+        return keys;
+    }
+
+    // One kind's value per position, null where the entity gets no fact; mirrors BlockingIndex's capping
+    private static String[] values(List<MDMEntity> entities, Function<MDMEntity, String> key, BlockingPolicy policy) {
+        String[] values = new String[entities.size()];
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (int position = 0; position < values.length; position++) {
+            String value = key.apply(entities.get(position));
+            if (value != null && !policy.isStopKey(value)) {
+                values[position] = value;
+                if (policy.maxBlockSize() > 0) {
+                    frequencies.merge(value, 1, Integer::sum);
+                }
+            }
+        }
+        if (policy.maxBlockSize() > 0) {
+            for (int position = 0; position < values.length; position++) {
+                String value = values[position];
+                if (value != null && frequencies.get(value) > policy.maxBlockSize()) {
+                    String subKey = policy.subBlockKey() != null ? policy.subBlockKey().apply(entities.get(position)) : null;
+                    // NUL cannot occur in a normalized key, so sub-keys never collide with plain values
+                    values[position] = subKey != null ? value + '\0' + subKey : null;
+                }
+            }
+        }
+        return values;
+    }
+
+    public String getKind() { return kind; }
+    public String getValue() { return value; }
+    public MDMEntity getEntity() { return entity; }
+    /** @return The entity's position in its batch. */
+    public int getPosition() { return position; }
+
+    @Override
+    public String toString() {
+        return kind + "=" + value + "@" + position;
+    }
+}
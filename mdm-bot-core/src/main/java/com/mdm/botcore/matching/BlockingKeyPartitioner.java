@@ -0,0 +1,105 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits a batch into partitions that no {@link BlockingKey} join crosses.
+ *
+ * Entities sharing a key value of one of the given kinds are linked in a {@link UnionFind}; each
+ * connected component therefore holds every entity a key join can pair with any of its members.
+ * Components are packed whole, in order of their first entity, into at most about
+ * {@code maxPartitions} partitions, so that each partition can be matched on its own session.
+ * Entities keep their batch order inside a partition, so key positions order pairs as in a
+ * session over the whole batch. Keys are derived once for the whole batch, so capped blocks are
+ * decided on the batch and not per partition.
+ */
+public final class BlockingKeyPartitioner {
+
+    private BlockingKeyPartitioner() {}
+
+    /**
+     * One partition: its entities in batch order and their keys, keeping batch positions.
+     */
+    public record Partition(List<MDMEntity> entities, List<BlockingKey> keys) {
+    }
+
+    /**
+     * Partitions the batch on its keys under the default blocking policies.
+     * @see #partition(List, List, Set, int)
+     */
+    public static List<List<MDMEntity>> partition(List<MDMEntity> entities, Set<String> kinds, int maxPartitions) {
+        List<List<MDMEntity>> partitions = new ArrayList<>();
+        for (Partition partition : partition(entities, BlockingKey.forBatch(entities), kinds, maxPartitions)) {
+            partitions.add(partition.entities());
+        }
+        return partitions;
+    }
+
+    /**
+     * @param entities The batch.
+     * @param keys The batch's keys (see {@link BlockingKey#forBatch(List, Map)}).
+     * @param kinds The key kinds the rules join on (see {@link BlockingKey}); empty for every kind.
+     * @param maxPartitions The number of partitions to aim for; components are never split, so a
+     *                      large component gives fewer, uneven partitions.
+     * @return The partitions, each in batch order; together they hold every entity and key once.
+     */
+    public static List<Partition> partition(List<MDMEntity> entities, List<BlockingKey> keys, Set<String> kinds,
+                                            int maxPartitions) {
+        UnionFind components = new UnionFind(entities.size());
+        Map<String, Integer> firstWithKey = new HashMap<>();
+        for (BlockingKey key : keys) {
+            if (kinds.isEmpty() || kinds.contains(key.getKind())) {
+                Integer first = firstWithKey.putIfAbsent(key.getKind() + '\0' + key.getValue(), key.getPosition());
+                if (first != null) {
+                    components.union(first, key.getPosition());
+                }
+            }
+        }
+        List<List<BlockingKey>> keysAt = new ArrayList<>(entities.size());
+        for (int position = 0; position < entities.size(); position++) {
+            keysAt.add(new ArrayList<>(2));
+        }
+        for (BlockingKey key : keys) {
+            keysAt.get(key.getPosition()).add(key);
+        }
+
+        // Components in order of their first entity, each listing its positions in batch order
+        Map<Integer, List<Integer>> members = new LinkedHashMap<>();
+        for (int position = 0; position < entities.size(); position++) {
+            members.computeIfAbsent(components.find(position), root -> new ArrayList<>()).add(position);
+        }
+
+        int targetSize = Math.max(1, (entities.size() + Math.max(1, maxPartitions) - 1) / Math.max(1, maxPartitions));
+        List<Partition> partitions = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (List<Integer> component : members.values()) {
+            positions.addAll(component);
+            if (positions.size() >= targetSize) {
+                partitions.add(partitionAt(entities, keysAt, positions));
+                positions.clear();
+            }
+        }
+        if (!positions.isEmpty()) {
+            partitions.add(partitionAt(entities, keysAt, positions));
+        }
+        return partitions;
+    }
+
+    private static Partition partitionAt(List<MDMEntity> entities, List<List<BlockingKey>> keysAt, List<Integer> positions) {
+        positions.sort(null);
+        List<MDMEntity> partitionEntities = new ArrayList<>(positions.size());
+        List<BlockingKey> partitionKeys = new ArrayList<>();
+        for (int position : positions) {
+            partitionEntities.add(entities.get(position));
+            partitionKeys.addAll(keysAt.get(position));
+        }
+        return new Partition(partitionEntities, partitionKeys);
+    }
+}
@@ -0,0 +1,135 @@
+package com.mdm.botcore.matching;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Keeps the latest block size histogram of every blocked rule and learns stop keys.
+ *
+ * A key that is skipped as capped (see {@link BlockingIndex}) in {@link BlockingPolicy#learnAfter()}
+ * batches is added to the rule's learned stop-list, so later batches drop it before blocking instead
+ * of counting it again. Keys that are sub-blocked on a secondary key are still paired and are never
+ * learned. Reports and stop-lists are kept per company, domain and rule, so a key that is huge in one
+ * company's data does not stop matching in another's. The learned stop-lists live in memory only and
+ * start empty on every restart; keys that should always be stopped belong in the {@code stop-keys} setting.
+ */
+@Component
+public class BlockingMonitor {
+
+    static final int MAX_REPORTED_KEYS = 20;
+
+    private static final Comparator<String> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+    private static final Comparator<Scope> SCOPE_ORDER = Comparator.comparing(Scope::companyId, NULLS_FIRST)
+            .thenComparing(Scope::domain, NULLS_FIRST)
+            .thenComparing(Scope::ruleName);
+
+    private final Map<Scope, BlockingReport> latestReports = new TreeMap<>(SCOPE_ORDER);
+    private final Map<Scope, Map<String, Integer>> cappedBatches = new HashMap<>();
+    private final Map<Scope, Set<String>> learnedStopKeys = new HashMap<>();
+
+    // The company and domain are null for batches matched outside a company
+    private record Scope(String companyId, String domain, String ruleName) {
+    }
+
+    /**
+     * Blocking outcome of a rule in one batch.
+     * @param companyId The company the batch belonged to, or {@code null}.
+     * @param domain The batch's domain, or {@code null}.
+     * @param ruleName The rule.
+     * @param recordedAt When the index was built.
+     * @param histogram Sizes of the blocks that were paired.
+     * @param maxBlockSize The cap that applied; 0 for none.
+     * @param cappedKeys The most frequent capped keys with their frequency, at most {@value #MAX_REPORTED_KEYS}.
+     * @param learnedStopKeys The rule's learned stop-list after this batch.
+     */
+    public record BlockingReport(String companyId, String domain, String ruleName, LocalDateTime recordedAt,
+                                 BlockSizeHistogram histogram, int maxBlockSize, Map<String, Integer> cappedKeys,
+                                 Set<String> learnedStopKeys) {
+    }
+
+    /**
+     * @return The case-folded keys learned as stop keys for the rule outside any company.
+     */
+    public Set<String> getLearnedStopKeys(String ruleName) {
+        return getLearnedStopKeys(null, null, ruleName);
+    }
+
+    /**
+     * @param companyId The company, or {@code null}.
+     * @param domain The domain, or {@code null}.
+     * @param ruleName The rule.
+     * @return The case-folded keys learned as stop keys for the rule in the company's domain.
+     */
+    public synchronized Set<String> getLearnedStopKeys(String companyId, String domain, String ruleName) {
+        Set<String> learned = learnedStopKeys.get(new Scope(companyId, domain, ruleName));
+        return learned != null ? Set.copyOf(learned) : Set.of();
+    }
+
+    /**
+     * Records a rule's blocking index outside any company.
+     * @see #record(String, String, String, BlockingIndex, BlockingPolicy)
+     */
+    public void record(String ruleName, BlockingIndex<?> index, BlockingPolicy policy) {
+        record(null, null, ruleName, index, policy);
+    }
+
+    /**
+     * Records a rule's blocking index and, when capped blocks are skipped rather than sub-blocked,
+     * counts its capped keys towards the learned stop-list of the company's domain.
+     * @param companyId The company the batch belonged to, or {@code null}.
+     * @param domain The batch's domain, or {@code null}.
+     * @param ruleName The rule.
+     * @param index The built index.
+     * @param policy The policy it was built with.
+     */
+    public synchronized void record(String companyId, String domain, String ruleName, BlockingIndex<?> index,
+                                    BlockingPolicy policy) {
+        Scope scope = new Scope(companyId, domain, ruleName);
+        if (policy.learnAfter() > 0 && policy.subBlockKey() == null) {
+            Map<String, Integer> batches = cappedBatches.computeIfAbsent(scope, s -> new HashMap<>());
+            Set<String> foldedKeys = new HashSet<>();
+            for (String key : index.getCappedKeys().keySet()) {
+                foldedKeys.add(MatchKeys.foldCase(key));
+            }
+            for (String key : foldedKeys) {
+                if (batches.merge(key, 1, Integer::sum) >= policy.learnAfter()) {
+                    batches.remove(key);
+                    learnedStopKeys.computeIfAbsent(scope, s -> new HashSet<>()).add(key);
+                    System.out.println("Blocking: " + ruleName + " learned stop key " + key
+                            + (companyId != null ? " for company " + companyId + " (" + domain + ")" : "")
+                            + " after it was capped in " + policy.learnAfter() + " batches");
+                }
+            }
+        }
+        latestReports.put(scope, new BlockingReport(companyId, domain, ruleName, LocalDateTime.now(),
+                index.histogram(), policy.maxBlockSize(), largest(index.getCappedKeys()),
+                getLearnedStopKeys(companyId, domain, ruleName)));
+    }
+
+    /**
+     * @return The latest report of every blocked rule, by company, domain and rule name.
+     */
+    public synchronized List<BlockingReport> getReports() {
+        return new ArrayList<>(latestReports.values());
+    }
+
+    private static Map<String, Integer> largest(Map<String, Integer> cappedKeys) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(cappedKeys.entrySet());
+        entries.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        Map<String, Integer> largest = new LinkedHashMap<>();
+        for (int k = 0; k < Math.min(MAX_REPORTED_KEYS, entries.size()); k++) {
+            largest.put(entries.get(k).getKey(), entries.get(k).getValue());
+        }
+        return largest;
+    }
+}
@@ -0,0 +1,30 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * How an exact rule's blocking index guards against huge blocks.
+ *
+ * @param maxBlockSize Largest block paired as is; 0 disables the cap (see {@link BlockingIndex}).
+ * @param subBlockKey Secondary key that splits capped blocks, or {@code null} to skip capped blocks.
+ * @param stopKeys Case-folded keys that never form a block, e.g. free-mail domains.
+ * @param learnAfter Batches in which a key must be capped before it is added to the stop-list; 0 disables learning.
+ */
+public record BlockingPolicy(int maxBlockSize, Function<MDMEntity, String> subBlockKey, Set<String> stopKeys,
+                             int learnAfter) {
+
+    public static final int DEFAULT_LEARN_AFTER = 3;
+
+    /** No cap and no stop keys: every block is paired. */
+    public static final BlockingPolicy UNLIMITED = new BlockingPolicy(0, null, Set.of(), DEFAULT_LEARN_AFTER);
+
+    /**
+     * @return Whether the key, after case folding, is on the stop-list.
+     */
+    public boolean isStopKey(String key) {
+        return !stopKeys.isEmpty() && stopKeys.contains(MatchKeys.foldCase(key));
+    }
+}
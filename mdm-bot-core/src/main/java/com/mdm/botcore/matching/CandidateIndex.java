@@ -0,0 +1,61 @@
+package com.mdm.botcore.matching;
+
+import java.util.function.BiConsumer;
+
+/**
+ * A candidate-generation stage: decides which pairs of items are worth comparing.
+ *
+ * Implementations emit pairs of positions {@code (i, j)} with {@code i < j}, grouped by the
+ * anchor position {@code i} in ascending order, and with ascending {@code j} per anchor. Every
+ * pair is emitted at most once. Because disjoint anchor ranges yield disjoint pair sets, callers
+ * can split the anchor range across workers and still reassemble the sequential order.
+ *
+ * @param <T> The item type (usually {@code MDMEntity}).
+ */
+public interface CandidateIndex<T> {
+
+    /**
+     * Receives a candidate pair as item positions.
+     */
+    @FunctionalInterface
+    interface PairConsumer {
+        void accept(int i, int j);
+    }
+
+    /**
+     * @return The number of indexed items, i.e. the exclusive upper bound of anchor positions.
+     */
+    int size();
+
+    /**
+     * @param position An item position.
+     * @return The item at that position.
+     */
+    T item(int position);
+
+    /**
+     * Emits the candidate pairs whose first position lies in {@code [fromAnchor, toAnchor)}.
+     * @param fromAnchor First anchor position (inclusive).
+     * @param toAnchor Last anchor position (exclusive).
+     * @param pairConsumer Receives {@code (i, j)} with {@code i < j}.
+     */
+    void forEachPairIndex(int fromAnchor, int toAnchor, PairConsumer pairConsumer);
+
+    /**
+     * Emits the candidate pairs whose first item lies in {@code [fromAnchor, toAnchor)}.
+     * @param fromAnchor First anchor position (inclusive).
+     * @param toAnchor Last anchor position (exclusive).
+     * @param pairConsumer Receives {@code (earlier item, later item)}.
+     */
+    default void forEachPair(int fromAnchor, int toAnchor, BiConsumer<? super T, ? super T> pairConsumer) {
+        forEachPairIndex(fromAnchor, toAnchor, (i, j) -> pairConsumer.accept(item(i), item(j)));
+    }
+
+    /**
+     * Emits every candidate pair.
+     * @param pairConsumer Receives {@code (earlier item, later item)}.
+     */
+    default void forEachPair(BiConsumer<? super T, ? super T> pairConsumer) {
+        forEachPair(0, size(), pairConsumer);
+    }
+}
@@ -0,0 +1,112 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.config.MatchingProperties;
+import com.mdm.botcore.domain.model.MDMEntity;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Builds the candidate index configured for a rule.
+ * Strategy, window, sort keys, MinHash banding, trigram overlap and stop-token frequency are resolved per rule through {@link MatchingProperties}.
+ * Exact rules are blocked under their {@link BlockingPolicy}, and the outcome is reported to the {@link BlockingMonitor}
+ * under the company and domain the factory is scoped to (see {@link #forCompany(String, String)}).
+ */
+public class CandidateIndexFactory {
+
+    private final MatchingProperties matchingProperties;
+    private final BlockingMonitor blockingMonitor;
+    private final String companyId;
+    private final String domain;
+
+    public CandidateIndexFactory(MatchingProperties matchingProperties) {
+        this(matchingProperties, new BlockingMonitor());
+    }
+
+    public CandidateIndexFactory(MatchingProperties matchingProperties, BlockingMonitor blockingMonitor) {
+        this(matchingProperties, blockingMonitor, null, null);
+    }
+
+    private CandidateIndexFactory(MatchingProperties matchingProperties, BlockingMonitor blockingMonitor,
+                                  String companyId, String domain) {
+        this.matchingProperties = matchingProperties;
+        this.blockingMonitor = blockingMonitor;
+        this.companyId = companyId;
+        this.domain = domain;
+    }
+
+    /**
+     * @param companyId The company whose batch is matched, or {@code null}.
+     * @param domain The batch's domain, or {@code null}.
+     * @return A factory that learns and reports blocking under the company's domain.
+     */
+    public CandidateIndexFactory forCompany(String companyId, String domain) {
+        return new CandidateIndexFactory(matchingProperties, blockingMonitor, companyId, domain);
+    }
+
+    /**
+     * Blocks the entities on an exact rule's key, leaving out stop keys (configured and learned)
+     * and capping oversized blocks.
+     * @param rule A rule with a blocking key.
+     * @param entities The batch.
+     * @return The blocking index; its positions are those of {@code entities}.
+     */
+    public BlockingIndex<MDMEntity> blocking(PairRule rule, List<MDMEntity> entities) {
+        String ruleName = rule.getName();
+        BlockingPolicy policy = matchingProperties.getBlockingPolicy(ruleName, rule.defaultBlockingPolicy());
+        Set<String> learnedStopKeys = blockingMonitor.getLearnedStopKeys(companyId, domain, ruleName);
+        Function<MDMEntity, String> blockingKey = rule.blockingKey();
+        BlockingIndex<MDMEntity> index = BlockingIndex.build(entities, entity -> {
+            String key = blockingKey.apply(entity);
+            if (key == null || policy.isStopKey(key)
+                    || (!learnedStopKeys.isEmpty() && learnedStopKeys.contains(MatchKeys.foldCase(key)))) {
+                return null;
+            }
+            return key;
+        }, policy.maxBlockSize(), policy.subBlockKey());
+        if (!index.getCappedKeys().isEmpty()) {
+            System.out.println("Blocking: " + ruleName + " capped " + index.getCappedKeys().size() + " keys above "
+                    + policy.maxBlockSize() + " entities (" + (policy.subBlockKey() != null ? "sub-blocked on "
+                    + policy.subBlockKey() : "skipped") + "): " + index.getCappedKeys().keySet());
+        }
+        blockingMonitor.record(companyId, domain, ruleName, index, policy);
+        return index;
+    }
+
+    /**
+     * @param ruleName The rule the candidates are generated for.
+     * @param entities The entities that qualify for the rule.
+     * @param comparedValue The normalized value the rule compares, used by text-based strategies.
+     * @param defaultStrategy Strategy to use when none is configured for the rule.
+     * @param threshold The rule's similarity threshold, reported with the candidates it keeps.
+     * @return The candidate index for the rule.
+     */
+    public CandidateIndex<MDMEntity> forRule(String ruleName, List<MDMEntity> entities,
+                                             Function<MDMEntity, String> comparedValue, CandidateStrategy defaultStrategy,
+                                             double threshold) {
+        CandidateStrategy strategy = matchingProperties.getCandidateStrategy(ruleName, defaultStrategy);
+        switch (strategy) {
+            case SORTED_NEIGHBOURHOOD:
+                return SortedNeighbourhoodIndex.build(entities,
+                        matchingProperties.getSortKeys(ruleName),
+                        matchingProperties.getWindow(ruleName));
+            case MINHASH:
+                MinHashLshIndex<MDMEntity> lshIndex = MinHashLshIndex.build(entities, comparedValue,
+                        matchingProperties.getShingleSize(ruleName),
+                        matchingProperties.getBands(ruleName),
+                        matchingProperties.getRows(ruleName));
+                if (matchingProperties.isReportEnabled(ruleName)) {
+                    System.out.println("Matching: " + ruleName + " " + lshIndex.report(threshold));
+                }
+                return lshIndex;
+            case TRIGRAM:
+                return TrigramIndex.build(entities, comparedValue, matchingProperties.getMinOverlap(ruleName));
+            case TFIDF:
+                return TfIdfNameIndex.build(entities, comparedValue, matchingProperties.getMaxTokenFrequency(ruleName));
+            case ALL_PAIRS:
+            default:
+                return new AllPairsIndex<>(entities);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.mdm.botcore.matching;
+
+import java.util.Locale;
+
+/**
+ * Candidate-generation strategies that a rule can be configured with
+ * (property {@code mdm.matching.rules.<RuleName>.candidates}).
+ */
+public enum CandidateStrategy {
+    /** Compare every pair; exhaustive but quadratic. */
+    ALL_PAIRS,
+    /** Multi-pass sorted neighbourhood with a bounded window. */
+    SORTED_NEIGHBOURHOOD,
+    /** MinHash signatures over character shingles, banded for locality-sensitive hashing. */
+    MINHASH,
+    /** Character-trigram inverted index; pairs must share a minimum fraction of their trigrams. */
+    TRIGRAM,
+    /** Token inverted index over TF-IDF weighted names; pairs must share an informative token. */
+    TFIDF;
+
+    /**
+     * Parses a property value such as {@code sorted-neighbourhood} or {@code ALL_PAIRS}.
+     * @throws IllegalArgumentException if the value does not name a strategy.
+     */
+    public static CandidateStrategy parse(String value) {
+        try {
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown candidate strategy: " + value);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.mdm.botcore.matching;
+
+/**
+ * Caps the number of distinct pairs a batch may score with expensive (fuzzy) comparisons.
+ *
+ * Pairs are identified by the positions of their entities in the engine's batch, so a pair
+ * scored by one rule is free for every later rule; once the budget is spent, new pairs are
+ * refused. Shared by the workers of a {@link ParallelPairMatcher}, so charging is synchronized; with
+ * more than one worker, which pairs are refused after exhaustion depends on scheduling. An unlimited
+ * budget never takes the lock.
+ */
+public final class ComparisonBudget {
+
+    private final long maxComparisons;
+    private final LongPairSet charged = new LongPairSet();
+    private long refused;
+
+    /**
+     * @param maxComparisons Distinct pairs that may be scored; 0 or less means unlimited.
+     */
+    public ComparisonBudget(long maxComparisons) {
+        this.maxComparisons = maxComparisons;
+    }
+
+    /**
+     * @return Whether the pair may be scored: it was already charged, or budget remains (and is now spent on it).
+     */
+    public boolean tryCharge(int position1, int position2) {
+        // maxComparisons is final, so the unlimited case needs no synchronization
+        return maxComparisons <= 0 || charge(position1, position2);
+    }
+
+    private synchronized boolean charge(int position1, int position2) {
+        if (charged.contains(position1, position2)) {
+            return true;
+        }
+        if (charged.size() >= maxComparisons) {
+            refused++;
+            return false;
+        }
+        charged.add(position1, position2);
+        return true;
+    }
+
+    /** @return The number of distinct pairs charged so far. */
+    public synchronized int getCharged() {
+        return charged.size();
+    }
+
+    /** @return The number of pair comparisons refused because the budget was exhausted. */
+    public synchronized long getRefused() {
+        return refused;
+    }
+
+    public boolean isUnlimited() {
+        return maxComparisons <= 0;
+    }
+}
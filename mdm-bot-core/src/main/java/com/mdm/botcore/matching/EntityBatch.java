@@ -0,0 +1,152 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented view of a batch, built once so that pair predicates read primitive arrays by
+ * position instead of dereferencing entity objects scattered over the heap.
+ *
+ * Types and case-folded names are dictionary encoded (equal codes mean equal values; -1 means
+ * missing), addresses, phone digits and email domains are kept as their 64-bit
+ * {@link MatchFeatures} hashes (0 means missing), and the raw field lengths the standard rules
+ * qualify on are kept as ints. Hash equality is confirmed against the features of the two
+ * entities, so a collision can never produce a match. Entities are only touched again to
+ * build suggestions for matching pairs.
+ */
+public final class EntityBatch {
+
+    private final List<MDMEntity> entities;
+    private final Map<String, Integer> typeCodes = new HashMap<>();
+    private final int[] types;
+    private final Map<String, Integer> nameCodes = new HashMap<>();
+    private final List<String> nameDictionary = new ArrayList<>();
+    private final int[] names;
+    private final int[] nameLengths;
+    private final int[] addressLengths;
+    private final int[] phoneLengths;
+    private final long[] addressHashes;
+    private final long[] phoneHashes;
+    private final long[] emailDomainHashes;
+
+    private EntityBatch(List<MDMEntity> entities) {
+        int size = entities.size();
+        this.entities = entities;
+        this.types = new int[size];
+        this.names = new int[size];
+        this.nameLengths = new int[size];
+        this.addressLengths = new int[size];
+        this.phoneLengths = new int[size];
+        this.addressHashes = new long[size];
+        this.phoneHashes = new long[size];
+        this.emailDomainHashes = new long[size];
+        for (int i = 0; i < size; i++) {
+            MDMEntity entity = entities.get(i);
+            MatchFeatures features = MatchFeatures.of(entity);
+            types[i] = entity.getType() != null ? typeCodes.computeIfAbsent(entity.getType(), t -> typeCodes.size()) : -1;
+            names[i] = features.getFoldedName() != null ? nameCode(features.getFoldedName()) : -1;
+            nameLengths[i] = length(entity.getName());
+            addressLengths[i] = length(entity.getAddress());
+            phoneLengths[i] = length(entity.getPhone());
+            addressHashes[i] = features.getAddressHash();
+            phoneHashes[i] = features.getPhoneHash();
+            emailDomainHashes[i] = features.getEmailDomainHash();
+        }
+    }
+
+    /**
+     * Builds the columns of a batch; match features are computed for entities that lack them.
+     * @param entities The batch; the list is not copied.
+     */
+    public static EntityBatch of(List<MDMEntity> entities) {
+        return new EntityBatch(entities);
+    }
+
+    /**
+     * Builds the columns over the items of a candidate index, by position.
+     */
+    public static EntityBatch of(CandidateIndex<MDMEntity> candidates) {
+        List<MDMEntity> entities = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            entities.add(candidates.item(i));
+        }
+        return new EntityBatch(entities);
+    }
+
+    public int size() {
+        return entities.size();
+    }
+
+    /**
+     * Materializes the entity at a position, e.g. for an emitted suggestion.
+     */
+    public MDMEntity entity(int position) {
+        return entities.get(position);
+    }
+
+    /** @return Whether the entity at the position has the given type. */
+    public boolean hasType(int position, String type) {
+        Integer code = typeCodes.get(type);
+        return code != null && types[position] == code;
+    }
+
+    /** @return The dictionary code of the case-folded name, or -1 when the name is missing. */
+    public int nameCode(int position) { return names[position]; }
+    /** @return The case-folded name, shared by every position with the same name code. */
+    public String foldedName(int position) { return names[position] >= 0 ? nameDictionary.get(names[position]) : null; }
+    /** @return The number of distinct case-folded names. */
+    public int distinctNames() { return nameDictionary.size(); }
+    /** @return The length of the raw name, or -1 when missing. */
+    public int nameLength(int position) { return nameLengths[position]; }
+    /** @return The length of the raw address, or -1 when missing. */
+    public int addressLength(int position) { return addressLengths[position]; }
+    /** @return The length of the raw phone number, or -1 when missing. */
+    public int phoneLength(int position) { return phoneLengths[position]; }
+    /** @return Whether the entity at the position has an email domain. */
+    public boolean hasEmailDomain(int position) { return emailDomainHashes[position] != 0L; }
+
+    /** @return Whether both positions have the same (case-insensitive) name. */
+    public boolean sameName(int position1, int position2) {
+        return names[position1] >= 0 && names[position1] == names[position2];
+    }
+
+    /** @return Whether both positions have the same (case-insensitive) address. */
+    public boolean sameAddress(int position1, int position2) {
+        return addressHashes[position1] != 0L && addressHashes[position1] == addressHashes[position2]
+                && features(position1).sameAddress(features(position2));
+    }
+
+    /** @return Whether both positions have the same digits-only phone number. */
+    public boolean samePhone(int position1, int position2) {
+        return phoneHashes[position1] != 0L && phoneHashes[position1] == phoneHashes[position2]
+                && features(position1).samePhone(features(position2));
+    }
+
+    /** @return Whether both positions have the same email domain. */
+    public boolean sameEmailDomain(int position1, int position2) {
+        return emailDomainHashes[position1] != 0L && emailDomainHashes[position1] == emailDomainHashes[position2]
+                && features(position1).sameEmailDomain(features(position2));
+    }
+
+    private MatchFeatures features(int position) {
+        return MatchFeatures.of(entities.get(position));
+    }
+
+    private int nameCode(String foldedName) {
+        Integer code = nameCodes.get(foldedName);
+        if (code == null) {
+            code = nameDictionary.size();
+            nameCodes.put(foldedName, code);
+            nameDictionary.add(foldedName);
+        }
+        return code;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : -1;
+    }
+}
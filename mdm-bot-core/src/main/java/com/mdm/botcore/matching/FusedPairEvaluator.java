@@ -0,0 +1,182 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Evaluates several pair rules in a single walk over the candidate pairs.
+ *
+ * Instead of each rule filtering the batch and running its own pair loop, the candidates of all
+ * rules are merged into one {@link UnionCandidateIndex} (the rules' blocking keys, or all pairs
+ * when a rule cannot be blocked) and every pair is tested against every rule it qualifies for.
+ * A blocked rule only matches pairs inside one of its own blocks, so a pair brought in by another
+ * rule's block never bypasses the rule's stop keys and block caps. Matches are still recorded per
+ * rule, in the same order the rule's own loop would produce.
+ */
+public final class FusedPairEvaluator {
+
+    private FusedPairEvaluator() {}
+
+    /**
+     * @param entities The batch; match features should already be prepared.
+     * @param rules The rules to evaluate.
+     * @return Matches per rule.
+     */
+    public static Result evaluate(List<MDMEntity> entities, List<PairRule> rules) {
+        List<BlockingIndex<MDMEntity>> blocks = blocks(rules, rule -> BlockingIndex.build(entities, rule.blockingKey()));
+        return evaluate(candidates(entities, blocks), rules, blocks, ParallelPairMatcher.sequential());
+    }
+
+    /**
+     * Evaluates the rules over the union of their blocking indexes as built by the factory (stop keys
+     * and block size caps applied), or over all pairs if any rule has no blocking key.
+     * @param entities The batch; match features should already be prepared.
+     * @param rules The rules to evaluate.
+     * @param candidateIndexFactory Blocks each rule under its policy.
+     * @param pairMatcher Splits the candidate walk across workers; matches keep the sequential order.
+     * @return Matches per rule.
+     */
+    public static Result evaluate(List<MDMEntity> entities, List<PairRule> rules,
+                                  CandidateIndexFactory candidateIndexFactory, ParallelPairMatcher pairMatcher) {
+        List<BlockingIndex<MDMEntity>> blocks = blocks(rules, rule -> candidateIndexFactory.blocking(rule, entities));
+        return evaluate(candidates(entities, blocks), rules, blocks, pairMatcher);
+    }
+
+    /**
+     * Evaluates the rules against externally generated candidates; every rule sees every candidate pair.
+     * @param candidates Candidate pairs over the batch.
+     * @param rules The rules to evaluate.
+     * @param pairMatcher Splits the candidate walk across workers; matches keep the sequential order.
+     * @return Matches per rule.
+     */
+    public static Result evaluate(CandidateIndex<MDMEntity> candidates, List<PairRule> rules, ParallelPairMatcher pairMatcher) {
+        return evaluate(candidates, rules, Collections.nCopies(rules.size(), null), pairMatcher);
+    }
+
+    private static Result evaluate(CandidateIndex<MDMEntity> candidates, List<PairRule> rules,
+                                   List<BlockingIndex<MDMEntity>> blocks, ParallelPairMatcher pairMatcher) {
+        // Predicates run over the batch columns; entities are only materialized for matches
+        EntityBatch batch = EntityBatch.of(candidates);
+        int size = batch.size();
+        boolean[][] qualifies = new boolean[rules.size()][size];
+        for (int r = 0; r < rules.size(); r++) {
+            for (int i = 0; i < size; i++) {
+                qualifies[r][i] = rules.get(r).qualifies(batch, i);
+            }
+        }
+        return pairMatcher.reduce(size, () -> new Result(candidates, rules),
+                (from, to, result) -> candidates.forEachPairIndex(from, to, (i, j) -> {
+                    result.comparedPairs++;
+                    for (int r = 0; r < qualifies.length; r++) {
+                        BlockingIndex<MDMEntity> block = blocks.get(r);
+                        if (qualifies[r][i] && qualifies[r][j] && (block == null || block.sameBlock(i, j))
+                                && rules.get(r).matches(batch, i, j)) {
+                            result.add(r, i, j);
+                        }
+                    }
+                }),
+                Result::append);
+    }
+
+    // The blocking index of every rule, null for rules without a blocking key
+    private static List<BlockingIndex<MDMEntity>> blocks(List<PairRule> rules,
+                                                         Function<PairRule, BlockingIndex<MDMEntity>> blocking) {
+        List<BlockingIndex<MDMEntity>> blocks = new ArrayList<>(rules.size());
+        for (PairRule rule : rules) {
+            blocks.add(rule.blockingKey() != null ? blocking.apply(rule) : null);
+        }
+        return blocks;
+    }
+
+    // The union of the rules' blocks, or all pairs if any rule has no blocking key
+    private static CandidateIndex<MDMEntity> candidates(List<MDMEntity> entities, List<BlockingIndex<MDMEntity>> blocks) {
+        if (blocks.isEmpty() || blocks.contains(null)) {
+            return new AllPairsIndex<>(entities);
+        }
+        return new UnionCandidateIndex<>(blocks);
+    }
+
+    /**
+     * Matches of a fused evaluation, kept per rule as packed position pairs.
+     */
+    public static final class Result {
+        private final CandidateIndex<MDMEntity> candidates;
+        private final List<PairRule> rules;
+        private final long[][] matches;
+        private final int[] matchCounts;
+        private long comparedPairs;
+
+        private Result(CandidateIndex<MDMEntity> candidates, List<PairRule> rules) {
+            this.candidates = candidates;
+            this.rules = rules;
+            this.matches = new long[rules.size()][8];
+            this.matchCounts = new int[rules.size()];
+        }
+
+        private void add(int rule, int i, int j) {
+            if (matchCounts[rule] == matches[rule].length) {
+                matches[rule] = Arrays.copyOf(matches[rule], matchCounts[rule] * 2);
+            }
+            matches[rule][matchCounts[rule]++] = ((long) i << 32) | j;
+        }
+
+        // Appends the matches of a later anchor range
+        private Result append(Result other) {
+            for (int r = 0; r < matches.length; r++) {
+                if (matchCounts[r] + other.matchCounts[r] > matches[r].length) {
+                    matches[r] = Arrays.copyOf(matches[r], matchCounts[r] + other.matchCounts[r]);
+                }
+                System.arraycopy(other.matches[r], 0, matches[r], matchCounts[r], other.matchCounts[r]);
+                matchCounts[r] += other.matchCounts[r];
+            }
+            comparedPairs += other.comparedPairs;
+            return this;
+        }
+
+        /**
+         * @return The number of candidate pairs that were walked (once for all rules).
+         */
+        public long getComparedPairs() {
+            return comparedPairs;
+        }
+
+        /**
+         * @return The number of matches of the named rule, 0 for unknown rules.
+         */
+        public int matchCount(String ruleName) {
+            int rule = indexOf(ruleName);
+            return rule < 0 ? 0 : matchCounts[rule];
+        }
+
+        /**
+         * Emits the matches of one rule in anchor order.
+         * @param ruleName The rule name.
+         * @param pairConsumer Receives {@code (earlier entity, later entity)}.
+         */
+        public void forEachMatch(String ruleName, BiConsumer<MDMEntity, MDMEntity> pairConsumer) {
+            int rule = indexOf(ruleName);
+            if (rule < 0) {
+                return;
+            }
+            for (int k = 0; k < matchCounts[rule]; k++) {
+                long pair = matches[rule][k];
+                pairConsumer.accept(candidates.item((int) (pair >>> 32)), candidates.item((int) pair));
+            }
+        }
+
+        private int indexOf(String ruleName) {
+            for (int r = 0; r < rules.size(); r++) {
+                if (rules.get(r).getName().equals(ruleName)) {
+                    return r;
+                }
+            }
+            return -1;
+        }
+    }
+}
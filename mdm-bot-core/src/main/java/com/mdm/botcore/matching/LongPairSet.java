@@ -0,0 +1,140 @@
+package com.mdm.botcore.matching;
+
+import java.util.Arrays;
+
+/**
+ * Set of unordered pairs of non-negative int ordinals (entity positions, id ordinals), each
+ * pair packed into one {@code long} and kept in an open-addressing table, so that tracking
+ * seen, emitted or rejected pairs needs neither boxed keys nor concatenated id strings.
+ *
+ * Members are numbered in insertion order ({@link #indexOf(int, int)}, {@link #pairAt(int)}),
+ * which lets callers keep per-pair data in a parallel list.
+ * Not thread-safe.
+ */
+public final class LongPairSet {
+
+    private static final long EMPTY = -1L; // never a packed pair: both halves would be negative
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] table;     // packed pairs, EMPTY for free slots
+    private int[] slotOrder;  // per slot: insertion index of the pair in it
+    private long[] members;   // packed pairs in insertion order
+    private int size;
+
+    public LongPairSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize Number of pairs the set should hold without resizing.
+     */
+    public LongPairSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2 - 1)) << 1;
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        slotOrder = new int[capacity];
+        members = new long[Math.max(MIN_CAPACITY, expectedSize)];
+    }
+
+    /**
+     * Packs an unordered pair: {@code pack(a, b) == pack(b, a)}.
+     * @throws IllegalArgumentException if an ordinal is negative.
+     */
+    public static long pack(int ordinal1, int ordinal2) {
+        if (ordinal1 < 0 || ordinal2 < 0) {
+            throw new IllegalArgumentException("Pair ordinals must be non-negative: " + ordinal1 + ", " + ordinal2);
+        }
+        int low = Math.min(ordinal1, ordinal2);
+        int high = Math.max(ordinal1, ordinal2);
+        return ((long) low << 32) | high;
+    }
+
+    /** @return The smaller ordinal of a packed pair. */
+    public static int low(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    /** @return The larger ordinal of a packed pair. */
+    public static int high(long pair) {
+        return (int) pair;
+    }
+
+    /**
+     * @return Whether the pair was added, i.e. was not yet a member.
+     */
+    public boolean add(int ordinal1, int ordinal2) {
+        long pair = pack(ordinal1, ordinal2);
+        int slot = slot(pair);
+        if (table[slot] == pair) {
+            return false;
+        }
+        if ((size + 1) * 2 > table.length) {
+            rehash(table.length * 2);
+            slot = slot(pair);
+        }
+        table[slot] = pair;
+        slotOrder[slot] = size;
+        if (size == members.length) {
+            members = Arrays.copyOf(members, size * 2);
+        }
+        members[size++] = pair;
+        return true;
+    }
+
+    public boolean contains(int ordinal1, int ordinal2) {
+        return indexOf(ordinal1, ordinal2) >= 0;
+    }
+
+    /**
+     * @return The insertion index of the pair, or -1 if it is not a member.
+     */
+    public int indexOf(int ordinal1, int ordinal2) {
+        long pair = pack(ordinal1, ordinal2);
+        int slot = slot(pair);
+        return table[slot] == pair ? slotOrder[slot] : -1;
+    }
+
+    /**
+     * @return The packed pair added {@code index}-th.
+     */
+    public long pairAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Pair " + index + " of " + size);
+        }
+        return members[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // The slot holding the pair, or the free slot where it would go
+    private int slot(long pair) {
+        int mask = table.length - 1;
+        int slot = mix(pair) & mask;
+        while (table[slot] != EMPTY && table[slot] != pair) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        slotOrder = new int[capacity];
+        for (int index = 0; index < size; index++) {
+            int slot = slot(members[index]);
+            table[slot] = members[index];
+            slotOrder[slot] = index;
+        }
+    }
+
+    private static int mix(long pair) {
+        long hash = pair * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
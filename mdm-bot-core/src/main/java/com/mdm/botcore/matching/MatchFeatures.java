@@ -0,0 +1,116 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+
+import java.util.List;
+
+/**
+ * Normalized match features of one entity, computed once per batch so that pairwise
+ * comparisons only read precomputed values instead of normalizing (and allocating) per pair.
+ *
+ * Every feature is {@code null} when the underlying field is missing; the matching hash is
+ * then 0. Hashes let the hot path reject unequal values with a single {@code long} comparison
+ * before falling back to {@code equals}.
+ */
+public final class MatchFeatures {
+
+    private final String foldedName;
+    private final String foldedAddress;
+    private final String normalizedAddress;
+    private final String phoneDigits;
+    private final String emailDomain;
+    private final long nameHash;
+    private final long addressHash;
+    private final long phoneHash;
+    private final long emailDomainHash;
+
+    private MatchFeatures(MDMEntity entity) {
+        this.foldedName = entity.getName() != null ? MatchKeys.foldCase(entity.getName()) : null;
+        this.foldedAddress = entity.getAddress() != null ? MatchKeys.foldCase(entity.getAddress()) : null;
+        this.normalizedAddress = entity.getAddress() != null ? MatchKeys.normalizedAddress(entity.getAddress()) : null;
+        this.phoneDigits = entity.getPhone() != null ? MatchKeys.digitsOnly(entity.getPhone()) : null;
+        String email = entity.getEmail();
+        int at = email != null ? email.indexOf('@') : -1;
+        this.emailDomain = at >= 0 ? email.substring(at) : null;
+        this.nameHash = hash64(foldedName);
+        this.addressHash = hash64(foldedAddress);
+        this.phoneHash = hash64(phoneDigits);
+        this.emailDomainHash = hash64(emailDomain);
+    }
+
+    /**
+     * Computes (or recomputes) the features of every entity in the batch and stores them on the entity.
+     * Call this once before matching so that features reflect the current field values.
+     * @param entities The batch to prepare.
+     */
+    public static void prepare(List<MDMEntity> entities) {
+        for (MDMEntity entity : entities) {
+            entity.setMatchFeatures(new MatchFeatures(entity));
+        }
+    }
+
+    /**
+     * Returns the features stored on the entity, computing them if the batch was not prepared.
+     * @param entity The entity.
+     * @return Its match features.
+     */
+    public static MatchFeatures of(MDMEntity entity) {
+        MatchFeatures features = entity.getMatchFeatures();
+        if (features == null) {
+            features = new MatchFeatures(entity);
+            entity.setMatchFeatures(features);
+        }
+        return features;
+    }
+
+    /** @return The case-folded name (see {@link MatchKeys#foldCase(String)}). */
+    public String getFoldedName() { return foldedName; }
+    /** @return The case-folded address. */
+    public String getFoldedAddress() { return foldedAddress; }
+    /** @return The address normalized for fuzzy comparison (see {@link MatchKeys#normalizedAddress(String)}). */
+    public String getNormalizedAddress() { return normalizedAddress; }
+    /** @return The phone number reduced to its digits. */
+    public String getPhoneDigits() { return phoneDigits; }
+    /** @return The email suffix starting at '@', as matched by the email domain rules. */
+    public String getEmailDomain() { return emailDomain; }
+    public long getNameHash() { return nameHash; }
+    public long getAddressHash() { return addressHash; }
+    public long getPhoneHash() { return phoneHash; }
+    public long getEmailDomainHash() { return emailDomainHash; }
+
+    /** @return Whether both entities have the same (case-insensitive) name. */
+    public boolean sameName(MatchFeatures other) {
+        return nameHash == other.nameHash && foldedName != null && foldedName.equals(other.foldedName);
+    }
+
+    /** @return Whether both entities have the same (case-insensitive) address. */
+    public boolean sameAddress(MatchFeatures other) {
+        return addressHash == other.addressHash && foldedAddress != null && foldedAddress.equals(other.foldedAddress);
+    }
+
+    /** @return Whether both entities have the same digits-only phone number. */
+    public boolean samePhone(MatchFeatures other) {
+        return phoneHash == other.phoneHash && phoneDigits != null && phoneDigits.equals(other.phoneDigits);
+    }
+
+    /** @return Whether both entities have the same email domain. */
+    public boolean sameEmailDomain(MatchFeatures other) {
+        return emailDomainHash == other.emailDomainHash && emailDomain != null && emailDomain.equals(other.emailDomain);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a string's characters.
+     * @return The hash, or 0 for {@code null}.
+     */
+    public static long hash64(String value) {
+        if (value == null) {
+            return 0L;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
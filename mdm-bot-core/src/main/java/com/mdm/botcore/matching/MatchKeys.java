@@ -0,0 +1,192 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+
+import java.util.Map;
+
+/**
+ * Normalized match keys used to block entities before pairwise comparison.
+ * Each key function returns {@code null} when the entity does not qualify for the
+ * corresponding rule, so it never lands in a bucket.
+ *
+ * Two entities share a key exactly when the original rule predicate considers them equal,
+ * which lets the equality rules compare only inside a bucket instead of across all pairs.
+ * Keys are read from the entity's precomputed {@link MatchFeatures}.
+ */
+public final class MatchKeys {
+
+    // Street-type and direction abbreviations applied word by word by normalizedAddress
+    private static final Map<String, String> ADDRESS_ABBREVIATIONS = Map.ofEntries(
+            Map.entry("street", "st"),
+            Map.entry("avenue", "ave"),
+            Map.entry("road", "rd"),
+            Map.entry("boulevard", "blvd"),
+            Map.entry("drive", "dr"),
+            Map.entry("lane", "ln"),
+            Map.entry("court", "ct"),
+            Map.entry("place", "pl"),
+            Map.entry("square", "sq"),
+            Map.entry("highway", "hwy"),
+            Map.entry("parkway", "pkwy"),
+            Map.entry("suite", "ste"),
+            Map.entry("floor", "fl"),
+            Map.entry("building", "bldg"),
+            Map.entry("north", "n"),
+            Map.entry("south", "s"),
+            Map.entry("east", "e"),
+            Map.entry("west", "w"));
+
+    static final int NAME_PREFIX_LENGTH = 3;
+
+    private MatchKeys() {}
+
+    /**
+     * Key for "ExactCompanyNameMatch": organizations whose names are equal ignoring case.
+     */
+    public static String companyName(MDMEntity entity) {
+        if (!"Organization".equals(entity.getType()) || entity.getName() == null) {
+            return null;
+        }
+        return MatchFeatures.of(entity).getFoldedName();
+    }
+
+    /**
+     * Key for "PhoneNumberMatch": digits-only phone number for phones with at least 10 characters.
+     */
+    public static String phoneNumber(MDMEntity entity) {
+        String phone = entity.getPhone();
+        if (phone == null || phone.length() < 10) {
+            return null;
+        }
+        return MatchFeatures.of(entity).getPhoneDigits();
+    }
+
+    /**
+     * Key for "AddressMatch": case-folded address for addresses longer than 10 characters.
+     */
+    public static String address(MDMEntity entity) {
+        String address = entity.getAddress();
+        if (address == null || address.length() <= 10) {
+            return null;
+        }
+        return MatchFeatures.of(entity).getFoldedAddress();
+    }
+
+    /**
+     * Text for "FuzzyAddressMatch": the normalized address for addresses longer than 10 characters.
+     * Unlike the blocking keys this is not an equality key; it feeds the trigram candidate index.
+     */
+    public static String fuzzyAddress(MDMEntity entity) {
+        String address = entity.getAddress();
+        if (address == null || address.length() <= 10) {
+            return null;
+        }
+        return MatchFeatures.of(entity).getNormalizedAddress();
+    }
+
+    /**
+     * Blocking key for "FuzzyNameMatch" in DRL: the first {@value #NAME_PREFIX_LENGTH} letters and
+     * digits of an organization's case-folded name. Unlike the other keys it is lossy: names that
+     * differ within their first characters never share it.
+     */
+    public static String namePrefix(MDMEntity entity) {
+        if (!"Organization".equals(entity.getType()) || entity.getName() == null) {
+            return null;
+        }
+        String name = alphanumeric(entity.getName());
+        return name.isEmpty() ? null : name.substring(0, Math.min(NAME_PREFIX_LENGTH, name.length()));
+    }
+
+    /**
+     * Key for "EmailDomainMatch": the email suffix starting at the first '@' (case-sensitive).
+     */
+    public static String emailDomain(MDMEntity entity) {
+        return entity.getEmail() == null ? null : MatchFeatures.of(entity).getEmailDomain();
+    }
+
+    /**
+     * Case-folds a string so that {@code foldCase(a).equals(foldCase(b))} holds exactly when
+     * {@code a.equalsIgnoreCase(b)}. Mirrors the per-character comparison used by
+     * {@link String#equalsIgnoreCase(String)} (upper-case, then lower-case).
+     */
+    public static String foldCase(String value) {
+        char[] folded = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            char f = Character.toLowerCase(Character.toUpperCase(c));
+            if (f != c) {
+                if (folded == null) {
+                    folded = value.toCharArray();
+                }
+                folded[i] = f;
+            }
+        }
+        return folded == null ? value : new String(folded);
+    }
+
+    /**
+     * Case-folds a string and keeps only letters and digits, e.g. "ACME, Inc." becomes "acmeinc".
+     * Used for sort keys and shingling, where punctuation and spacing differences should not matter.
+     * @return The normalized value, or an empty string for {@code null}.
+     */
+    public static String alphanumeric(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(Character.toUpperCase(c)));
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Normalizes an address for fuzzy comparison: case-folds it, treats punctuation as word
+     * separators, collapses whitespace and abbreviates common street types, so that
+     * "123 Main Street" and "123 MAIN ST." both become "123 main st".
+     * @return The normalized address, or an empty string for {@code null}.
+     */
+    public static String normalizedAddress(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(value.length());
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= value.length(); i++) {
+            char c = i < value.length() ? value.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(Character.toUpperCase(c)));
+            } else if (word.length() > 0) {
+                if (normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                String token = word.toString();
+                normalized.append(ADDRESS_ABBREVIATIONS.getOrDefault(token, token));
+                word.setLength(0);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Strips every non-ASCII-digit character, equivalent to {@code value.replaceAll("[^0-9]", "")}
+     * without compiling a regex.
+     */
+    public static String digitsOnly(String value) {
+        StringBuilder digits = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean digit = c >= '0' && c <= '9';
+            if (!digit && digits == null) {
+                digits = new StringBuilder(value.length());
+                digits.append(value, 0, i);
+            } else if (digit && digits != null) {
+                digits.append(c);
+            }
+        }
+        return digits == null ? value : digits.toString();
+    }
+}
@@ -0,0 +1,231 @@
+package com.mdm.botcore.matching;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Locality-sensitive-hashing candidate index based on MinHash signatures of character shingles.
+ *
+ * Each item's text is split into overlapping character k-grams (shingles). A signature of
+ * {@code bands * rows} MinHash values estimates the Jaccard similarity of the shingle sets, and
+ * the signature is cut into {@code bands} bands of {@code rows} values. Two items become a
+ * candidate pair when at least one band is identical, which happens with probability
+ * {@code 1 - (1 - s^rows)^bands} for shingle similarity {@code s}. More rows per band cut
+ * comparisons, more bands raise recall.
+ *
+ * Items whose text is {@code null} or empty are not indexed.
+ *
+ * @param <T> The item type (usually {@code MDMEntity}).
+ */
+public final class MinHashLshIndex<T> implements CandidateIndex<T> {
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private final List<T> items;
+    private final int bands;
+    private final int rows;
+    private final long[][] bandKeys;  // per item: one key per band, null when not indexed
+    private final Map<Long, int[]>[] bandBuckets; // per band: band key -> item positions, ascending
+
+    private MinHashLshIndex(List<T> items, int bands, int rows, long[][] bandKeys, Map<Long, int[]>[] bandBuckets) {
+        this.items = items;
+        this.bands = bands;
+        this.rows = rows;
+        this.bandKeys = bandKeys;
+        this.bandBuckets = bandBuckets;
+    }
+
+    /**
+     * Builds the index by computing one MinHash signature per item.
+     * @param items The items to index; the list is not copied.
+     * @param text Extracts the (already normalized) text to shingle.
+     * @param shingleSize Characters per shingle, e.g. 3.
+     * @param bands Number of bands.
+     * @param rows MinHash values per band.
+     * @return The built index.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> MinHashLshIndex<T> build(List<T> items, Function<? super T, String> text, int shingleSize, int bands, int rows) {
+        if (shingleSize < 1 || bands < 1 || rows < 1) {
+            throw new IllegalArgumentException("MinHash shingle size, bands and rows must be positive");
+        }
+        int size = items.size();
+        int signatureLength = bands * rows;
+        long[] hashSeeds = new long[signatureLength];
+        for (int h = 0; h < signatureLength; h++) {
+            hashSeeds[h] = mix(SEED * (h + 1));
+        }
+
+        long[][] bandKeys = new long[size][];
+        long[] signature = new long[signatureLength];
+        Map<Long, int[]>[] bandBuckets = new Map[bands];
+        for (int b = 0; b < bands; b++) {
+            bandBuckets[b] = new HashMap<>();
+        }
+
+        for (int i = 0; i < size; i++) {
+            String value = text.apply(items.get(i));
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            Arrays.fill(signature, Long.MAX_VALUE);
+            int shingles = Math.max(1, value.length() - shingleSize + 1);
+            for (int s = 0; s < shingles; s++) {
+                long shingle = shingleHash(value, s, Math.min(value.length(), s + shingleSize));
+                for (int h = 0; h < signatureLength; h++) {
+                    long hash = mix(shingle ^ hashSeeds[h]);
+                    if (hash < signature[h]) {
+                        signature[h] = hash;
+                    }
+                }
+            }
+            long[] keys = new long[bands];
+            for (int b = 0; b < bands; b++) {
+                long key = b;
+                for (int r = 0; r < rows; r++) {
+                    key = mix(key * 31 + signature[b * rows + r]);
+                }
+                keys[b] = key;
+                // Slot 0 holds the member count, members follow in ascending item order
+                int[] bucket = bandBuckets[b].get(key);
+                if (bucket == null) {
+                    bucket = new int[4];
+                } else if (bucket[0] + 1 == bucket.length) {
+                    bucket = Arrays.copyOf(bucket, bucket.length * 2);
+                }
+                bucket[++bucket[0]] = i;
+                bandBuckets[b].put(key, bucket);
+            }
+            bandKeys[i] = keys;
+        }
+
+        // Trim buckets and drop singletons, which can never produce a pair
+        for (int b = 0; b < bands; b++) {
+            bandBuckets[b].entrySet().removeIf(entry -> entry.getValue()[0] < 2);
+            bandBuckets[b].replaceAll((key, bucket) -> Arrays.copyOfRange(bucket, 1, bucket[0] + 1));
+        }
+        return new MinHashLshIndex<>(items, bands, rows, bandKeys, bandBuckets);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public T item(int position) {
+        return items.get(position);
+    }
+
+    @Override
+    public void forEachPairIndex(int fromAnchor, int toAnchor, PairConsumer pairConsumer) {
+        int[] partners = new int[16];
+        for (int i = fromAnchor; i < toAnchor; i++) {
+            long[] keys = bandKeys[i];
+            if (keys == null) {
+                continue;
+            }
+            int count = 0;
+            for (int b = 0; b < bands; b++) {
+                int[] bucket = bandBuckets[b].get(keys[b]);
+                if (bucket == null) {
+                    continue;
+                }
+                // Buckets are sorted, so skip straight past the anchor
+                int start = Arrays.binarySearch(bucket, i) + 1;
+                int needed = count + bucket.length - start;
+                if (needed > partners.length) {
+                    partners = Arrays.copyOf(partners, Math.max(needed, partners.length * 2));
+                }
+                System.arraycopy(bucket, start, partners, count, bucket.length - start);
+                count = needed;
+            }
+            if (count == 0) {
+                continue;
+            }
+            Arrays.sort(partners, 0, count);
+            int previous = -1;
+            for (int k = 0; k < count; k++) {
+                if (partners[k] != previous) {
+                    previous = partners[k];
+                    pairConsumer.accept(i, previous);
+                }
+            }
+        }
+    }
+
+    /**
+     * Probability that a pair with shingle Jaccard similarity {@code similarity} becomes a candidate.
+     */
+    public double candidateProbability(double similarity) {
+        return 1.0 - Math.pow(1.0 - Math.pow(similarity, rows), bands);
+    }
+
+    /**
+     * Summarizes how many comparisons this index saves, and how likely a pair at the rule's
+     * threshold is to be kept. Counting the distinct candidate pairs walks the buckets once without
+     * scoring anything.
+     * @param threshold The rule's similarity threshold. The probability is the banding curve
+     *                  {@code 1-(1-s^rows)^bands} at shingle Jaccard similarity {@code s = threshold};
+     *                  it only approximates recall for a rule scoring another similarity measure.
+     * @return The report.
+     */
+    public LshReport report(double threshold) {
+        long indexed = 0;
+        for (long[] keys : bandKeys) {
+            if (keys != null) {
+                indexed++;
+            }
+        }
+        long[] candidates = new long[1];
+        forEachPair((a, b) -> candidates[0]++);
+        return new LshReport(bands, rows, indexed, candidates[0], indexed * (indexed - 1) / 2,
+                threshold, candidateProbability(threshold));
+    }
+
+    /**
+     * Comparison summary for one index build.
+     * @param bands Number of bands.
+     * @param rows Rows per band.
+     * @param indexedItems Items with a non-empty text.
+     * @param candidatePairs Distinct candidate pairs emitted.
+     * @param allPairs Pairs an exhaustive comparison of the indexed items would score.
+     * @param threshold The rule's similarity threshold.
+     * @param thresholdProbability Probability that a pair of shingle similarity {@code threshold} becomes a candidate.
+     */
+    public record LshReport(int bands, int rows, long indexedItems, long candidatePairs, long allPairs,
+                            double threshold, double thresholdProbability) {
+
+        /**
+         * @return The fraction of all pairs that never reach the similarity check.
+         */
+        public double reductionRatio() {
+            return allPairs == 0 ? 0.0 : 1.0 - (double) candidatePairs / allPairs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("MinHash LSH bands=%d rows=%d: %d candidate pairs of %d (%.1f%% pruned), "
+                            + "%.1f%% candidate probability at similarity %.2f",
+                    bands, rows, candidatePairs, allPairs, reductionRatio() * 100, thresholdProbability * 100, threshold);
+        }
+    }
+
+    private static long shingleHash(String value, int from, int to) {
+        long hash = 1125899906842597L;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        return hash;
+    }
+
+    // SplitMix64 finalizer: a cheap, well-distributed 64-bit mixing function
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,63 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+
+import java.util.function.Function;
+
+/**
+ * A pairwise match rule expressed as data, so that one evaluator can test several rules
+ * against the same candidate pair.
+ */
+public interface PairRule {
+
+    /**
+     * @return The rule name recorded on merge suggestions, e.g. "PhoneNumberMatch".
+     */
+    String getName();
+
+    /**
+     * @return Whether the entity takes part in this rule at all (e.g. has a phone number).
+     */
+    boolean qualifies(MDMEntity entity);
+
+    /**
+     * Tests a pair of entities that both qualify.
+     * @return Whether the rule matches the pair.
+     */
+    boolean matches(MDMEntity entity1, MDMEntity entity2);
+
+    /**
+     * Columnar form of {@link #qualifies(MDMEntity)}; rules override it to read the batch columns.
+     */
+    default boolean qualifies(EntityBatch batch, int position) {
+        return qualifies(batch.entity(position));
+    }
+
+    /**
+     * Columnar form of {@link #matches(MDMEntity, MDMEntity)}; rules override it to read the batch columns.
+     */
+    default boolean matches(EntityBatch batch, int position1, int position2) {
+        return matches(batch.entity(position1), batch.entity(position2));
+    }
+
+    /**
+     * @return The human-readable reason recorded for a matching pair.
+     */
+    String reasoning(MDMEntity entity1, MDMEntity entity2);
+
+    /**
+     * An exact blocking key for the rule: two qualifying entities match exactly when their keys are
+     * equal, and non-qualifying entities have a {@code null} key.
+     * @return The key function, or {@code null} when the rule cannot be blocked (fuzzy rules).
+     */
+    default Function<MDMEntity, String> blockingKey() {
+        return null;
+    }
+
+    /**
+     * The block size cap and stop keys used for the rule's blocking key unless configured otherwise.
+     */
+    default BlockingPolicy defaultBlockingPolicy() {
+        return BlockingPolicy.UNLIMITED;
+    }
+}
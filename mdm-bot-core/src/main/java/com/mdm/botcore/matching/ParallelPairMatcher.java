@@ -0,0 +1,165 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.config.MatchingProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Runs pairwise matching over the anchor positions of a {@link CandidateIndex}, optionally in
+ * parallel on a dedicated fork/join pool.
+ *
+ * The anchor range is split recursively into tasks; each task accumulates its results locally and
+ * the partial results are merged left-to-right, so the final result has exactly the order of a
+ * sequential run regardless of scheduling. The pool size comes from {@code mdm.matching.parallelism}
+ * (1 = sequential, 0 = one worker per available core).
+ */
+@Component
+public class ParallelPairMatcher {
+
+    /** Processes the anchors {@code [fromAnchor, toAnchor)} into an accumulator. */
+    @FunctionalInterface
+    public interface RangeWorker<A> {
+        void process(int fromAnchor, int toAnchor, A accumulator);
+    }
+
+    /** Computes the result for the candidate pair at positions {@code (i, j)}. */
+    @FunctionalInterface
+    public interface PositionFunction<R> {
+        R apply(int i, int j);
+    }
+
+    // Tasks per worker; more tasks than workers evens out blocks of very different sizes
+    private static final int TASKS_PER_WORKER = 16;
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    @Autowired
+    public ParallelPairMatcher(MatchingProperties matchingProperties) {
+        this(matchingProperties.getParallelism());
+    }
+
+    public ParallelPairMatcher(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        this.pool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+    }
+
+    /**
+     * @return A matcher that always runs on the calling thread.
+     */
+    public static ParallelPairMatcher sequential() {
+        return new ParallelPairMatcher(1);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Processes anchor positions {@code [0, size)} and merges the partial accumulators in anchor order.
+     * @param size Number of anchor positions.
+     * @param newAccumulator Creates an empty accumulator for a task.
+     * @param worker Fills an accumulator from an anchor range.
+     * @param merge Appends the right accumulator to the left one and returns the result.
+     * @return The merged accumulator.
+     */
+    public <A> A reduce(int size, Supplier<A> newAccumulator, RangeWorker<A> worker, BinaryOperator<A> merge) {
+        if (pool == null || size < 2) {
+            A accumulator = newAccumulator.get();
+            worker.process(0, size, accumulator);
+            return accumulator;
+        }
+        int grain = Math.max(1, size / (parallelism * TASKS_PER_WORKER));
+        return pool.invoke(new RangeTask<>(0, size, grain, newAccumulator, worker, merge));
+    }
+
+    /**
+     * Applies a function to every candidate pair and collects the non-null results in sequential order.
+     * @param candidates The candidate pairs.
+     * @param pairFunction Returns a result for a pair, or {@code null} to skip it; must be thread-safe.
+     * @return The results.
+     */
+    public <T, R> List<R> collect(CandidateIndex<T> candidates, BiFunction<? super T, ? super T, R> pairFunction) {
+        return reduce(candidates.size(), ArrayList::new,
+                (from, to, results) -> candidates.forEachPair(from, to, (entity1, entity2) -> {
+                    R result = pairFunction.apply(entity1, entity2);
+                    if (result != null) {
+                        results.add(result);
+                    }
+                }),
+                (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                });
+    }
+
+    /**
+     * Like {@link #collect(CandidateIndex, BiFunction)}, but passes the candidate positions so that
+     * the function can read per-position data precomputed by an index.
+     * @param candidates The candidate pairs.
+     * @param pairFunction Returns a result for positions {@code (i, j)}, or {@code null} to skip; must be thread-safe.
+     * @return The results.
+     */
+    public <R> List<R> collectPositions(CandidateIndex<?> candidates, PositionFunction<R> pairFunction) {
+        return reduce(candidates.size(), ArrayList::new,
+                (from, to, results) -> candidates.forEachPairIndex(from, to, (i, j) -> {
+                    R result = pairFunction.apply(i, j);
+                    if (result != null) {
+                        results.add(result);
+                    }
+                }),
+                (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static final class RangeTask<A> extends RecursiveTask<A> {
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final Supplier<A> newAccumulator;
+        private final RangeWorker<A> worker;
+        private final BinaryOperator<A> merge;
+
+        RangeTask(int from, int to, int grain, Supplier<A> newAccumulator, RangeWorker<A> worker, BinaryOperator<A> merge) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.newAccumulator = newAccumulator;
+            this.worker = worker;
+            this.merge = merge;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= grain) {
+                A accumulator = newAccumulator.get();
+                worker.process(from, to, accumulator);
+                return accumulator;
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask<A> left = new RangeTask<>(from, middle, grain, newAccumulator, worker, merge);
+            RangeTask<A> right = new RangeTask<>(middle, to, grain, newAccumulator, worker, merge);
+            left.fork();
+            A rightResult = right.compute();
+            return merge.apply(left.join(), rightResult);
+        }
+    }
+}
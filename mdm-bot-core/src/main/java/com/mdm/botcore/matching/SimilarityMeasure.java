@@ -0,0 +1,30 @@
+package com.mdm.botcore.matching;
+
+import java.util.Locale;
+
+/**
+ * Scoring functions a fuzzy rule can be configured with
+ * (property {@code mdm.matching.rules.<RuleName>.similarity}).
+ */
+public enum SimilarityMeasure {
+    /** Normalized Levenshtein similarity of the case-folded values. */
+    LEVENSHTEIN,
+    /** Jaro-Winkler similarity of the case-folded values; favours a shared prefix. */
+    JARO_WINKLER,
+    /** Jaccard similarity of the character n-gram sets (n = {@code shingle-size}). */
+    NGRAM_JACCARD,
+    /** Cosine similarity of TF-IDF weighted token vectors, with IDF computed over the batch. */
+    TFIDF_COSINE;
+
+    /**
+     * Parses a property value such as {@code tfidf-cosine} or {@code LEVENSHTEIN}.
+     * @throws IllegalArgumentException if the value does not name a measure.
+     */
+    public static SimilarityMeasure parse(String value) {
+        try {
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown similarity measure: " + value);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * A configurable sort key for sorted-neighbourhood matching, built from one or more entity fields.
+ *
+ * Specs are written as {@code field[:length]} components joined with {@code +}, for example
+ * {@code name:4+phone:-4} (first four name characters followed by the last four phone digits).
+ * A positive length takes a prefix, a negative length takes a suffix, and no length takes the whole
+ * normalized value. Supported fields are {@code name}, {@code address}, {@code phone}, {@code email}
+ * and {@code domain}. Several passes are written as a comma-separated list of specs.
+ *
+ * Names and addresses are case-folded and stripped of non-alphanumeric characters, phones are
+ * reduced to digits. Fixed-length components are padded so the following component stays aligned.
+ */
+public final class SortKey implements Function<MDMEntity, String> {
+
+    enum Field { NAME, ADDRESS, PHONE, EMAIL, DOMAIN }
+
+    private record Component(Field field, int length) {}
+
+    private final String spec;
+    private final List<Component> components;
+
+    private SortKey(String spec, List<Component> components) {
+        this.spec = spec;
+        this.components = components;
+    }
+
+    /**
+     * Parses a single-pass spec such as {@code name:4+phone:-4}.
+     * @param spec The spec to parse.
+     * @return The parsed sort key.
+     * @throws IllegalArgumentException if the spec is empty, references an unknown field or has a non-integer length.
+     */
+    public static SortKey parse(String spec) {
+        if (spec == null || spec.isBlank()) {
+            throw new IllegalArgumentException("Sort key spec must not be empty");
+        }
+        List<Component> components = new ArrayList<>();
+        for (String part : spec.split("\\+")) {
+            String[] fieldAndLength = part.trim().split(":");
+            Field field;
+            try {
+                field = Field.valueOf(fieldAndLength[0].trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown sort key field '" + fieldAndLength[0] + "' in spec: " + spec);
+            }
+            int length;
+            try {
+                length = fieldAndLength.length > 1 ? Integer.parseInt(fieldAndLength[1].trim()) : 0;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid length '" + fieldAndLength[1]
+                        + "' in sort-keys spec (expected an integer such as 4 or -4): " + spec, e);
+            }
+            components.add(new Component(field, length));
+        }
+        return new SortKey(spec.trim(), components);
+    }
+
+    /**
+     * Parses a comma-separated list of specs, one per sorted-neighbourhood pass.
+     * @param specs The specs to parse, e.g. {@code name:6+phone:-4,phone:-7+name:3}.
+     * @return One sort key per pass.
+     */
+    public static List<SortKey> parseAll(String specs) {
+        List<SortKey> keys = new ArrayList<>();
+        for (String spec : specs.split(",")) {
+            if (!spec.isBlank()) {
+                keys.add(parse(spec));
+            }
+        }
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("At least one sort key spec is required");
+        }
+        return keys;
+    }
+
+    /**
+     * @return The sort key for the entity, or {@code null} when every component is empty.
+     */
+    @Override
+    public String apply(MDMEntity entity) {
+        StringBuilder key = new StringBuilder();
+        boolean empty = true;
+        for (Component component : components) {
+            String value = normalizedValue(entity, component.field());
+            if (!value.isEmpty()) {
+                empty = false;
+            }
+            int length = component.length();
+            if (length > 0) {
+                key.append(value, 0, Math.min(length, value.length()));
+                for (int i = value.length(); i < length; i++) {
+                    key.append(' ');
+                }
+            } else if (length < 0) {
+                key.append(value, Math.max(0, value.length() + length), value.length());
+                for (int i = value.length(); i < -length; i++) {
+                    key.append(' ');
+                }
+            } else {
+                key.append(value);
+            }
+        }
+        return empty ? null : key.toString();
+    }
+
+    private static String normalizedValue(MDMEntity entity, Field field) {
+        switch (field) {
+            case NAME:
+                return MatchKeys.alphanumeric(entity.getName());
+            case ADDRESS:
+                return MatchKeys.alphanumeric(entity.getAddress());
+            case PHONE:
+                return entity.getPhone() == null ? "" : MatchKeys.digitsOnly(entity.getPhone());
+            case EMAIL:
+                return entity.getEmail() == null ? "" : MatchKeys.foldCase(entity.getEmail());
+            case DOMAIN:
+                String domain = MatchKeys.emailDomain(entity);
+                return domain == null ? "" : MatchKeys.foldCase(domain.substring(1));
+            default:
+                return "";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
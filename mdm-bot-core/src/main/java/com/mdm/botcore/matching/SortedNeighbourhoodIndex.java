@@ -0,0 +1,131 @@
+package com.mdm.botcore.matching;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Sorted-neighbourhood candidate index.
+ * For every pass, items are sorted by that pass's key and each item is paired only with the
+ * items at most {@code window} positions away in the sorted order. Running several passes with
+ * different keys (e.g. name prefix, then phone suffix) recovers near-duplicates that an exact
+ * hash block misses, at a bounded cost of roughly {@code n * window} comparisons per pass.
+ *
+ * Pairs found by more than one pass are emitted once, following the {@link CandidateIndex} order.
+ * Items whose key is {@code null} for a pass do not take part in that pass.
+ *
+ * @param <T> The item type (usually {@code MDMEntity}).
+ */
+public final class SortedNeighbourhoodIndex<T> implements CandidateIndex<T> {
+
+    private final List<T> items;
+    private final int window;
+    private final int[][] sortedOrder; // per pass: item positions in key order
+    private final int[][] sortedRank;  // per pass: rank of each item, -1 when excluded
+
+    private SortedNeighbourhoodIndex(List<T> items, int window, int[][] sortedOrder, int[][] sortedRank) {
+        this.items = items;
+        this.window = window;
+        this.sortedOrder = sortedOrder;
+        this.sortedRank = sortedRank;
+    }
+
+    /**
+     * Builds the index by sorting the items once per pass.
+     * @param items The items to index; the list is not copied.
+     * @param sortKeys One key function per pass.
+     * @param window How many following records each record is compared against, per pass.
+     * @return The built index.
+     */
+    public static <T> SortedNeighbourhoodIndex<T> build(List<T> items, List<? extends Function<? super T, String>> sortKeys, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Sorted-neighbourhood window must be at least 1, got " + window);
+        }
+        int size = items.size();
+        int[][] sortedOrder = new int[sortKeys.size()][];
+        int[][] sortedRank = new int[sortKeys.size()][];
+
+        for (int pass = 0; pass < sortKeys.size(); pass++) {
+            Function<? super T, String> sortKey = sortKeys.get(pass);
+            String[] keys = new String[size];
+            Integer[] order = new Integer[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                keys[i] = sortKey.apply(items.get(i));
+                if (keys[i] != null) {
+                    order[count++] = i;
+                }
+            }
+            // Stable sort keeps input order for equal keys, which keeps the output deterministic
+            Arrays.sort(order, 0, count, (a, b) -> keys[a].compareTo(keys[b]));
+
+            int[] passOrder = new int[count];
+            int[] passRank = new int[size];
+            Arrays.fill(passRank, -1);
+            for (int r = 0; r < count; r++) {
+                passOrder[r] = order[r];
+                passRank[order[r]] = r;
+            }
+            sortedOrder[pass] = passOrder;
+            sortedRank[pass] = passRank;
+        }
+        return new SortedNeighbourhoodIndex<>(items, window, sortedOrder, sortedRank);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public T item(int position) {
+        return items.get(position);
+    }
+
+    /**
+     * @return The configured window size.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @return The number of sort passes.
+     */
+    public int passCount() {
+        return sortedOrder.length;
+    }
+
+    @Override
+    public void forEachPairIndex(int fromAnchor, int toAnchor, PairConsumer pairConsumer) {
+        int[] partners = new int[Math.max(4, 2 * window * sortedOrder.length)];
+        for (int i = fromAnchor; i < toAnchor; i++) {
+            int count = 0;
+            for (int pass = 0; pass < sortedOrder.length; pass++) {
+                int rank = sortedRank[pass][i];
+                if (rank < 0) {
+                    continue;
+                }
+                int[] order = sortedOrder[pass];
+                int last = Math.min(order.length - 1, rank + window);
+                for (int k = Math.max(0, rank - window); k <= last; k++) {
+                    int j = order[k];
+                    if (j > i) {
+                        partners[count++] = j;
+                    }
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            Arrays.sort(partners, 0, count);
+            int previous = -1;
+            for (int k = 0; k < count; k++) {
+                if (partners[k] != previous) {
+                    previous = partners[k];
+                    pairConsumer.accept(i, previous);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * The built-in equality rules shared by the Java rule engines, mirroring the global DRL rules.
+ * Predicates read precomputed {@link MatchFeatures}, or the columns of an {@link EntityBatch}
+ * when evaluated by position; both forms must agree.
+ */
+public final class StandardPairRules {
+
+    /**
+     * Free-mail domains, as matched by {@link MatchKeys#emailDomain}: sharing one says nothing
+     * about two records, so they are stop keys of "EmailDomainMatch" by default.
+     */
+    public static final Set<String> FREE_MAIL_DOMAINS = Set.of(
+            "@gmail.com", "@googlemail.com", "@yahoo.com", "@ymail.com", "@hotmail.com", "@outlook.com",
+            "@live.com", "@msn.com", "@aol.com", "@icloud.com", "@me.com", "@mail.com", "@gmx.com",
+            "@gmx.de", "@web.de", "@yandex.com", "@protonmail.com", "@proton.me", "@zoho.com", "@qq.com");
+
+    /** Default cap of "EmailDomainMatch" blocks; larger domains are most likely free-mail providers. */
+    public static final int EMAIL_DOMAIN_MAX_BLOCK_SIZE = 1000;
+
+    public static final PairRule EXACT_COMPANY_NAME = new SimplePairRule("ExactCompanyNameMatch",
+            e -> "Organization".equals(e.getType()) && e.getName() != null,
+            (e1, e2) -> MatchFeatures.of(e1).sameName(MatchFeatures.of(e2)),
+            (b, i) -> b.hasType(i, "Organization") && b.nameCode(i) >= 0,
+            EntityBatch::sameName,
+            (e1, e2) -> "Company names match exactly: " + e1.getName(),
+            MatchKeys::companyName);
+
+    public static final PairRule ADDRESS = new SimplePairRule("AddressMatch",
+            e -> e.getAddress() != null && e.getAddress().length() > 10,
+            (e1, e2) -> MatchFeatures.of(e1).sameAddress(MatchFeatures.of(e2)),
+            (b, i) -> b.addressLength(i) > 10,
+            EntityBatch::sameAddress,
+            (e1, e2) -> "Addresses match: " + e1.getAddress(),
+            MatchKeys::address);
+
+    public static final PairRule PHONE_NUMBER = new SimplePairRule("PhoneNumberMatch",
+            e -> e.getPhone() != null && e.getPhone().length() >= 10,
+            (e1, e2) -> MatchFeatures.of(e1).samePhone(MatchFeatures.of(e2)),
+            (b, i) -> b.phoneLength(i) >= 10,
+            EntityBatch::samePhone,
+            (e1, e2) -> "Phone numbers match: " + e1.getPhone() + " = " + e2.getPhone(),
+            MatchKeys::phoneNumber);
+
+    public static final PairRule EMAIL_DOMAIN = new SimplePairRule("EmailDomainMatch",
+            e -> e.getEmail() != null && e.getEmail().contains("@"),
+            (e1, e2) -> MatchFeatures.of(e1).sameEmailDomain(MatchFeatures.of(e2)),
+            EntityBatch::hasEmailDomain,
+            EntityBatch::sameEmailDomain,
+            (e1, e2) -> "Email domains match: " + MatchFeatures.of(e1).getEmailDomain(),
+            MatchKeys::emailDomain,
+            new BlockingPolicy(EMAIL_DOMAIN_MAX_BLOCK_SIZE, null, FREE_MAIL_DOMAINS, BlockingPolicy.DEFAULT_LEARN_AFTER));
+
+    /** All standard rules in priority order. */
+    public static final List<PairRule> ALL = List.of(EXACT_COMPANY_NAME, ADDRESS, PHONE_NUMBER, EMAIL_DOMAIN);
+
+    private StandardPairRules() {}
+
+    @FunctionalInterface
+    private interface PositionPredicate {
+        boolean test(EntityBatch batch, int position);
+    }
+
+    @FunctionalInterface
+    private interface PositionPairPredicate {
+        boolean test(EntityBatch batch, int position1, int position2);
+    }
+
+    private static final class SimplePairRule implements PairRule {
+        private final String name;
+        private final Predicate<MDMEntity> qualifies;
+        private final BiPredicate<MDMEntity, MDMEntity> matches;
+        private final PositionPredicate qualifiesAt;
+        private final PositionPairPredicate matchesAt;
+        private final BiFunction<MDMEntity, MDMEntity, String> reasoning;
+        private final Function<MDMEntity, String> blockingKey;
+        private final BlockingPolicy blockingPolicy;
+
+        SimplePairRule(String name, Predicate<MDMEntity> qualifies, BiPredicate<MDMEntity, MDMEntity> matches,
+                       PositionPredicate qualifiesAt, PositionPairPredicate matchesAt,
+                       BiFunction<MDMEntity, MDMEntity, String> reasoning, Function<MDMEntity, String> blockingKey) {
+            this(name, qualifies, matches, qualifiesAt, matchesAt, reasoning, blockingKey, BlockingPolicy.UNLIMITED);
+        }
+
+        SimplePairRule(String name, Predicate<MDMEntity> qualifies, BiPredicate<MDMEntity, MDMEntity> matches,
+                       PositionPredicate qualifiesAt, PositionPairPredicate matchesAt,
+                       BiFunction<MDMEntity, MDMEntity, String> reasoning, Function<MDMEntity, String> blockingKey,
+                       BlockingPolicy blockingPolicy) {
+            this.name = name;
+            this.qualifies = qualifies;
+            this.matches = matches;
+            this.qualifiesAt = qualifiesAt;
+            this.matchesAt = matchesAt;
+            this.reasoning = reasoning;
+            this.blockingKey = blockingKey;
+            this.blockingPolicy = blockingPolicy;
+        }
+
+        @Override public String getName() { return name; }
+        @Override public boolean qualifies(MDMEntity entity) { return qualifies.test(entity); }
+        @Override public boolean matches(MDMEntity entity1, MDMEntity entity2) { return matches.test(entity1, entity2); }
+        @Override public boolean qualifies(EntityBatch batch, int position) { return qualifiesAt.test(batch, position); }
+        @Override public boolean matches(EntityBatch batch, int position1, int position2) { return matchesAt.test(batch, position1, position2); }
+        @Override public String reasoning(MDMEntity entity1, MDMEntity entity2) { return reasoning.apply(entity1, entity2); }
+        @Override public Function<MDMEntity, String> blockingKey() { return blockingKey; }
+        @Override public BlockingPolicy defaultBlockingPolicy() { return blockingPolicy; }
+        @Override public String toString() { return name; }
+    }
+}
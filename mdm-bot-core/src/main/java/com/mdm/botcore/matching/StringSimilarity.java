@@ -0,0 +1,346 @@
+package com.mdm.botcore.matching;
+
+import java.util.Arrays;
+
+/**
+ * String similarity measures used by the fuzzy match rules.
+ *
+ * The functions read their inputs with {@link CharSequence#charAt(int)} and keep all working
+ * memory in per-thread scratch buffers, so a comparison does not allocate once the buffers have
+ * grown to the longest input seen. The {@code IgnoreCase} variants fold characters on the fly
+ * (see {@link MatchKeys#foldCase(String)}) instead of creating folded copies.
+ *
+ * Levenshtein distance uses Myers' bit-parallel algorithm (as formulated by Hyyro) whenever the
+ * shorter input has at most 64 characters below U+0100: one 64-bit word holds a whole column of
+ * the dynamic-programming matrix, so each character of the longer input costs a handful of
+ * word operations instead of a row of cell updates. Other inputs use the two-row DP.
+ *
+ * {@link #calculateSimilarity(String, String)} is the entry point for DRL rules:
+ * <pre>
+ * import function com.mdm.botcore.matching.StringSimilarity.calculateSimilarity;
+ * </pre>
+ */
+public final class StringSimilarity {
+
+    private static final int WORD_SIZE = 64;
+    private static final int PEQ_ALPHABET = 256;
+    private static final double WINKLER_BOOST_THRESHOLD = 0.7;
+    private static final double WINKLER_PREFIX_SCALE = 0.1;
+    private static final int WINKLER_MAX_PREFIX = 4;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private StringSimilarity() {}
+
+    /**
+     * Similarity function for DRL rules: case-insensitive normalized Levenshtein similarity,
+     * the same measure the RuleBook "FuzzyNameMatch" rule uses by default.
+     * @return A score between 0 and 1; 0 when either value is {@code null}.
+     */
+    public static double calculateSimilarity(String a, String b) {
+        if (a == null || b == null) {
+            return 0.0;
+        }
+        return levenshteinSimilarityIgnoreCase(a, b);
+    }
+
+    /**
+     * Normalized Levenshtein similarity: {@code 1 - distance / max(length)}.
+     * @return A score between 0 (nothing in common) and 1 (identical).
+     */
+    public static double levenshteinSimilarity(CharSequence a, CharSequence b) {
+        return normalize(levenshteinDistance(a, b, false), a.length(), b.length());
+    }
+
+    /**
+     * {@link #levenshteinSimilarity(CharSequence, CharSequence)} ignoring case.
+     */
+    public static double levenshteinSimilarityIgnoreCase(CharSequence a, CharSequence b) {
+        return normalize(levenshteinDistance(a, b, true), a.length(), b.length());
+    }
+
+    /**
+     * Edit distance counting single-character insertions, deletions and substitutions.
+     */
+    public static int levenshteinDistance(CharSequence a, CharSequence b) {
+        return levenshteinDistance(a, b, false);
+    }
+
+    /**
+     * Jaro-Winkler similarity: Jaro similarity boosted for a common prefix of up to four
+     * characters (scale 0.1) when the Jaro similarity exceeds 0.7.
+     * @return A score between 0 and 1.
+     */
+    public static double jaroWinkler(CharSequence a, CharSequence b) {
+        return jaroWinkler(a, b, false);
+    }
+
+    /**
+     * {@link #jaroWinkler(CharSequence, CharSequence)} ignoring case.
+     */
+    public static double jaroWinklerIgnoreCase(CharSequence a, CharSequence b) {
+        return jaroWinkler(a, b, true);
+    }
+
+    /**
+     * Jaccard similarity of the sets of character n-grams; a value shorter than {@code n}
+     * counts as a single n-gram.
+     * @param n Characters per n-gram, at least 1.
+     * @return A score between 0 and 1; 1 when both values are empty.
+     */
+    public static double ngramJaccard(CharSequence a, CharSequence b, int n) {
+        return ngramJaccard(a, b, n, false);
+    }
+
+    /**
+     * {@link #ngramJaccard(CharSequence, CharSequence, int)} ignoring case.
+     */
+    public static double ngramJaccardIgnoreCase(CharSequence a, CharSequence b, int n) {
+        return ngramJaccard(a, b, n, true);
+    }
+
+    private static double normalize(int distance, int length1, int length2) {
+        int maxLength = Math.max(length1, length2);
+        return maxLength == 0 ? 1.0 : 1.0 - (double) distance / maxLength;
+    }
+
+    private static int levenshteinDistance(CharSequence a, CharSequence b, boolean ignoreCase) {
+        // Distance is symmetric: use the shorter value as the bit-parallel pattern
+        CharSequence pattern = a.length() <= b.length() ? a : b;
+        CharSequence text = pattern == a ? b : a;
+        if (pattern.length() == 0) {
+            return text.length();
+        }
+        Scratch scratch = SCRATCH.get();
+        if (pattern.length() <= WORD_SIZE && fillPeq(scratch.peq, pattern, ignoreCase)) {
+            try {
+                return myers(scratch.peq, pattern.length(), text, ignoreCase);
+            } finally {
+                clearPeq(scratch.peq, pattern, ignoreCase);
+            }
+        }
+        return twoRowDistance(scratch, pattern, text, ignoreCase);
+    }
+
+    // Bit-parallel edit distance; Peq[c] has bit k set when pattern position k holds c
+    private static int myers(long[] peq, int m, CharSequence text, boolean ignoreCase) {
+        long pv = -1L;
+        long mv = 0L;
+        long last = 1L << (m - 1);
+        int score = m;
+        for (int j = 0; j < text.length(); j++) {
+            char c = charAt(text, j, ignoreCase);
+            long eq = c < PEQ_ALPHABET ? peq[c] : 0L;
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & last) != 0) {
+                score++;
+            } else if ((mh & last) != 0) {
+                score--;
+            }
+            ph = (ph << 1) | 1L;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+        }
+        return score;
+    }
+
+    private static boolean fillPeq(long[] peq, CharSequence pattern, boolean ignoreCase) {
+        for (int k = 0; k < pattern.length(); k++) {
+            if (charAt(pattern, k, ignoreCase) >= PEQ_ALPHABET) {
+                clearPeq(peq, pattern, ignoreCase);
+                return false;
+            }
+            peq[charAt(pattern, k, ignoreCase)] |= 1L << k;
+        }
+        return true;
+    }
+
+    // Resets only the entries the pattern set, leaving the table zeroed for the next comparison
+    private static void clearPeq(long[] peq, CharSequence pattern, boolean ignoreCase) {
+        for (int k = 0; k < pattern.length(); k++) {
+            char c = charAt(pattern, k, ignoreCase);
+            if (c < PEQ_ALPHABET) {
+                peq[c] = 0L;
+            }
+        }
+    }
+
+    private static int twoRowDistance(Scratch scratch, CharSequence a, CharSequence b, boolean ignoreCase) {
+        int[] previous = scratch.rows(b.length() + 1, 0);
+        int[] current = scratch.rows(b.length() + 1, 1);
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char ca = charAt(a, i - 1, ignoreCase);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == charAt(b, j - 1, ignoreCase) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static double jaroWinkler(CharSequence a, CharSequence b, boolean ignoreCase) {
+        int length1 = a.length();
+        int length2 = b.length();
+        if (length1 == 0 && length2 == 0) {
+            return 1.0;
+        }
+        if (length1 == 0 || length2 == 0) {
+            return 0.0;
+        }
+        Scratch scratch = SCRATCH.get();
+        boolean[] matched1 = scratch.flags(length1, 0);
+        boolean[] matched2 = scratch.flags(length2, 1);
+        int window = Math.max(0, Math.max(length1, length2) / 2 - 1);
+
+        int matches = 0;
+        for (int i = 0; i < length1; i++) {
+            char c = charAt(a, i, ignoreCase);
+            int to = Math.min(length2, i + window + 1);
+            for (int j = Math.max(0, i - window); j < to; j++) {
+                if (!matched2[j] && c == charAt(b, j, ignoreCase)) {
+                    matched1[i] = true;
+                    matched2[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) {
+            return 0.0;
+        }
+
+        int halfTranspositions = 0;
+        for (int i = 0, j = 0; i < length1; i++) {
+            if (matched1[i]) {
+                while (!matched2[j]) {
+                    j++;
+                }
+                if (charAt(a, i, ignoreCase) != charAt(b, j, ignoreCase)) {
+                    halfTranspositions++;
+                }
+                j++;
+            }
+        }
+        double jaro = ((double) matches / length1 + (double) matches / length2
+                + (matches - halfTranspositions / 2.0) / matches) / 3.0;
+        if (jaro <= WINKLER_BOOST_THRESHOLD) {
+            return jaro;
+        }
+        int prefix = 0;
+        int maxPrefix = Math.min(WINKLER_MAX_PREFIX, Math.min(length1, length2));
+        while (prefix < maxPrefix && charAt(a, prefix, ignoreCase) == charAt(b, prefix, ignoreCase)) {
+            prefix++;
+        }
+        return jaro + prefix * WINKLER_PREFIX_SCALE * (1.0 - jaro);
+    }
+
+    private static double ngramJaccard(CharSequence a, CharSequence b, int n, boolean ignoreCase) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n-gram size must be positive: " + n);
+        }
+        if (a.length() == 0 && b.length() == 0) {
+            return 1.0;
+        }
+        if (a.length() == 0 || b.length() == 0) {
+            return 0.0;
+        }
+        Scratch scratch = SCRATCH.get();
+        long[] grams1 = scratch.grams(Math.max(1, a.length() - n + 1), 0);
+        long[] grams2 = scratch.grams(Math.max(1, b.length() - n + 1), 1);
+        int count1 = distinctGrams(a, n, ignoreCase, grams1);
+        int count2 = distinctGrams(b, n, ignoreCase, grams2);
+
+        int shared = 0;
+        for (int i = 0, j = 0; i < count1 && j < count2; ) {
+            if (grams1[i] == grams2[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (grams1[i] < grams2[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) shared / (count1 + count2 - shared);
+    }
+
+    // Writes the sorted, distinct n-gram codes of value into grams and returns their count
+    private static int distinctGrams(CharSequence value, int n, boolean ignoreCase, long[] grams) {
+        int count = Math.max(1, value.length() - n + 1);
+        for (int s = 0; s < count; s++) {
+            int to = Math.min(value.length(), s + n);
+            long code;
+            if (n <= 3) {
+                // Up to three 16-bit characters and the gram length pack losslessly into one long;
+                // a fourth character would shift the top bits of the first one out
+                code = 0L;
+                for (int k = s; k < to; k++) {
+                    code = (code << 16) | charAt(value, k, ignoreCase);
+                }
+                code = (code << 3) | (to - s);
+            } else {
+                code = 1125899906842597L;
+                for (int k = s; k < to; k++) {
+                    code = 31 * code + charAt(value, k, ignoreCase);
+                }
+            }
+            grams[s] = code;
+        }
+        Arrays.sort(grams, 0, count);
+        int distinct = 0;
+        for (int s = 0; s < count; s++) {
+            if (distinct == 0 || grams[s] != grams[distinct - 1]) {
+                grams[distinct++] = grams[s];
+            }
+        }
+        return distinct;
+    }
+
+    private static char charAt(CharSequence value, int index, boolean ignoreCase) {
+        char c = value.charAt(index);
+        return ignoreCase ? Character.toLowerCase(Character.toUpperCase(c)) : c;
+    }
+
+    /** Per-thread working memory, grown on demand and reused across comparisons. */
+    private static final class Scratch {
+        final long[] peq = new long[PEQ_ALPHABET];
+        final int[][] rows = {new int[64], new int[64]};
+        final boolean[][] flags = {new boolean[64], new boolean[64]};
+        final long[][] grams = {new long[64], new long[64]};
+
+        int[] rows(int length, int which) {
+            if (rows[which].length < length) {
+                rows[which] = new int[Math.max(length, rows[which].length * 2)];
+            }
+            return rows[which];
+        }
+
+        boolean[] flags(int length, int which) {
+            if (flags[which].length < length) {
+                flags[which] = new boolean[Math.max(length, flags[which].length * 2)];
+            } else {
+                Arrays.fill(flags[which], 0, length, false);
+            }
+            return flags[which];
+        }
+
+        long[] grams(int length, int which) {
+            if (grams[which].length < length) {
+                grams[which] = new long[Math.max(length, grams[which].length * 2)];
+            }
+            return grams[which];
+        }
+    }
+}
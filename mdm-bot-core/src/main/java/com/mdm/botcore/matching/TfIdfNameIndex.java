@@ -0,0 +1,307 @@
+package com.mdm.botcore.matching;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * TF-IDF weighted token index for organization names.
+ *
+ * Names are split into case-folded runs of letters and digits. An IDF table built over the
+ * batch gives rare tokens ("acme") far more weight than common ones ("inc", "global"), and each
+ * name becomes a sparse, L2-normalized vector of token ids and weights held in primitive arrays.
+ *
+ * Candidates come from a token inverted index: two names are paired when they share at least one
+ * informative token. Stop tokens - legal forms and filler words, plus any token found in more
+ * than {@code maxTokenFrequency} of the batch - have no posting list, so they never inflate the
+ * candidate set; they still contribute their (low) weight to {@link #cosine(int, int)}. Names made
+ * only of stop tokens are therefore never candidates.
+ *
+ * @param <T> The item type (usually {@code MDMEntity}).
+ */
+public final class TfIdfNameIndex<T> implements CandidateIndex<T> {
+
+    /** Tokens that never generate candidates regardless of their frequency in the batch. */
+    public static final Set<String> STOP_TOKENS = Set.of(
+            "inc", "incorporated", "corp", "corporation", "co", "company", "llc", "llp", "ltd", "limited",
+            "plc", "gmbh", "ag", "sa", "bv", "group", "holding", "holdings", "global", "international",
+            "labs", "the", "and", "of");
+
+    private final List<T> items;
+    private final Map<String, Integer> tokenIds;
+    private final double[] idf;              // per token id
+    private final double unseenIdf;          // weight of tokens that do not occur in the batch
+    private final int[][] itemTokens;        // per item: token ids, ascending; null when not indexed
+    private final double[][] itemWeights;    // per item: normalized weights aligned with itemTokens
+    private final int[][] postings;          // per token id: item positions, ascending; null for stop tokens
+
+    private TfIdfNameIndex(List<T> items, Map<String, Integer> tokenIds, double[] idf, double unseenIdf,
+                           int[][] itemTokens, double[][] itemWeights, int[][] postings) {
+        this.items = items;
+        this.tokenIds = tokenIds;
+        this.idf = idf;
+        this.unseenIdf = unseenIdf;
+        this.itemTokens = itemTokens;
+        this.itemWeights = itemWeights;
+        this.postings = postings;
+    }
+
+    /**
+     * Builds the IDF table, the name vectors and the token inverted index over the batch.
+     * @param items The items to index; the list is not copied.
+     * @param text Extracts the name to tokenize.
+     * @param maxTokenFrequency Document frequency (fraction of indexed items) above which a token
+     *                          is treated as a stop token, in (0, 1]. Tokens shared by only two
+     *                          items are always indexed.
+     * @return The built index.
+     */
+    public static <T> TfIdfNameIndex<T> build(List<T> items, Function<? super T, String> text, double maxTokenFrequency) {
+        if (!(maxTokenFrequency > 0.0 && maxTokenFrequency <= 1.0)) {
+            throw new IllegalArgumentException("Max token frequency must be in (0, 1]: " + maxTokenFrequency);
+        }
+        int size = items.size();
+        Map<String, Integer> tokenIds = new HashMap<>();
+        int[] documentFrequency = new int[16];
+        int[][] itemTokens = new int[size][];
+        int[][] termFrequencies = new int[size][];
+        int indexed = 0;
+
+        for (int i = 0; i < size; i++) {
+            String[] tokens = tokenize(text.apply(items.get(i)));
+            if (tokens.length == 0) {
+                continue;
+            }
+            int[] ids = new int[tokens.length];
+            for (int t = 0; t < tokens.length; t++) {
+                Integer id = tokenIds.get(tokens[t]);
+                if (id == null) {
+                    id = tokenIds.size();
+                    tokenIds.put(tokens[t], id);
+                }
+                ids[t] = id;
+            }
+            Arrays.sort(ids);
+            // Collapse repeated tokens into (id, term frequency)
+            int distinct = 0;
+            int[] tf = new int[ids.length];
+            for (int t = 0; t < ids.length; t++) {
+                if (distinct > 0 && ids[distinct - 1] == ids[t]) {
+                    tf[distinct - 1]++;
+                } else {
+                    ids[distinct] = ids[t];
+                    tf[distinct++] = 1;
+                }
+            }
+            itemTokens[i] = Arrays.copyOf(ids, distinct);
+            termFrequencies[i] = Arrays.copyOf(tf, distinct);
+            for (int t = 0; t < distinct; t++) {
+                if (ids[t] >= documentFrequency.length) {
+                    documentFrequency = Arrays.copyOf(documentFrequency, Math.max(ids[t] + 1, documentFrequency.length * 2));
+                }
+                documentFrequency[ids[t]]++;
+            }
+            indexed++;
+        }
+
+        int tokenCount = tokenIds.size();
+        double[] idf = new double[tokenCount];
+        for (int id = 0; id < tokenCount; id++) {
+            idf[id] = smoothedIdf(indexed, documentFrequency[id]);
+        }
+
+        double[][] itemWeights = new double[size][];
+        for (int i = 0; i < size; i++) {
+            int[] ids = itemTokens[i];
+            if (ids == null) {
+                continue;
+            }
+            double[] weights = new double[ids.length];
+            for (int t = 0; t < ids.length; t++) {
+                weights[t] = termFrequencies[i][t] * idf[ids[t]];
+            }
+            itemWeights[i] = normalize(weights);
+        }
+
+        boolean[] stop = new boolean[tokenCount];
+        tokenIds.forEach((token, id) -> stop[id] = STOP_TOKENS.contains(token));
+        double stopFrequency = Math.max(2, maxTokenFrequency * indexed);
+        int[][] postings = new int[tokenCount][];
+        int[] fill = new int[tokenCount];
+        for (int id = 0; id < tokenCount; id++) {
+            // Singleton postings can never produce a pair
+            if (!stop[id] && documentFrequency[id] >= 2 && documentFrequency[id] <= stopFrequency) {
+                postings[id] = new int[documentFrequency[id]];
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (itemTokens[i] != null) {
+                for (int id : itemTokens[i]) {
+                    if (postings[id] != null) {
+                        postings[id][fill[id]++] = i;
+                    }
+                }
+            }
+        }
+        return new TfIdfNameIndex<>(items, tokenIds, idf, smoothedIdf(indexed, 0), itemTokens, itemWeights, postings);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public T item(int position) {
+        return items.get(position);
+    }
+
+    @Override
+    public void forEachPairIndex(int fromAnchor, int toAnchor, PairConsumer pairConsumer) {
+        int[] partners = new int[16];
+        for (int i = fromAnchor; i < toAnchor; i++) {
+            int[] ids = itemTokens[i];
+            if (ids == null) {
+                continue;
+            }
+            int count = 0;
+            for (int id : ids) {
+                int[] posting = postings[id];
+                if (posting == null) {
+                    continue;
+                }
+                // Postings are sorted, so skip straight past the anchor
+                int start = Arrays.binarySearch(posting, i) + 1;
+                int needed = count + posting.length - start;
+                if (needed > partners.length) {
+                    partners = Arrays.copyOf(partners, Math.max(needed, partners.length * 2));
+                }
+                System.arraycopy(posting, start, partners, count, posting.length - start);
+                count = needed;
+            }
+            if (count == 0) {
+                continue;
+            }
+            Arrays.sort(partners, 0, count);
+            int previous = -1;
+            for (int k = 0; k < count; k++) {
+                if (partners[k] != previous) {
+                    previous = partners[k];
+                    pairConsumer.accept(i, previous);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cosine similarity of the TF-IDF vectors of two indexed items.
+     * @return A score between 0 and 1; 0 when either item has no tokens.
+     */
+    public double cosine(int position1, int position2) {
+        int[] ids1 = itemTokens[position1];
+        int[] ids2 = itemTokens[position2];
+        if (ids1 == null || ids2 == null) {
+            return 0.0;
+        }
+        double[] weights1 = itemWeights[position1];
+        double[] weights2 = itemWeights[position2];
+        double dot = 0.0;
+        int a = 0;
+        int b = 0;
+        while (a < ids1.length && b < ids2.length) {
+            if (ids1[a] == ids2[b]) {
+                dot += weights1[a++] * weights2[b++];
+            } else if (ids1[a] < ids2[b]) {
+                a++;
+            } else {
+                b++;
+            }
+        }
+        return Math.min(1.0, dot);
+    }
+
+    /**
+     * Cosine similarity of two arbitrary names, weighted with this batch's IDF table.
+     * Tokens that do not occur in the batch get the weight of a token seen in no item.
+     * @return A score between 0 and 1.
+     */
+    public double similarity(String name1, String name2) {
+        Map<String, Double> vector1 = vector(name1);
+        Map<String, Double> vector2 = vector(name2);
+        double dot = 0.0;
+        for (Map.Entry<String, Double> entry : vector1.entrySet()) {
+            Double weight = vector2.get(entry.getKey());
+            if (weight != null) {
+                dot += entry.getValue() * weight;
+            }
+        }
+        return Math.min(1.0, dot);
+    }
+
+    /**
+     * @return The IDF weight of a token, or the weight of an unseen token.
+     */
+    public double idf(String token) {
+        Integer id = tokenIds.get(token);
+        return id != null ? idf[id] : unseenIdf;
+    }
+
+    private Map<String, Double> vector(String name) {
+        Map<String, Double> vector = new HashMap<>();
+        for (String token : tokenize(name)) {
+            vector.merge(token, idf(token), Double::sum);
+        }
+        double norm = 0.0;
+        for (double weight : vector.values()) {
+            norm += weight * weight;
+        }
+        double scale = norm > 0.0 ? 1.0 / Math.sqrt(norm) : 0.0;
+        vector.replaceAll((token, weight) -> weight * scale);
+        return vector;
+    }
+
+    /**
+     * Splits a name into case-folded runs of letters and digits, e.g. "ACME, Inc." into ["acme", "inc"].
+     */
+    static String[] tokenize(String value) {
+        if (value == null || value.isEmpty()) {
+            return new String[0];
+        }
+        String[] tokens = new String[8];
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= value.length(); i++) {
+            boolean letterOrDigit = i < value.length() && Character.isLetterOrDigit(value.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                if (count == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, count * 2);
+                }
+                tokens[count++] = MatchKeys.foldCase(value.substring(start, i));
+                start = -1;
+            }
+        }
+        return Arrays.copyOf(tokens, count);
+    }
+
+    private static double smoothedIdf(int documents, int documentFrequency) {
+        return Math.log((documents + 1.0) / (documentFrequency + 1.0)) + 1.0;
+    }
+
+    private static double[] normalize(double[] weights) {
+        double norm = 0.0;
+        for (double weight : weights) {
+            norm += weight * weight;
+        }
+        if (norm > 0.0) {
+            double scale = 1.0 / Math.sqrt(norm);
+            for (int t = 0; t < weights.length; t++) {
+                weights[t] *= scale;
+            }
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,160 @@
+package com.mdm.botcore.matching;
+
+import java.util.Arrays;
+
+/**
+ * Keeps, for every entity, only its K best-scoring candidate pairs.
+ *
+ * Each entity has a bounded min-heap of pair indexes ordered by score (ties go to the earlier
+ * pair), so the worst kept pair is evicted in O(log K) when a better one arrives. A pair
+ * survives only if it is in the final heap of both its entities: one hub entity sharing a
+ * switchboard phone with thousands of others keeps K pairs, although each of the others would
+ * happily keep the hub.
+ *
+ * Entities are int ordinals; pairs are given as parallel arrays.
+ */
+public final class TopKSelector {
+
+    private TopKSelector() {}
+
+    /**
+     * @param entityCount Number of entity ordinals; every ordinal must be below it.
+     * @param ordinals1 First entity of each pair.
+     * @param ordinals2 Second entity of each pair.
+     * @param scores Score of each pair; higher is better.
+     * @param k Pairs kept per entity; 0 or less keeps every pair.
+     * @return The kept pairs and the candidate count of every entity.
+     */
+    public static Result select(int entityCount, int[] ordinals1, int[] ordinals2, double[] scores, int k) {
+        int pairCount = scores.length;
+        int[] degrees = new int[entityCount];
+        for (int p = 0; p < pairCount; p++) {
+            degrees[ordinals1[p]]++;
+            if (ordinals2[p] != ordinals1[p]) {
+                degrees[ordinals2[p]]++;
+            }
+        }
+        boolean[] kept = new boolean[pairCount];
+        if (k <= 0) {
+            Arrays.fill(kept, true);
+            return new Result(kept, pairCount, degrees, k);
+        }
+
+        int[][] heaps = new int[entityCount][];
+        int[] heapSizes = new int[entityCount];
+        for (int p = 0; p < pairCount; p++) {
+            offer(heaps, heapSizes, ordinals1[p], p, scores, k, degrees);
+            if (ordinals2[p] != ordinals1[p]) {
+                offer(heaps, heapSizes, ordinals2[p], p, scores, k, degrees);
+            }
+        }
+
+        byte[] votes = new byte[pairCount];
+        for (int e = 0; e < entityCount; e++) {
+            for (int h = 0; h < heapSizes[e]; h++) {
+                votes[heaps[e][h]]++;
+            }
+        }
+        int keptCount = 0;
+        for (int p = 0; p < pairCount; p++) {
+            kept[p] = votes[p] == (ordinals1[p] == ordinals2[p] ? 1 : 2);
+            if (kept[p]) {
+                keptCount++;
+            }
+        }
+        return new Result(kept, keptCount, degrees, k);
+    }
+
+    private static void offer(int[][] heaps, int[] heapSizes, int entity, int pair, double[] scores, int k, int[] degrees) {
+        if (degrees[entity] <= k) {
+            // Small blocks keep everything; no heap needed
+            if (heaps[entity] == null) {
+                heaps[entity] = new int[degrees[entity]];
+            }
+            heaps[entity][heapSizes[entity]++] = pair;
+            return;
+        }
+        if (heaps[entity] == null) {
+            heaps[entity] = new int[k];
+        }
+        int[] heap = heaps[entity];
+        int size = heapSizes[entity];
+        if (size < k) {
+            heap[size] = pair;
+            heapSizes[entity] = size + 1;
+            siftUp(heap, size, scores);
+        } else if (worse(heap[0], pair, scores)) {
+            heap[0] = pair;
+            siftDown(heap, k, scores);
+        }
+    }
+
+    // Whether pair a ranks below pair b: lower score, or the same score and added later
+    private static boolean worse(int a, int b, double[] scores) {
+        return scores[a] < scores[b] || (scores[a] == scores[b] && a > b);
+    }
+
+    private static void siftUp(int[] heap, int position, double[] scores) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!worse(heap[position], heap[parent], scores)) {
+                return;
+            }
+            swap(heap, position, parent);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, double[] scores) {
+        int position = 0;
+        while (true) {
+            int worst = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && worse(heap[left], heap[worst], scores)) {
+                worst = left;
+            }
+            if (right < size && worse(heap[right], heap[worst], scores)) {
+                worst = right;
+            }
+            if (worst == position) {
+                return;
+            }
+            swap(heap, position, worst);
+            position = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    /**
+     * Outcome of a top-K selection.
+     */
+    public static final class Result {
+        private final boolean[] kept;
+        private final int keptCount;
+        private final int[] degrees;
+        private final int k;
+
+        private Result(boolean[] kept, int keptCount, int[] degrees, int k) {
+            this.kept = kept;
+            this.keptCount = keptCount;
+            this.degrees = degrees;
+            this.k = k;
+        }
+
+        public boolean isKept(int pair) { return kept[pair]; }
+        public int getKeptCount() { return keptCount; }
+        public int getDroppedCount() { return kept.length - keptCount; }
+
+        /** @return The number of candidate pairs the entity took part in before selection. */
+        public int candidateCount(int entity) { return degrees[entity]; }
+
+        /** @return Whether the entity had more than K candidates, i.e. sat in an oversized block. */
+        public boolean isOversized(int entity) { return k > 0 && degrees[entity] > k; }
+    }
+}
@@ -0,0 +1,162 @@
+package com.mdm.botcore.matching;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Character-trigram inverted index with an overlap-count candidate filter.
+ *
+ * Each item's text is padded with a leading and trailing space and cut into its distinct
+ * trigrams; a posting list maps every trigram to the items containing it. Walking the posting
+ * lists of an anchor counts, per partner, how many trigrams the two share. A pair becomes a
+ * candidate only when the shared count reaches {@code minOverlap} of the smaller trigram set,
+ * so pairs without meaningful textual overlap are never scored.
+ *
+ * Items whose text is {@code null} or empty are not indexed.
+ *
+ * @param <T> The item type (usually {@code MDMEntity}).
+ */
+public final class TrigramIndex<T> implements CandidateIndex<T> {
+
+    private final List<T> items;
+    private final double minOverlap;
+    private final long[][] itemTrigrams;        // per item: distinct trigrams, null when not indexed
+    private final Map<Long, int[]> postings;    // trigram -> item positions, ascending
+
+    private TrigramIndex(List<T> items, double minOverlap, long[][] itemTrigrams, Map<Long, int[]> postings) {
+        this.items = items;
+        this.minOverlap = minOverlap;
+        this.itemTrigrams = itemTrigrams;
+        this.postings = postings;
+    }
+
+    /**
+     * Builds the index.
+     * @param items The items to index; the list is not copied.
+     * @param text Extracts the (already normalized) text to cut into trigrams.
+     * @param minOverlap Fraction of the smaller trigram set two items must share, in (0, 1].
+     * @return The built index.
+     */
+    public static <T> TrigramIndex<T> build(List<T> items, Function<? super T, String> text, double minOverlap) {
+        if (!(minOverlap > 0.0 && minOverlap <= 1.0)) {
+            throw new IllegalArgumentException("Trigram min overlap must be in (0, 1]: " + minOverlap);
+        }
+        int size = items.size();
+        long[][] itemTrigrams = new long[size][];
+        Map<Long, int[]> postings = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            String value = text.apply(items.get(i));
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            long[] trigrams = trigrams(value);
+            itemTrigrams[i] = trigrams;
+            for (long trigram : trigrams) {
+                // Slot 0 holds the member count, members follow in ascending item order
+                int[] posting = postings.get(trigram);
+                if (posting == null) {
+                    posting = new int[4];
+                } else if (posting[0] + 1 == posting.length) {
+                    posting = Arrays.copyOf(posting, posting.length * 2);
+                }
+                posting[++posting[0]] = i;
+                postings.put(trigram, posting);
+            }
+        }
+
+        // Trim posting lists and drop singletons, which can never produce a pair
+        postings.entrySet().removeIf(entry -> entry.getValue()[0] < 2);
+        postings.replaceAll((trigram, posting) -> Arrays.copyOfRange(posting, 1, posting[0] + 1));
+        return new TrigramIndex<>(items, minOverlap, itemTrigrams, postings);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public T item(int position) {
+        return items.get(position);
+    }
+
+    /**
+     * @return The minimum fraction of the smaller trigram set a candidate pair shares.
+     */
+    public double getMinOverlap() {
+        return minOverlap;
+    }
+
+    /**
+     * Walks the anchors with one set of overlap counters for the whole range; the counters cover
+     * every item, so callers should pass ranges of anchors rather than one anchor at a time.
+     */
+    @Override
+    public void forEachPairIndex(int fromAnchor, int toAnchor, PairConsumer pairConsumer) {
+        int[] overlap = new int[items.size()];
+        int[] partners = new int[16];
+        for (int i = fromAnchor; i < toAnchor; i++) {
+            long[] trigrams = itemTrigrams[i];
+            if (trigrams == null) {
+                continue;
+            }
+            int count = 0;
+            for (long trigram : trigrams) {
+                int[] posting = postings.get(trigram);
+                if (posting == null) {
+                    continue;
+                }
+                // Posting lists are sorted, so skip straight past the anchor
+                for (int k = Arrays.binarySearch(posting, i) + 1; k < posting.length; k++) {
+                    int j = posting[k];
+                    if (overlap[j]++ == 0) {
+                        if (count == partners.length) {
+                            partners = Arrays.copyOf(partners, count * 2);
+                        }
+                        partners[count++] = j;
+                    }
+                }
+            }
+            Arrays.sort(partners, 0, count);
+            for (int k = 0; k < count; k++) {
+                int j = partners[k];
+                if (overlap[j] >= requiredOverlap(trigrams.length, itemTrigrams[j].length)) {
+                    pairConsumer.accept(i, j);
+                }
+                overlap[j] = 0;
+            }
+        }
+    }
+
+    private int requiredOverlap(int trigrams1, int trigrams2) {
+        return Math.max(1, (int) Math.ceil(minOverlap * Math.min(trigrams1, trigrams2)));
+    }
+
+    /**
+     * Distinct trigrams of {@code " " + value + " "}, each packed losslessly into a {@code long}.
+     */
+    static long[] trigrams(String value) {
+        int length = value.length() + 2;
+        long[] trigrams = new long[length - 2];
+        for (int s = 0; s < trigrams.length; s++) {
+            trigrams[s] = ((long) paddedChar(value, s) << 32) | ((long) paddedChar(value, s + 1) << 16) | paddedChar(value, s + 2);
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int s = 0; s < trigrams.length; s++) {
+            if (distinct == 0 || trigrams[s] != trigrams[distinct - 1]) {
+                trigrams[distinct++] = trigrams[s];
+            }
+        }
+        return distinct == trigrams.length ? trigrams : Arrays.copyOf(trigrams, distinct);
+    }
+
+    private static char paddedChar(String value, int paddedPosition) {
+        int position = paddedPosition - 1;
+        return position < 0 || position >= value.length() ? ' ' : value.charAt(position);
+    }
+}
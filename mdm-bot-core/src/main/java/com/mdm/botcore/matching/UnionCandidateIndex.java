@@ -0,0 +1,72 @@
+package com.mdm.botcore.matching;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Combines several candidate indexes over the same items into one, emitting each pair once even
+ * when more than one underlying index proposes it. Used to walk the candidate pairs of several
+ * rules in a single pass.
+ *
+ * @param <T> The item type.
+ */
+public final class UnionCandidateIndex<T> implements CandidateIndex<T> {
+
+    private static final int ANCHOR_BLOCK = 1024;
+
+    private final List<? extends CandidateIndex<T>> parts;
+
+    /**
+     * @param parts Indexes built over the same item list; must not be empty.
+     */
+    public UnionCandidateIndex(List<? extends CandidateIndex<T>> parts) {
+        if (parts.isEmpty()) {
+            throw new IllegalArgumentException("At least one candidate index is required");
+        }
+        this.parts = parts;
+    }
+
+    @Override
+    public int size() {
+        return parts.get(0).size();
+    }
+
+    @Override
+    public T item(int position) {
+        return parts.get(0).item(position);
+    }
+
+    @Override
+    public void forEachPairIndex(int fromAnchor, int toAnchor, PairConsumer pairConsumer) {
+        if (parts.size() == 1) {
+            parts.get(0).forEachPairIndex(fromAnchor, toAnchor, pairConsumer);
+            return;
+        }
+        // Each part walks a block of anchors at once: an index may set up per call, e.g. the trigram
+        // index's overlap counters sized to the whole batch, so a call per anchor would be quadratic
+        long[][] pairs = {new long[64]};
+        int[] count = new int[1];
+        for (int blockStart = fromAnchor; blockStart < toAnchor; blockStart += ANCHOR_BLOCK) {
+            int blockEnd = Math.min(toAnchor, blockStart + ANCHOR_BLOCK);
+            count[0] = 0;
+            for (CandidateIndex<T> part : parts) {
+                part.forEachPairIndex(blockStart, blockEnd, (i, j) -> {
+                    if (count[0] == pairs[0].length) {
+                        pairs[0] = Arrays.copyOf(pairs[0], count[0] * 2);
+                    }
+                    pairs[0][count[0]++] = ((long) i << 32) | j;
+                });
+            }
+            // Sorting the packed pairs orders them by anchor, then partner, as a single index would emit them
+            long[] found = pairs[0];
+            Arrays.sort(found, 0, count[0]);
+            long previous = -1;
+            for (int k = 0; k < count[0]; k++) {
+                if (found[k] != previous) {
+                    previous = found[k];
+                    pairConsumer.accept((int) (previous >>> 32), (int) previous);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.mdm.botcore.matching;
+
+/**
+ * Disjoint-set forest over the positions {@code 0..size-1}, with path halving and union by size,
+ * so that any sequence of operations runs in near-constant amortized time per operation.
+ */
+public final class UnionFind {
+
+    private final int[] parent;
+    private final int[] componentSize;
+    private int components;
+
+    public UnionFind(int size) {
+        this.parent = new int[size];
+        this.componentSize = new int[size];
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+            componentSize[i] = 1;
+        }
+        this.components = size;
+    }
+
+    /**
+     * @return The representative of the component containing {@code position}.
+     */
+    public int find(int position) {
+        while (parent[position] != position) {
+            // Path halving: point every other node on the path at its grandparent
+            parent[position] = parent[parent[position]];
+            position = parent[position];
+        }
+        return position;
+    }
+
+    /**
+     * Merges the components of two positions.
+     * @return Whether the positions were in different components.
+     */
+    public boolean union(int position1, int position2) {
+        int root1 = find(position1);
+        int root2 = find(position2);
+        if (root1 == root2) {
+            return false;
+        }
+        if (componentSize[root1] < componentSize[root2]) {
+            int swap = root1;
+            root1 = root2;
+            root2 = swap;
+        }
+        parent[root2] = root1;
+        componentSize[root1] += componentSize[root2];
+        components--;
+        return true;
+    }
+
+    /**
+     * @return The number of positions in the component containing {@code position}.
+     */
+    public int componentSize(int position) {
+        return componentSize[find(position)];
+    }
+
+    /**
+     * @return The number of disjoint components.
+     */
+    public int componentCount() {
+        return components;
+    }
+
+    public int size() {
+        return parent.length;
+    }
+}
@@ -0,0 +1,151 @@
+package com.mdm.botcore.service;
+
+import com.mdm.botcore.matching.LongPairSet;
+import com.mdm.botcore.matching.TopKSelector;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Applies top-K limits to a batch's matches (see {@link TopKSelector}), once per rule on the raw
+ * suggestions and once per company on the aggregated pairs, recording every oversized block in
+ * the batch's {@link MatchStatistics}. Kept items stay in their original order.
+ *
+ * Rejected pairs must be removed before either limit, or they take slots that a pair the reviewer
+ * has not seen yet would have kept; {@link #limit} runs the steps in that order.
+ */
+public final class CandidateLimiter {
+
+    static final String COMPANY_SCOPE = "company";
+
+    private CandidateLimiter() {}
+
+    /**
+     * Drops rejected pairs, keeps each entity's K best matches per rule, aggregates the rest per
+     * entity pair and keeps each entity's K best pairs.
+     * @param suggestions The engine's suggestions.
+     * @param ordinals Numbering of entity ids that {@code rejected} refers to; new ids are added.
+     * @param rejected Pairs of id ordinals never to suggest again.
+     * @param topK K per rule name; 0 keeps every match of the rule.
+     * @param companyTopK Pairs kept per entity; 0 keeps every pair.
+     * @param statistics Receives dropped counts and oversized blocks.
+     * @return The kept pairs.
+     */
+    public static List<SuggestionAggregator.PairSuggestions> limit(List<MergeService.MergeSuggestion> suggestions,
+                                                                   EntityOrdinals ordinals, LongPairSet rejected,
+                                                                   ToIntFunction<String> topK, int companyTopK,
+                                                                   MatchStatistics statistics) {
+        List<MergeService.MergeSuggestion> open = SuggestionAggregator.withoutExcluded(suggestions, ordinals, rejected);
+        List<MergeService.MergeSuggestion> kept = limitPerRule(open, ordinals, topK, statistics);
+        return limitPairs(SuggestionAggregator.aggregate(kept, ordinals, new LongPairSet()), ordinals, companyTopK,
+                statistics);
+    }
+
+    /**
+     * Keeps, per rule, each entity's K best-scoring matches.
+     * @param suggestions The engine's suggestions.
+     * @param ordinals Numbering of entity ids; new ids are added.
+     * @param topK K per rule name; 0 keeps every match of the rule.
+     * @param statistics Receives dropped counts and oversized blocks.
+     * @return The kept suggestions.
+     */
+    public static List<MergeService.MergeSuggestion> limitPerRule(List<MergeService.MergeSuggestion> suggestions,
+                                                                  EntityOrdinals ordinals, ToIntFunction<String> topK,
+                                                                  MatchStatistics statistics) {
+        Map<String, List<Integer>> byRule = new LinkedHashMap<>();
+        for (int s = 0; s < suggestions.size(); s++) {
+            byRule.computeIfAbsent(suggestions.get(s).getRuleName(), rule -> new ArrayList<>()).add(s);
+        }
+        boolean[] dropped = new boolean[suggestions.size()];
+        int droppedCount = 0;
+        for (Map.Entry<String, List<Integer>> rule : byRule.entrySet()) {
+            int k = topK.applyAsInt(rule.getKey());
+            if (k <= 0) {
+                continue;
+            }
+            List<Integer> members = rule.getValue();
+            int[] ordinals1 = new int[members.size()];
+            int[] ordinals2 = new int[members.size()];
+            double[] scores = new double[members.size()];
+            for (int m = 0; m < members.size(); m++) {
+                MergeService.MergeSuggestion suggestion = suggestions.get(members.get(m));
+                ordinals1[m] = ordinals.of(suggestion.getEntity1().getId());
+                ordinals2[m] = ordinals.of(suggestion.getEntity2().getId());
+                scores[m] = suggestion.getScore();
+            }
+            TopKSelector.Result result = TopKSelector.select(ordinals.size(), ordinals1, ordinals2, scores, k);
+            for (int m = 0; m < members.size(); m++) {
+                if (!result.isKept(m)) {
+                    dropped[members.get(m)] = true;
+                    droppedCount++;
+                }
+            }
+            reportOversized(result, ordinals, rule.getKey(), k, statistics);
+        }
+        if (droppedCount == 0) {
+            return suggestions;
+        }
+        statistics.addDroppedSuggestions(droppedCount);
+        List<MergeService.MergeSuggestion> kept = new ArrayList<>(suggestions.size() - droppedCount);
+        for (int s = 0; s < suggestions.size(); s++) {
+            if (!dropped[s]) {
+                kept.add(suggestions.get(s));
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Keeps each entity's K best pairs, scoring a pair by the summed scores of its matching rules.
+     * @param pairs The aggregated pairs.
+     * @param ordinals Numbering of entity ids; new ids are added.
+     * @param k Pairs kept per entity; 0 keeps every pair.
+     * @param statistics Receives dropped counts and oversized blocks.
+     * @return The kept pairs.
+     */
+    public static List<SuggestionAggregator.PairSuggestions> limitPairs(List<SuggestionAggregator.PairSuggestions> pairs,
+                                                                        EntityOrdinals ordinals, int k,
+                                                                        MatchStatistics statistics) {
+        if (k <= 0) {
+            return pairs;
+        }
+        int[] ordinals1 = new int[pairs.size()];
+        int[] ordinals2 = new int[pairs.size()];
+        double[] scores = new double[pairs.size()];
+        for (int p = 0; p < pairs.size(); p++) {
+            SuggestionAggregator.PairSuggestions pair = pairs.get(p);
+            ordinals1[p] = ordinals.of(pair.getEntity1().getId());
+            ordinals2[p] = ordinals.of(pair.getEntity2().getId());
+            for (MergeService.MergeSuggestion suggestion : pair.getSuggestions()) {
+                scores[p] += suggestion.getScore();
+            }
+        }
+        TopKSelector.Result result = TopKSelector.select(ordinals.size(), ordinals1, ordinals2, scores, k);
+        reportOversized(result, ordinals, COMPANY_SCOPE, k, statistics);
+        if (result.getDroppedCount() == 0) {
+            return pairs;
+        }
+        statistics.addDroppedPairs(result.getDroppedCount());
+        List<SuggestionAggregator.PairSuggestions> kept = new ArrayList<>(result.getKeptCount());
+        for (int p = 0; p < pairs.size(); p++) {
+            if (result.isKept(p)) {
+                kept.add(pairs.get(p));
+            }
+        }
+        return kept;
+    }
+
+    private static void reportOversized(TopKSelector.Result result, EntityOrdinals ordinals, String scope, int k,
+                                        MatchStatistics statistics) {
+        for (int e = 0; e < ordinals.size(); e++) {
+            if (result.isOversized(e)) {
+                statistics.addOversizedBlock(new MatchStatistics.OversizedBlock(ordinals.idOf(e), scope, result.candidateCount(e), k));
+                System.out.println("Top-K: entity " + ordinals.idOf(e) + " had " + result.candidateCount(e)
+                        + " " + scope + " candidates; kept the best " + k);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.mdm.botcore.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Dedicated threads the Drools engine fires batch partitions on ({@code mdm.drools.partitioned}).
+ *
+ * Firing a partition waits while all sessions of its rule set are in use
+ * ({@code mdm.drools.session-pool.max-concurrent}), so partitions do not run on the ForkJoin pool
+ * that pair matching shares, where a waiting worker would hold up unrelated work. The thread count
+ * defaults to the session cap, so the partitions of one batch never wait for each other, or to the
+ * available processors when sessions are not capped.
+ */
+@Component
+public class DroolsPartitionExecutor {
+
+    private final int threads;
+    private final ExecutorService executor;
+
+    /**
+     * @param threads Partitions fired at once ({@code mdm.drools.partition-threads}); 1 fires them in turn on
+     *                the caller, 0 or less one per available processor.
+     */
+    @Autowired
+    public DroolsPartitionExecutor(
+            @Value("${mdm.drools.partition-threads:${mdm.drools.session-pool.max-concurrent:8}}") int threads) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = this.threads > 1 ? Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "drools-partition-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * @return An executor that fires every partition on the calling thread.
+     */
+    public static DroolsPartitionExecutor sequential() {
+        return new DroolsPartitionExecutor(1);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Applies the function to every item, at most {@link #getThreads()} at once.
+     * @param items The partitions.
+     * @param function Fires one partition.
+     * @return The results, in the order of the items.
+     */
+    public <T, R> List<R> map(List<T> items, Function<T, R> function) {
+        List<R> results = new ArrayList<>(items.size());
+        if (executor == null || items.size() <= 1) {
+            for (T item : items) {
+                results.add(function.apply(item));
+            }
+            return results;
+        }
+        List<Future<R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(executor.submit(() -> function.apply(item)));
+        }
+        try {
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while firing Drools partitions", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Error firing a Drools partition", e.getCause());
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
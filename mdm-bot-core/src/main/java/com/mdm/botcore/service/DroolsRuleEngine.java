@@ -1,48 +1,158 @@
 package com.mdm.botcore.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.mdm.botcore.config.DroolsConfig;
+import com.mdm.botcore.config.MatchingProperties;
+import com.mdm.botcore.config.PooledKieBase;
 import com.mdm.botcore.domain.model.MDMEntity;
-import org.kie.api.runtime.KieContainer;
-import org.kie.api.runtime.KieSession;
+import com.mdm.botcore.matching.BlockingKey;
+import com.mdm.botcore.matching.BlockingKeyPartitioner;
+import com.mdm.botcore.matching.BlockingPolicy;
+import com.mdm.botcore.matching.MatchFeatures;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.springframework.beans.factory.annotation.Qualifier;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Component
 @Qualifier("droolsRuleEngine")
 @Scope("prototype")
 public class DroolsRuleEngine implements RuleEngine {
-    private final ApplicationContext applicationContext;
+    // Partitions per thread; more partitions than threads evens out components of different sizes
+    private static final int PARTITIONS_PER_THREAD = 4;
+    // The conditions of a rule, and the entity patterns and fact sources within them
+    private static final Pattern RULE_CONDITIONS = Pattern.compile("\\bwhen\\b(.*?)\\bthen\\b", Pattern.DOTALL);
+    private static final Pattern ENTITY_PATTERN = Pattern.compile("\\bMDMEntity\\s*\\(");
+    private static final Pattern FROM = Pattern.compile("\\bfrom\\b");
+
+    private final RuleSetManager ruleSetManager;
     private final ObjectMapper objectMapper;
+    private final DroolsPartitionExecutor partitionExecutor;
+    private final boolean partitioned;
+    private final Set<String> partitionKeyKinds;
+    private final Map<String, BlockingPolicy> keyPolicies;
+
+    public DroolsRuleEngine(RuleSetManager ruleSetManager, ObjectMapper objectMapper) {
+        this(ruleSetManager, objectMapper, MatchingProperties.defaults(), DroolsPartitionExecutor.sequential(),
+                false, "");
+    }
 
+    /**
+     * @param matchingProperties Blocking policies of the rules {@link BlockingKey} facts stand for.
+     * @param partitionExecutor The threads partitions are fired on ({@code mdm.drools.partition-threads}).
+     * @param partitioned Whether batches are split into partitions that no {@link BlockingKey} join
+     *                    crosses, each fired on its own session ({@code mdm.drools.partitioned}).
+     *                    A rule set with a rule that joins entities in another way, such as the
+     *                    full self-join of {@code 05-fuzzy-name}, fires whole on one session.
+     * @param partitionKeyKinds Comma-separated key kinds the rules join on ({@code mdm.drools.partition-key-kinds});
+     *                          empty for every kind. Fewer kinds give smaller partitions.
+     */
     @Autowired
-    public DroolsRuleEngine(ApplicationContext applicationContext, ObjectMapper objectMapper) {
-        this.applicationContext = applicationContext;
+    public DroolsRuleEngine(RuleSetManager ruleSetManager, ObjectMapper objectMapper,
+                            MatchingProperties matchingProperties, DroolsPartitionExecutor partitionExecutor,
+                            @Value("${mdm.drools.partitioned:false}") boolean partitioned,
+                            @Value("${mdm.drools.partition-key-kinds:}") String partitionKeyKinds) {
+        this.ruleSetManager = ruleSetManager;
         this.objectMapper = objectMapper;
+        this.partitionExecutor = partitionExecutor;
+        this.partitioned = partitioned;
+        this.partitionKeyKinds = Arrays.stream(partitionKeyKinds.split(","))
+                .map(String::trim)
+                .filter(kind -> !kind.isEmpty())
+                .collect(Collectors.toSet());
+        this.keyPolicies = BlockingKey.policies(matchingProperties);
     }
 
     @Override
     public List<MergeService.MergeSuggestion> processEntities(List<MDMEntity> entities, List<String> rules) {
-        List<MergeService.MergeSuggestion> mergeSuggestions = new ArrayList<>();
-        if (entities == null || entities.isEmpty() || rules == null || rules.isEmpty()) {
-            return mergeSuggestions;
+        return processEntities(entities, RuleLayers.flat(rules != null ? rules : List.of()), null, null);
+    }
+
+    @Override
+    public List<MergeService.MergeSuggestion> processEntities(List<MDMEntity> entities, RuleLayers rules,
+                                                              String companyId, String domain) {
+        if (entities == null || entities.isEmpty() || rules.effectiveRules().isEmpty()) {
+            return new ArrayList<>();
+        }
+        // Precompute match features so DRL constraints can use e.g. matchFeatures.phoneDigits
+        MatchFeatures.prepare(entities);
+        // Rules are only compiled when the rule set changed, in the background once the company has
+        // an active version; the session comes from the rule set's pool and is reset when the work completes
+        PooledKieBase kieBase = ruleSetManager.acquire(companyId, domain, rules);
+        // Key facts let rules join entities on indexed equality (see BlockingKey); blocks are capped over the whole batch
+        List<BlockingKey> keys = BlockingKey.forBatch(entities, keyPolicies);
+        if (!partitioned) {
+            return fire(kieBase, entities, keys, objectMapper);
+        }
+        if (!joinsOnBlockingKeys(rules.effectiveRules())) {
+            // Partitions would split pairs such a rule joins, so the batch is not partitioned
+            System.out.println("Drools: Firing the batch unpartitioned; a rule joins entities without BlockingKey facts.");
+            return fire(kieBase, entities, keys, objectMapper);
+        }
+        List<BlockingKeyPartitioner.Partition> partitions = BlockingKeyPartitioner.partition(entities, keys,
+                partitionKeyKinds, partitionExecutor.getThreads() * PARTITIONS_PER_THREAD);
+        if (partitions.size() == 1) {
+            return fire(kieBase, entities, keys, objectMapper);
+        }
+        // Each partition fires on a session of its own; the suggestion lists are merged in partition order
+        List<MergeService.MergeSuggestion> suggestions = new ArrayList<>();
+        partitionExecutor.map(partitions, partition -> fire(kieBase, partition.entities(), partition.keys(), objectMapper))
+                .forEach(suggestions::addAll);
+        return suggestions;
+    }
+
+    /**
+     * Whether every rule joins entities only through {@link BlockingKey} facts, so that a batch can be
+     * split into partitions no key join crosses. A rule with two or more {@code MDMEntity} patterns
+     * that are not read {@code from} a fact joins the entities themselves.
+     * @param drls The DRL sources of the rule set.
+     */
+    static boolean joinsOnBlockingKeys(List<String> drls) {
+        for (String drl : drls) {
+            Matcher conditions = RULE_CONDITIONS.matcher(drl);
+            while (conditions.find()) {
+                String when = conditions.group(1);
+                if (count(ENTITY_PATTERN, when) - count(FROM, when) > 1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int count(Pattern pattern, String text) {
+        int count = 0;
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            count++;
         }
-        KieContainer kieContainer = applicationContext.getBean(DroolsConfig.class).kieContainer(rules);
-        KieSession kieSession = kieContainer.newKieSession();
-        try {
+        return count;
+    }
+
+    static List<MergeService.MergeSuggestion> fire(PooledKieBase kieBase, List<MDMEntity> entities,
+                                                   ObjectMapper objectMapper) {
+        return fire(kieBase, entities, BlockingKey.forBatch(entities), objectMapper);
+    }
+
+    static List<MergeService.MergeSuggestion> fire(PooledKieBase kieBase, List<MDMEntity> entities,
+                                                   List<BlockingKey> keys, ObjectMapper objectMapper) {
+        List<MergeService.MergeSuggestion> mergeSuggestions = new ArrayList<>();
+        kieBase.execute(kieSession -> {
             kieSession.setGlobal("mergeSuggestions", mergeSuggestions);
             kieSession.setGlobal("objectMapper", objectMapper);
             entities.forEach(kieSession::insert);
+            keys.forEach(kieSession::insert);
             kieSession.fireAllRules();
-        } finally {
-            kieSession.dispose();
-        }
+        });
         return mergeSuggestions;
     }
-} 
\ No newline at end of file
+}
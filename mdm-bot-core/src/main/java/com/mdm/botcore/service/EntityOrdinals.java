@@ -0,0 +1,49 @@
+package com.mdm.botcore.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers entity ids in order of first appearance, so that pairs of entities can be tracked as
+ * packed int pairs (see {@link com.mdm.botcore.matching.LongPairSet}) instead of id strings.
+ * A {@code null} id is an id like any other.
+ */
+public final class EntityOrdinals {
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+
+    /**
+     * @return The ordinal of the id, assigning the next one if the id is new.
+     */
+    public int of(String entityId) {
+        Integer ordinal = ordinals.get(entityId);
+        if (ordinal == null) {
+            ordinal = ids.size();
+            ordinals.put(entityId, ordinal);
+            ids.add(entityId);
+        }
+        return ordinal;
+    }
+
+    /**
+     * @return The id numbered with the ordinal.
+     */
+    public String idOf(int ordinal) {
+        return ids.get(ordinal);
+    }
+
+    /**
+     * @return The ordinal of the id, or -1 if it was never numbered.
+     */
+    public int find(String entityId) {
+        Integer ordinal = ordinals.get(entityId);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
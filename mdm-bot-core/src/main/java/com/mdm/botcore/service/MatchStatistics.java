@@ -0,0 +1,88 @@
+package com.mdm.botcore.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counters of one merge-processing batch, exposed through the statistics endpoint.
+ * Oversized blocks - entities with more candidates than top-K allows - are listed (largest
+ * first, at most {@value #MAX_REPORTED_BLOCKS}) so that truncation is visible rather than silent.
+ */
+public class MatchStatistics {
+
+    static final int MAX_REPORTED_BLOCKS = 100;
+
+    private final String companyId;
+    private final String domain;
+    private final LocalDateTime processedAt = LocalDateTime.now();
+    private int batchSize;
+    private int indexedCandidates;
+    private int suggestions;
+    private int droppedSuggestions;
+    private int rejectedPairs;
+    private int pairs;
+    private int droppedPairs;
+    private int mergeGroups;
+    private int oversizedBlockCount;
+    private final List<OversizedBlock> oversizedBlocks = new ArrayList<>();
+
+    public MatchStatistics(String companyId, String domain) {
+        this.companyId = companyId;
+        this.domain = domain;
+    }
+
+    /**
+     * An entity whose candidates were cut to the top K.
+     * @param entityId The entity.
+     * @param scope The rule whose matches were limited, or "company" for the combined pair limit.
+     * @param candidates Candidates before the limit.
+     * @param limit The K that applied.
+     */
+    public record OversizedBlock(String entityId, String scope, int candidates, int limit) {
+    }
+
+    void addOversizedBlock(OversizedBlock block) {
+        oversizedBlockCount++;
+        oversizedBlocks.add(block);
+        if (oversizedBlocks.size() > MAX_REPORTED_BLOCKS) {
+            oversizedBlocks.sort((a, b) -> Integer.compare(b.candidates(), a.candidates()));
+            oversizedBlocks.remove(oversizedBlocks.size() - 1);
+        }
+    }
+
+    void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+    void setIndexedCandidates(int indexedCandidates) { this.indexedCandidates = indexedCandidates; }
+    void setSuggestions(int suggestions) { this.suggestions = suggestions; }
+    void addDroppedSuggestions(int droppedSuggestions) { this.droppedSuggestions += droppedSuggestions; }
+    void setRejectedPairs(int rejectedPairs) { this.rejectedPairs = rejectedPairs; }
+    void setPairs(int pairs) { this.pairs = pairs; }
+    void addDroppedPairs(int droppedPairs) { this.droppedPairs += droppedPairs; }
+    void setMergeGroups(int mergeGroups) { this.mergeGroups = mergeGroups; }
+
+    public String getCompanyId() { return companyId; }
+    public String getDomain() { return domain; }
+    public LocalDateTime getProcessedAt() { return processedAt; }
+    public int getBatchSize() { return batchSize; }
+    /** @return Earlier entities pulled in from the entity index. */
+    public int getIndexedCandidates() { return indexedCandidates; }
+    /** @return Rule matches produced by the engine (after dropping pairs of two earlier entities). */
+    public int getSuggestions() { return suggestions; }
+    /** @return Rule matches dropped by per-rule top-K. */
+    public int getDroppedSuggestions() { return droppedSuggestions; }
+    /** @return Previously rejected pairs that were not suggested again. */
+    public int getRejectedPairs() { return rejectedPairs; }
+    /** @return Entity pairs persisted. */
+    public int getPairs() { return pairs; }
+    /** @return Entity pairs dropped by the company top-K. */
+    public int getDroppedPairs() { return droppedPairs; }
+    public int getMergeGroups() { return mergeGroups; }
+    /** @return All oversized blocks, including those beyond the reported list. */
+    public int getOversizedBlockCount() { return oversizedBlockCount; }
+
+    public List<OversizedBlock> getOversizedBlocks() {
+        List<OversizedBlock> sorted = new ArrayList<>(oversizedBlocks);
+        sorted.sort((a, b) -> Integer.compare(b.candidates(), a.candidates()));
+        return sorted;
+    }
+}
@@ -0,0 +1,38 @@
+package com.mdm.botcore.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the statistics of the most recent batches. {@link MergeService} is prototype scoped,
+ * so the history lives in this singleton.
+ */
+@Component
+public class MatchStatisticsRegistry {
+
+    private final int capacity;
+    private final Deque<MatchStatistics> recent = new ArrayDeque<>();
+
+    public MatchStatisticsRegistry(@Value("${mdm.matching.statistics-history:20}") int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public synchronized void record(MatchStatistics statistics) {
+        recent.addFirst(statistics);
+        while (recent.size() > capacity) {
+            recent.removeLast();
+        }
+    }
+
+    /**
+     * @return The statistics of the most recent batches, newest first.
+     */
+    public synchronized List<MatchStatistics> getRecent() {
+        return new ArrayList<>(recent);
+    }
+}
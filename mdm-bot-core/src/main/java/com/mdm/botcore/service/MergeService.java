@@ -3,11 +3,16 @@ package com.mdm.botcore.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mdm.botcore.config.DroolsConfig;
+import com.mdm.botcore.config.MatchingProperties;
 import com.mdm.botcore.domain.model.AuditLog;
 import com.mdm.botcore.domain.model.MDMEntity;
 import com.mdm.botcore.domain.model.MergeCandidatePair;
+import com.mdm.botcore.domain.model.MergeGroup;
 import com.mdm.botcore.domain.repository.AuditLogRepository;
 import com.mdm.botcore.domain.repository.MergeCandidatePairRepository;
+import com.mdm.botcore.domain.repository.MergeGroupRepository;
+import com.mdm.botcore.index.EntityIndex;
+import com.mdm.botcore.matching.LongPairSet;
 import org.kie.api.definition.rule.Rule;
 import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
@@ -29,6 +34,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -39,28 +45,45 @@ import java.util.stream.Collectors;
 @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE) // Ensure new instance for each merge process to avoid state issues with KieSession
 public class MergeService {
 
+    private static final int ID_QUERY_CHUNK_SIZE = 1000;
+
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
     private final MergeCandidatePairRepository mergeCandidatePairRepository;
     private final AuditLogRepository auditLogRepository;
+    private final MergeGroupRepository mergeGroupRepository;
     private final ApplicationContext applicationContext; // To get prototype beans
     private final RuleEngine ruleEngine;
+    private final EntityIndex entityIndex;
+    private final MatchingProperties matchingProperties;
+    private final MatchStatisticsRegistry statisticsRegistry;
+    private final boolean incrementalMatching;
 
     @Autowired
     public MergeService(WebClient.Builder webClientBuilder, ObjectMapper objectMapper,
                         MergeCandidatePairRepository mergeCandidatePairRepository,
                         AuditLogRepository auditLogRepository,
+                        MergeGroupRepository mergeGroupRepository,
                         ApplicationContext applicationContext,
                         @Qualifier("droolsRuleEngine") RuleEngine droolsRuleEngine,
                         @Qualifier("ruleBookRuleEngine") RuleEngine ruleBookRuleEngine,
                         @Qualifier("easyRulesRuleEngine") RuleEngine easyRulesRuleEngine,
+                        EntityIndex entityIndex,
+                        MatchingProperties matchingProperties,
+                        MatchStatisticsRegistry statisticsRegistry,
                         @Value("${rule.engine:easyrules}") String ruleEngineType,
+                        @Value("${mdm.matching.incremental:true}") boolean incrementalMatching,
                         @Value("${mdm.global-rules.base-url}") String globalRulesBaseUrl) {
         this.webClient = webClientBuilder.baseUrl(globalRulesBaseUrl).build();
         this.objectMapper = objectMapper;
         this.mergeCandidatePairRepository = mergeCandidatePairRepository;
         this.auditLogRepository = auditLogRepository;
+        this.mergeGroupRepository = mergeGroupRepository;
         this.applicationContext = applicationContext;
+        this.entityIndex = entityIndex;
+        this.matchingProperties = matchingProperties;
+        this.statisticsRegistry = statisticsRegistry;
+        this.incrementalMatching = incrementalMatching;
         if ("drools".equalsIgnoreCase(ruleEngineType)) {
             this.ruleEngine = droolsRuleEngine;
         } else if ("rulebook".equalsIgnoreCase(ruleEngineType)) {
@@ -70,6 +93,35 @@ public class MergeService {
         }
     }
 
+    /**
+     * Fetches the effective rules from the mdm-global-rules service, split into the domain's global
+     * layer and the company's rules. Falls back to the flat effective rules when the service does
+     * not serve layers.
+     * @param companyId The ID of the company for which to get rules.
+     * @param domain The domain (e.g., "lifescience").
+     * @return The rule layers; empty when no rules were found.
+     */
+    private RuleLayers fetchRuleLayers(String companyId, String domain) {
+        try {
+            String jsonResponse = webClient.get()
+                    .uri("/api/company-rules/effective/{companyId}/{domain}/layers", companyId, domain)
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .block();
+            RuleLayers layers = jsonResponse == null || jsonResponse.trim().isEmpty() ? null
+                    : objectMapper.readValue(jsonResponse, RuleLayers.class);
+            if (layers != null && layers.globalRules() != null && layers.companyRules() != null
+                    && layers.effectiveRules() != null) {
+                System.out.println("Fetched " + layers.effectiveRules().size() + " effective rules ("
+                        + layers.globalRules().size() + " global, " + layers.companyRules().size() + " company).");
+                return layers;
+            }
+        } catch (Exception e) {
+            System.err.println("Error fetching rule layers, falling back to effective rules: " + e.getMessage());
+        }
+        return RuleLayers.flat(fetchEffectiveRules(companyId, domain));
+    }
+
     /**
      * Fetches effective DRL rules from the mdm-global-rules service.
      * @param companyId The ID of the company for which to get rules.
@@ -110,6 +162,8 @@ public class MergeService {
 
     /**
      * Processes a list of entities to identify potential merge candidates using Drools rules.
+     * With incremental matching (the default), the batch is also matched against earlier batches
+     * of the same company and domain through the persistent {@link EntityIndex}.
      *
      * @param entities A list of MDMEntity objects to evaluate for merges.
      * @param companyId The ID of the company for which to apply rules.
@@ -123,41 +177,60 @@ public class MergeService {
         }
 
         // 1. Fetch effective rules dynamically
-        List<String> rules = fetchEffectiveRules(companyId, domain);
-        if (rules.isEmpty()) {
+        RuleLayers rules = fetchRuleLayers(companyId, domain);
+
+        // 2. Pull in earlier entities sharing a blocking key with the batch, then index the batch for later ones
+        MatchStatistics statistics = new MatchStatistics(companyId, domain);
+        statistics.setBatchSize(entities.size());
+        List<MDMEntity> matchedEntities = entities;
+        if (incrementalMatching) {
+            List<MDMEntity> indexedCandidates = entityIndex.findCandidates(companyId, domain, entities);
+            entityIndex.index(companyId, domain, entities);
+            statistics.setIndexedCandidates(indexedCandidates.size());
+            if (!indexedCandidates.isEmpty()) {
+                matchedEntities = new ArrayList<>(entities);
+                matchedEntities.addAll(indexedCandidates);
+            }
+        }
+        if (rules.effectiveRules().isEmpty()) {
             System.out.println("No rules to apply. Skipping merge processing.");
             return;
         }
 
-        // 2. Use the selected RuleEngine
-        List<MergeSuggestion> mergeSuggestions = ruleEngine.processEntities(entities, rules);
+        // 3. Use the selected RuleEngine; pairs of two earlier entities were already handled by their own batches
+        List<MergeSuggestion> mergeSuggestions = ruleEngine.processEntities(matchedEntities, rules, companyId, domain);
+        if (matchedEntities != entities) {
+            Set<String> batchIds = entities.stream().map(MDMEntity::getId).collect(Collectors.toSet());
+            mergeSuggestions = mergeSuggestions.stream()
+                    .filter(s -> batchIds.contains(s.getEntity1().getId()) || batchIds.contains(s.getEntity2().getId()))
+                    .collect(Collectors.toList());
+        }
+        statistics.setSuggestions(mergeSuggestions.size());
 
-        // 3. Process merge suggestions
-        if (!mergeSuggestions.isEmpty()) {
-            System.out.println("Found " + mergeSuggestions.size() + " merge suggestions.");
-            for (MergeSuggestion suggestion : mergeSuggestions) {
+        // 4. Leave out pairs a reviewer already rejected, keep each entity's K best matches per rule so one
+        //    oversized block cannot flood the review queue, aggregate suggestions per entity pair so each pair
+        //    is persisted once with all matching rules, then apply the company's top-K to the pairs
+        EntityOrdinals ordinals = new EntityOrdinals();
+        LongPairSet rejectedPairs = findRejectedPairs(matchedEntities, ordinals);
+        statistics.setRejectedPairs(rejectedPairs.size());
+        List<SuggestionAggregator.PairSuggestions> pairSuggestions = CandidateLimiter.limit(mergeSuggestions, ordinals,
+                rejectedPairs, matchingProperties::getTopK, matchingProperties.getCompanyTopK(companyId), statistics);
+        statistics.setPairs(pairSuggestions.size());
+
+        // 5. Cluster connected pairs into merge groups with one golden record each
+        List<SuggestionClusterer.EntityCluster> clusters = SuggestionClusterer.cluster(pairSuggestions);
+        statistics.setMergeGroups(clusters.size());
+        statisticsRegistry.record(statistics);
+
+        // 6. Process merge groups
+        if (!clusters.isEmpty()) {
+            System.out.println("Found " + mergeSuggestions.size() + " merge suggestions for " + pairSuggestions.size()
+                    + " entity pairs in " + clusters.size() + " merge groups.");
+            for (SuggestionClusterer.EntityCluster cluster : clusters) {
                 try {
-                    MergeCandidatePair candidatePair = new MergeCandidatePair(
-                            objectMapper.writeValueAsString(suggestion.getEntity1()),
-                            objectMapper.writeValueAsString(suggestion.getEntity2()),
-                            suggestion.getProposedMergedEntityJson(),
-                            suggestion.getReasoningJson()
-                    );
-                    mergeCandidatePairRepository.save(candidatePair);
-                    System.out.println("Saved merge candidate pair: " + candidatePair.getId());
-
-                    AuditLog auditLog = new AuditLog(
-                            candidatePair,
-                            suggestion.getRuleName(),
-                            suggestion.getReasoningJson(),
-                            suggestion.getEntity1().getId(),
-                            suggestion.getEntity2().getId(),
-                            true
-                    );
-                    auditLogRepository.save(auditLog);
-                    System.out.println("Saved audit log for merge: " + auditLog.getId());
+                    saveMergeGroup(cluster);
                 } catch (JsonProcessingException e) {
-                    System.err.println("Error processing JSON for entities: " + e.getMessage());
+                    System.err.println("Skipping merge group " + cluster.getMemberIds() + ", JSON error: " + e.getMessage());
                 }
             }
         } else {
@@ -165,6 +238,85 @@ public class MergeService {
         }
     }
 
+    /**
+     * Loads the previously rejected pairs among the entities, as pairs of their id ordinals.
+     */
+    private LongPairSet findRejectedPairs(List<MDMEntity> entities, EntityOrdinals ordinals) {
+        List<String> entityIds = new ArrayList<>();
+        for (MDMEntity entity : entities) {
+            if (entity.getId() != null && ordinals.find(entity.getId()) < 0) {
+                ordinals.of(entity.getId());
+                entityIds.add(entity.getId());
+            }
+        }
+        LongPairSet rejected = new LongPairSet();
+        // Keeps IN lists well below database bind-parameter limits
+        for (int from = 0; from < entityIds.size(); from += ID_QUERY_CHUNK_SIZE) {
+            List<String> chunk = entityIds.subList(from, Math.min(entityIds.size(), from + ID_QUERY_CHUNK_SIZE));
+            for (AuditLogRepository.EntityIdPair pair : auditLogRepository.findEntityIdPairsByStatus(
+                    MergeCandidatePair.MergeStatus.REJECTED, chunk)) {
+                int ordinal1 = ordinals.find(pair.getEntity1Id());
+                int ordinal2 = ordinals.find(pair.getEntity2Id());
+                if (ordinal1 >= 0 && ordinal2 >= 0) {
+                    rejected.add(ordinal1, ordinal2);
+                }
+            }
+        }
+        if (!rejected.isEmpty()) {
+            System.out.println("Skipping " + rejected.size() + " entity pairs rejected in earlier reviews.");
+        }
+        return rejected;
+    }
+
+    /**
+     * Persists one merge group, its member pairs and one audit entry per matching rule and pair.
+     * The group's golden record is stored once on the group; its pairs carry no proposal of their own.
+     * All JSON of the group is written before anything is saved, so a group that cannot be
+     * serialized is skipped whole instead of being left without some of its pairs.
+     */
+    private void saveMergeGroup(SuggestionClusterer.EntityCluster cluster) throws JsonProcessingException {
+        MergeGroup unsavedGroup = new MergeGroup(
+                objectMapper.writeValueAsString(cluster.getMembers()),
+                cluster.getMembers().size(),
+                objectMapper.writeValueAsString(cluster.getGoldenRecord()),
+                objectMapper.writeValueAsString(cluster.getReasoning())
+        );
+        List<MergeCandidatePair> candidatePairs = new ArrayList<>(cluster.getPairs().size());
+        for (SuggestionAggregator.PairSuggestions pair : cluster.getPairs()) {
+            candidatePairs.add(new MergeCandidatePair(
+                    objectMapper.writeValueAsString(pair.getEntity1()),
+                    objectMapper.writeValueAsString(pair.getEntity2()),
+                    null,
+                    objectMapper.writeValueAsString(pair.getReasoning())
+            ));
+        }
+
+        MergeGroup mergeGroup = mergeGroupRepository.save(unsavedGroup);
+        System.out.println("Saved merge group: " + mergeGroup.getId() + " (members: " + cluster.getMemberIds() + ")");
+
+        for (int i = 0; i < candidatePairs.size(); i++) {
+            SuggestionAggregator.PairSuggestions pair = cluster.getPairs().get(i);
+            MergeCandidatePair candidatePair = candidatePairs.get(i);
+            candidatePair.setMergeGroup(mergeGroup);
+            mergeCandidatePairRepository.save(candidatePair);
+            System.out.println("Saved merge candidate pair: " + candidatePair.getId() + " (rules: " + pair.getRuleNames() + ")");
+
+            // One audit entry per matching rule keeps the per-rule evidence
+            for (MergeSuggestion suggestion : pair.getSuggestions()) {
+                AuditLog auditLog = new AuditLog(
+                        candidatePair,
+                        suggestion.getRuleName(),
+                        suggestion.getReasoningJson(),
+                        pair.getEntity1().getId(),
+                        pair.getEntity2().getId(),
+                        true
+                );
+                auditLogRepository.save(auditLog);
+                System.out.println("Saved audit log for merge: " + auditLog.getId());
+            }
+        }
+    }
+
     /**
      * This class acts as a container for facts inserted into the KieSession.
      * Rules will populate this to signal a merge recommendation.
@@ -194,6 +346,7 @@ public class MergeService {
         private String ruleName;
         private String reasoningJson; // Detailed reason for the merge suggestion
         private String proposedMergedEntityJson; // JSON representation of the resulting merged entity
+        private double score = 1.0; // Strength of the match, e.g. a fuzzy similarity; ranks candidates for top-K
 
         public MergeSuggestion(MDMEntity entity1, MDMEntity entity2, String ruleName, String reasoningJson, String proposedMergedEntityJson) {
             this.entity1 = entity1;
@@ -207,6 +360,8 @@ public class MergeService {
         public MDMEntity getEntity2() { return entity2; }
         public String getRuleName() { return ruleName; }
         public String getReasoningJson() { return reasoningJson; }
+        public double getScore() { return score; }
+        public void setScore(double score) { this.score = score; }
         public String getProposedMergedEntityJson() { return proposedMergedEntityJson; }
     }
 
@@ -239,4 +394,35 @@ public class MergeService {
     public List<MergeCandidatePair> getMergeCandidatesByStatus(MergeCandidatePair.MergeStatus status) {
         return mergeCandidatePairRepository.findByStatus(status);
     }
+
+    /**
+     * Updates the status of a MergeGroup and of every pair in it, based on human review.
+     * @param groupId The ID of the merge group.
+     * @param status The new status (APPROVED or REJECTED).
+     * @param comment Optional comment from the reviewer.
+     * @return The updated MergeGroup, or empty if not found.
+     */
+    @Transactional
+    public Optional<MergeGroup> updateMergeGroupStatus(Long groupId, MergeCandidatePair.MergeStatus status, String comment) {
+        return mergeGroupRepository.findById(groupId).map(group -> {
+            group.setStatus(status);
+            group.setReviewComment(comment);
+            for (MergeCandidatePair pair : mergeCandidatePairRepository.findByMergeGroupId(groupId)) {
+                pair.setStatus(status);
+                pair.setReviewComment(comment);
+                mergeCandidatePairRepository.save(pair);
+            }
+            return mergeGroupRepository.save(group);
+        });
+    }
+
+    /**
+     * Retrieves all merge groups with a specific status.
+     * @param status The status to filter by.
+     * @return A list of MergeGroup entities.
+     */
+    @Transactional(readOnly = true)
+    public List<MergeGroup> getMergeGroupsByStatus(MergeCandidatePair.MergeStatus status) {
+        return mergeGroupRepository.findByStatus(status);
+    }
 }
\ No newline at end of file
@@ -1,28 +1,76 @@
 package com.mdm.botcore.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mdm.botcore.config.MatchingProperties;
 import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.matching.BlockingMonitor;
+import com.mdm.botcore.matching.CandidateIndex;
+import com.mdm.botcore.matching.CandidateIndexFactory;
+import com.mdm.botcore.matching.CandidateStrategy;
+import com.mdm.botcore.matching.ComparisonBudget;
+import com.mdm.botcore.matching.EntityBatch;
+import com.mdm.botcore.matching.MatchFeatures;
+import com.mdm.botcore.matching.MatchKeys;
+import com.mdm.botcore.matching.ParallelPairMatcher;
+import com.mdm.botcore.matching.SimilarityMeasure;
+import com.mdm.botcore.matching.StandardPairRules;
+import com.mdm.botcore.matching.StringSimilarity;
+import com.mdm.botcore.matching.TfIdfNameIndex;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 @Component
 @Qualifier("ruleBookRuleEngine")
 @Scope("prototype")
 public class RuleBookRuleEngine implements RuleEngine {
     
+    static final String FUZZY_NAME_MATCH = "FuzzyNameMatch";
+    static final String FUZZY_ADDRESS_MATCH = "FuzzyAddressMatch";
+    
     private final ObjectMapper objectMapper;
+    private final MatchingProperties matchingProperties;
+    private final CandidateIndexFactory candidateIndexFactory;
+    private final ParallelPairMatcher pairMatcher;
     
     public RuleBookRuleEngine(ObjectMapper objectMapper) {
+        this(objectMapper, MatchingProperties.defaults(), ParallelPairMatcher.sequential());
+    }
+    
+    public RuleBookRuleEngine(ObjectMapper objectMapper, MatchingProperties matchingProperties, ParallelPairMatcher pairMatcher) {
+        this(objectMapper, matchingProperties, pairMatcher, new BlockingMonitor());
+    }
+    
+    @Autowired
+    public RuleBookRuleEngine(ObjectMapper objectMapper, MatchingProperties matchingProperties, ParallelPairMatcher pairMatcher,
+                              BlockingMonitor blockingMonitor) {
         this.objectMapper = objectMapper;
+        this.matchingProperties = matchingProperties;
+        this.candidateIndexFactory = new CandidateIndexFactory(matchingProperties, blockingMonitor);
+        this.pairMatcher = pairMatcher;
     }
 
     @Override
     public List<MergeService.MergeSuggestion> processEntities(List<MDMEntity> entities, List<String> rules) {
+        return processEntities(entities, candidateIndexFactory);
+    }
+
+    @Override
+    public List<MergeService.MergeSuggestion> processEntities(List<MDMEntity> entities, RuleLayers rules,
+                                                               String companyId, String domain) {
+        // Blocking stop keys are learned per company and domain
+        return processEntities(entities, candidateIndexFactory.forCompany(companyId, domain));
+    }
+
+    private List<MergeService.MergeSuggestion> processEntities(List<MDMEntity> entities,
+                                                               CandidateIndexFactory candidateIndexFactory) {
         List<MergeService.MergeSuggestion> mergeSuggestions = new ArrayList<>();
         
         if (entities == null || entities.isEmpty()) {
@@ -30,11 +78,26 @@ public class RuleBookRuleEngine implements RuleEngine {
         }
 
         try {
+            // Normalize every entity once; the rules below only read the precomputed features
+            MatchFeatures.prepare(entities);
+            
             // Execute all rule types
-            mergeSuggestions.addAll(executeExactCompanyNameMatch(entities));
-            mergeSuggestions.addAll(executePhoneNumberMatch(entities));
-            mergeSuggestions.addAll(executeAddressMatch(entities));
-            mergeSuggestions.addAll(executeEmailDomainMatch(entities));
+            mergeSuggestions.addAll(executeExactCompanyNameMatch(entities, candidateIndexFactory));
+            mergeSuggestions.addAll(executePhoneNumberMatch(entities, candidateIndexFactory));
+            mergeSuggestions.addAll(executeAddressMatch(entities, candidateIndexFactory));
+            mergeSuggestions.addAll(executeEmailDomainMatch(entities, candidateIndexFactory));
+            // The fuzzy rules share one budget of distinct scored pairs, keyed by batch position
+            ComparisonBudget budget = new ComparisonBudget(matchingProperties.getMaxComparisons());
+            if (matchingProperties.isRuleEnabled(FUZZY_NAME_MATCH, false)) {
+                mergeSuggestions.addAll(executeFuzzyNameMatch(entities, budget, candidateIndexFactory));
+            }
+            if (matchingProperties.isRuleEnabled(FUZZY_ADDRESS_MATCH, false)) {
+                mergeSuggestions.addAll(executeFuzzyAddressMatch(entities, budget, candidateIndexFactory));
+            }
+            if (budget.getRefused() > 0) {
+                System.out.println("RuleBook: Comparison budget exhausted after " + budget.getCharged()
+                    + " pairs; skipped " + budget.getRefused() + " fuzzy comparisons");
+            }
             
         } catch (Exception e) {
             System.err.println("Error processing entities with RuleBook: " + e.getMessage());
@@ -44,157 +107,153 @@ public class RuleBookRuleEngine implements RuleEngine {
         return mergeSuggestions;
     }
     
-    private List<MergeService.MergeSuggestion> executeExactCompanyNameMatch(List<MDMEntity> entities) {
-        List<MergeService.MergeSuggestion> suggestions = new ArrayList<>();
-        
-        List<MDMEntity> organizations = entities.stream()
-            .filter(e -> "Organization".equals(e.getType()) && e.getName() != null)
-            .collect(Collectors.toList());
-            
-        for (int i = 0; i < organizations.size(); i++) {
-            for (int j = i + 1; j < organizations.size(); j++) {
-                MDMEntity entity1 = organizations.get(i);
-                MDMEntity entity2 = organizations.get(j);
-                
-                if (entity1.getName().equalsIgnoreCase(entity2.getName())) {
-                    try {
-                        String reasoning = "Company names match exactly: " + entity1.getName();
-                        String mergedJson = objectMapper.writeValueAsString(createMergedEntity(entity1, entity2));
-                        
-                        MergeService.MergeSuggestion suggestion = new MergeService.MergeSuggestion(
-                            entity1, entity2, "ExactCompanyNameMatch", reasoning, mergedJson
-                        );
-                        suggestions.add(suggestion);
-                        System.out.println("RuleBook: Found exact company name match between " + entity1.getName() + " and " + entity2.getName());
-                    } catch (Exception e) {
-                        System.err.println("Error creating merge suggestion: " + e.getMessage());
-                    }
-                }
-            }
-        }
-        
-        return suggestions;
+    private List<MergeService.MergeSuggestion> executeExactCompanyNameMatch(List<MDMEntity> entities,
+                                                                            CandidateIndexFactory candidateIndexFactory) {
+        // Only organizations whose case-folded names collide are compared
+        return pairMatcher.collect(candidateIndexFactory.blocking(StandardPairRules.EXACT_COMPANY_NAME, entities), (entity1, entity2) -> {
+            String reasoning = "Company names match exactly: " + entity1.getName();
+            System.out.println("RuleBook: Found exact company name match between " + entity1.getName() + " and " + entity2.getName());
+            return createSuggestion(entity1, entity2, "ExactCompanyNameMatch", reasoning);
+        });
     }
     
-    private List<MergeService.MergeSuggestion> executePhoneNumberMatch(List<MDMEntity> entities) {
-        List<MergeService.MergeSuggestion> suggestions = new ArrayList<>();
-        
-        List<MDMEntity> entitiesWithPhone = entities.stream()
-            .filter(e -> e.getPhone() != null && e.getPhone().length() >= 10)
-            .collect(Collectors.toList());
-            
-        for (int i = 0; i < entitiesWithPhone.size(); i++) {
-            for (int j = i + 1; j < entitiesWithPhone.size(); j++) {
-                MDMEntity entity1 = entitiesWithPhone.get(i);
-                MDMEntity entity2 = entitiesWithPhone.get(j);
-                
-                String phone1 = entity1.getPhone().replaceAll("[^0-9]", "");
-                String phone2 = entity2.getPhone().replaceAll("[^0-9]", "");
-                
-                if (phone1.equals(phone2)) {
-                    try {
-                        String reasoning = "Phone numbers match: " + entity1.getPhone() + " = " + entity2.getPhone();
-                        String mergedJson = objectMapper.writeValueAsString(createMergedEntity(entity1, entity2));
-                        
-                        MergeService.MergeSuggestion suggestion = new MergeService.MergeSuggestion(
-                            entity1, entity2, "PhoneNumberMatch", reasoning, mergedJson
-                        );
-                        suggestions.add(suggestion);
-                        System.out.println("RuleBook: Found phone number match between " + entity1.getPhone() + " and " + entity2.getPhone());
-                    } catch (Exception e) {
-                        System.err.println("Error creating merge suggestion: " + e.getMessage());
-                    }
-                }
-            }
-        }
-        
-        return suggestions;
+    private List<MergeService.MergeSuggestion> executePhoneNumberMatch(List<MDMEntity> entities,
+                                                                       CandidateIndexFactory candidateIndexFactory) {
+        // Block on digits-only phone numbers
+        return pairMatcher.collect(candidateIndexFactory.blocking(StandardPairRules.PHONE_NUMBER, entities), (entity1, entity2) -> {
+            String reasoning = "Phone numbers match: " + entity1.getPhone() + " = " + entity2.getPhone();
+            System.out.println("RuleBook: Found phone number match between " + entity1.getPhone() + " and " + entity2.getPhone());
+            return createSuggestion(entity1, entity2, "PhoneNumberMatch", reasoning);
+        });
+    }
+    
+    private List<MergeService.MergeSuggestion> executeAddressMatch(List<MDMEntity> entities,
+                                                                   CandidateIndexFactory candidateIndexFactory) {
+        // Block on case-folded addresses
+        return pairMatcher.collect(candidateIndexFactory.blocking(StandardPairRules.ADDRESS, entities), (entity1, entity2) -> {
+            String reasoning = "Addresses match: " + entity1.getAddress();
+            System.out.println("RuleBook: Found address match between " + entity1.getAddress() + " and " + entity2.getAddress());
+            return createSuggestion(entity1, entity2, "AddressMatch", reasoning);
+        });
     }
     
-    private List<MergeService.MergeSuggestion> executeAddressMatch(List<MDMEntity> entities) {
-        List<MergeService.MergeSuggestion> suggestions = new ArrayList<>();
+    private List<MergeService.MergeSuggestion> executeEmailDomainMatch(List<MDMEntity> entities,
+                                                                       CandidateIndexFactory candidateIndexFactory) {
+        // Block on the email suffix starting at '@'; free-mail domains are stop keys and huge domains are capped
+        return pairMatcher.collect(candidateIndexFactory.blocking(StandardPairRules.EMAIL_DOMAIN, entities), (entity1, entity2) -> {
+            String domain1 = MatchFeatures.of(entity1).getEmailDomain();
+            String domain2 = MatchFeatures.of(entity2).getEmailDomain();
+            String reasoning = "Email domains match: " + domain1;
+            System.out.println("RuleBook: Found email domain match between " + domain1 + " and " + domain2);
+            return createSuggestion(entity1, entity2, "EmailDomainMatch", reasoning);
+        });
+    }
+    
+    private List<MergeService.MergeSuggestion> executeFuzzyNameMatch(List<MDMEntity> entities, ComparisonBudget budget,
+                                                                     CandidateIndexFactory candidateIndexFactory) {
+        double threshold = matchingProperties.getThreshold(FUZZY_NAME_MATCH, 0.8);
+        SimilarityMeasure measure = matchingProperties.getSimilarityMeasure(FUZZY_NAME_MATCH, SimilarityMeasure.LEVENSHTEIN);
         
-        List<MDMEntity> entitiesWithAddress = entities.stream()
-            .filter(e -> e.getAddress() != null && e.getAddress().length() > 10)
-            .collect(Collectors.toList());
-            
-        for (int i = 0; i < entitiesWithAddress.size(); i++) {
-            for (int j = i + 1; j < entitiesWithAddress.size(); j++) {
-                MDMEntity entity1 = entitiesWithAddress.get(i);
-                MDMEntity entity2 = entitiesWithAddress.get(j);
-                
-                if (entity1.getAddress().equalsIgnoreCase(entity2.getAddress())) {
-                    try {
-                        String reasoning = "Addresses match: " + entity1.getAddress();
-                        String mergedJson = objectMapper.writeValueAsString(createMergedEntity(entity1, entity2));
-                        
-                        MergeService.MergeSuggestion suggestion = new MergeService.MergeSuggestion(
-                            entity1, entity2, "AddressMatch", reasoning, mergedJson
-                        );
-                        suggestions.add(suggestion);
-                        System.out.println("RuleBook: Found address match between " + entity1.getAddress() + " and " + entity2.getAddress());
-                    } catch (Exception e) {
-                        System.err.println("Error creating merge suggestion: " + e.getMessage());
-                    }
-                }
-            }
-        }
+        int[] positions = positionsOf(entities,
+            e -> "Organization".equals(e.getType()) && e.getName() != null && e.getName().length() > 5);
+        List<MDMEntity> organizations = select(entities, positions);
+        
+        // No equality key exists for similar names, so candidates come from the configured
+        // strategy (sorted neighbourhood, or the TF-IDF token index for cosine scoring) instead of all pairs
+        CandidateStrategy defaultStrategy = measure == SimilarityMeasure.TFIDF_COSINE
+            ? CandidateStrategy.TFIDF : CandidateStrategy.SORTED_NEIGHBOURHOOD;
+        Function<MDMEntity, String> comparedValue =
+            matchingProperties.getCandidateStrategy(FUZZY_NAME_MATCH, defaultStrategy) == CandidateStrategy.TFIDF
+                ? MDMEntity::getName : e -> MatchKeys.alphanumeric(e.getName());
+        CandidateIndex<MDMEntity> candidates = candidateIndexFactory.forRule(FUZZY_NAME_MATCH, organizations,
+                comparedValue, defaultStrategy, threshold);
         
-        return suggestions;
+        // Every candidate index is positioned over the same list, so TF-IDF vectors are scored by position
+        TfIdfNameIndex<MDMEntity> weights = measure != SimilarityMeasure.TFIDF_COSINE ? null
+            : candidates instanceof TfIdfNameIndex<MDMEntity> index ? index
+            : TfIdfNameIndex.build(organizations, MDMEntity::getName, matchingProperties.getMaxTokenFrequency(FUZZY_NAME_MATCH));
+        // Scoring reads the dictionary-encoded name column; identical names need no string comparison
+        EntityBatch batch = EntityBatch.of(organizations);
+        return pairMatcher.collectPositions(candidates, (i, j) -> {
+            if (!budget.tryCharge(positions[i], positions[j])) {
+                return null;
+            }
+            double similarity = weights != null ? weights.cosine(i, j)
+                : batch.sameName(i, j) ? 1.0
+                : similarity(measure, batch.foldedName(i), batch.foldedName(j));
+            if (similarity <= threshold) {
+                return null;
+            }
+            MDMEntity entity1 = batch.entity(i);
+            MDMEntity entity2 = batch.entity(j);
+            String reasoning = "Company names are similar (" + String.format("%.2f", similarity) + "): "
+                + entity1.getName() + " ~ " + entity2.getName();
+            System.out.println("RuleBook: Found fuzzy name match between " + entity1.getName() + " and " + entity2.getName());
+            MergeService.MergeSuggestion suggestion = createSuggestion(entity1, entity2, FUZZY_NAME_MATCH, reasoning);
+            suggestion.setScore(similarity);
+            return suggestion;
+        });
     }
     
-    private List<MergeService.MergeSuggestion> executeEmailDomainMatch(List<MDMEntity> entities) {
-        List<MergeService.MergeSuggestion> suggestions = new ArrayList<>();
+    private List<MergeService.MergeSuggestion> executeFuzzyAddressMatch(List<MDMEntity> entities, ComparisonBudget budget,
+                                                                        CandidateIndexFactory candidateIndexFactory) {
+        double threshold = matchingProperties.getThreshold(FUZZY_ADDRESS_MATCH, 0.85);
         
-        List<MDMEntity> entitiesWithEmail = entities.stream()
-            .filter(e -> e.getEmail() != null && e.getEmail().contains("@"))
-            .collect(Collectors.toList());
-            
-        for (int i = 0; i < entitiesWithEmail.size(); i++) {
-            for (int j = i + 1; j < entitiesWithEmail.size(); j++) {
-                MDMEntity entity1 = entitiesWithEmail.get(i);
-                MDMEntity entity2 = entitiesWithEmail.get(j);
-                
-                String domain1 = entity1.getEmail().substring(entity1.getEmail().indexOf("@"));
-                String domain2 = entity2.getEmail().substring(entity2.getEmail().indexOf("@"));
-                
-                if (domain1.equals(domain2)) {
-                    try {
-                        String reasoning = "Email domains match: " + domain1;
-                        String mergedJson = objectMapper.writeValueAsString(createMergedEntity(entity1, entity2));
-                        
-                        MergeService.MergeSuggestion suggestion = new MergeService.MergeSuggestion(
-                            entity1, entity2, "EmailDomainMatch", reasoning, mergedJson
-                        );
-                        suggestions.add(suggestion);
-                        System.out.println("RuleBook: Found email domain match between " + domain1 + " and " + domain2);
-                    } catch (Exception e) {
-                        System.err.println("Error creating merge suggestion: " + e.getMessage());
-                    }
-                }
+        int[] positions = positionsOf(entities, e -> MatchKeys.fuzzyAddress(e) != null);
+        List<MDMEntity> withAddress = select(entities, positions);
+        
+        // Only pairs sharing enough address trigrams are scored; identical addresses are left to AddressMatch
+        CandidateIndex<MDMEntity> candidates = candidateIndexFactory.forRule(FUZZY_ADDRESS_MATCH, withAddress,
+                MatchKeys::fuzzyAddress, CandidateStrategy.TRIGRAM, threshold);
+        return pairMatcher.collectPositions(candidates, (i, j) -> {
+            MDMEntity entity1 = withAddress.get(i);
+            MDMEntity entity2 = withAddress.get(j);
+            MatchFeatures features1 = MatchFeatures.of(entity1);
+            MatchFeatures features2 = MatchFeatures.of(entity2);
+            if (features1.sameAddress(features2) || !budget.tryCharge(positions[i], positions[j])) {
+                return null;
+            }
+            double similarity = StringSimilarity.levenshteinSimilarity(
+                features1.getNormalizedAddress(), features2.getNormalizedAddress());
+            if (similarity <= threshold) {
+                return null;
             }
+            String reasoning = "Addresses are similar (" + String.format("%.2f", similarity) + "): "
+                + entity1.getAddress() + " ~ " + entity2.getAddress();
+            System.out.println("RuleBook: Found fuzzy address match between " + entity1.getAddress() + " and " + entity2.getAddress());
+            MergeService.MergeSuggestion suggestion = createSuggestion(entity1, entity2, FUZZY_ADDRESS_MATCH, reasoning);
+            suggestion.setScore(similarity);
+            return suggestion;
+        });
+    }
+    
+    // Positions in the batch of the entities passing the filter, ascending
+    private static int[] positionsOf(List<MDMEntity> entities, Predicate<MDMEntity> filter) {
+        return IntStream.range(0, entities.size()).filter(i -> filter.test(entities.get(i))).toArray();
+    }
+    
+    private static List<MDMEntity> select(List<MDMEntity> entities, int[] positions) {
+        List<MDMEntity> selected = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            selected.add(entities.get(position));
         }
-        
-        return suggestions;
+        return selected;
     }
     
-    private MDMEntity createMergedEntity(MDMEntity entity1, MDMEntity entity2) {
-        // Simple merge strategy: prefer non-null values, entity1 takes precedence
-        MDMEntity merged = new MDMEntity();
-        merged.setId(entity1.getId() + "-" + entity2.getId());
-        merged.setType(entity1.getType() != null ? entity1.getType() : entity2.getType());
-        merged.setName(entity1.getName() != null ? entity1.getName() : entity2.getName());
-        merged.setAddress(entity1.getAddress() != null ? entity1.getAddress() : entity2.getAddress());
-        merged.setEmail(entity1.getEmail() != null ? entity1.getEmail() : entity2.getEmail());
-        merged.setPhone(entity1.getPhone() != null ? entity1.getPhone() : entity2.getPhone());
-        merged.setSourceSystem(entity1.getSourceSystem() != null ? entity1.getSourceSystem() : entity2.getSourceSystem());
-        
-        // Merge attributes
-        if (entity1.getAttributes() != null || entity2.getAttributes() != null) {
-            // Simple merge: entity1 attributes take precedence
-            merged.setAttributes(entity1.getAttributes() != null ? entity1.getAttributes() : entity2.getAttributes());
+    private double similarity(SimilarityMeasure measure, String value1, String value2) {
+        switch (measure) {
+            case JARO_WINKLER:
+                return StringSimilarity.jaroWinkler(value1, value2);
+            case NGRAM_JACCARD:
+                return StringSimilarity.ngramJaccard(value1, value2, matchingProperties.getShingleSize(FUZZY_NAME_MATCH));
+            case LEVENSHTEIN:
+            default:
+                return StringSimilarity.levenshteinSimilarity(value1, value2);
         }
-        
-        return merged;
+    }
+    
+    // The golden record of each merge group is built by Survivorship, so suggestions carry no merged entity
+    private MergeService.MergeSuggestion createSuggestion(MDMEntity entity1, MDMEntity entity2, String ruleName, String reasoning) {
+        return new MergeService.MergeSuggestion(entity1, entity2, ruleName, reasoning, null);
     }
 } 
\ No newline at end of file
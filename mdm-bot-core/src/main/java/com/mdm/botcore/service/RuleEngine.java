@@ -11,4 +11,19 @@ public interface RuleEngine {
      * @return List of MergeService.MergeSuggestion objects.
      */
     List<MergeService.MergeSuggestion> processEntities(List<MDMEntity> entities, List<String> rules);
-} 
\ No newline at end of file
+
+    /**
+     * Processes the entities of one company and domain. Engines that keep state per company, such as
+     * compiled rule versions, or that compile the global rule layer once override this; the default
+     * ignores the company and the layers.
+     * @param entities The entities to process.
+     * @param rules The effective rules of the company and domain.
+     * @param companyId The company.
+     * @param domain The domain.
+     * @return List of MergeService.MergeSuggestion objects.
+     */
+    default List<MergeService.MergeSuggestion> processEntities(List<MDMEntity> entities, RuleLayers rules,
+                                                               String companyId, String domain) {
+        return processEntities(entities, rules.effectiveRules());
+    }
+}
@@ -0,0 +1,31 @@
+package com.mdm.botcore.service;
+
+import java.util.List;
+
+/**
+ * The effective rules of a company and domain, as served by the mdm-global-rules service: the
+ * domain's global rules and the company's rules on top of them, together with the flat rule set.
+ *
+ * Engines that compile rules can compile the global layer once for all companies of a domain; a
+ * company rule replaces the global rule of the same name. The other engines use the flat set.
+ *
+ * @param globalRules DRLs of the layer shared by the domain's companies; empty when the rules came unlayered.
+ * @param companyRules DRLs of the company's own rules.
+ * @param effectiveRules The flat effective rule set.
+ */
+public record RuleLayers(List<String> globalRules, List<String> companyRules, List<String> effectiveRules) {
+
+    /**
+     * @return Rules without a shared layer, e.g. from a rules service that does not serve layers.
+     */
+    public static RuleLayers flat(List<String> effectiveRules) {
+        return new RuleLayers(List.of(), effectiveRules, effectiveRules);
+    }
+
+    /**
+     * @return Whether the rules come with a shared global layer.
+     */
+    public boolean isLayered() {
+        return !globalRules.isEmpty();
+    }
+}
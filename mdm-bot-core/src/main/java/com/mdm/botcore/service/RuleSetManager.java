@@ -0,0 +1,281 @@
+package com.mdm.botcore.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mdm.botcore.config.KieBaseCache;
+import com.mdm.botcore.config.PooledKieBase;
+import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.matching.MatchFeatures;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the active compiled rule set of every company and domain and compiles new rule versions
+ * in the background.
+ *
+ * When the effective rules of a company change, requests keep running on the active version while
+ * the new one is compiled on a background executor and warmed with a small synthetic batch; the new
+ * version is then swapped in atomically. Requests that already hold the old version finish on it.
+ * Only the first request of a company and domain, which has no version to fall back on, compiles on
+ * the calling thread. A rule set that fails to compile is reported and not retried until the rules
+ * change again; the old version stays active.
+ *
+ * Compiled rule sets come from the {@link KieBaseCache}, so companies sharing a rule set share its
+ * KieBase. Rules that come with a global layer are compiled as layered rule sets when the cache
+ * supports it, so the domain's global rules are compiled once for all of its companies. An active version evicted from the cache keeps serving on unpooled sessions until its
+ * background recompile is swapped in.
+ */
+@Component
+public class RuleSetManager {
+
+    private final KieBaseCache kieBaseCache;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService compileExecutor;
+    private final Map<String, RuleSet> ruleSets = new ConcurrentHashMap<>();
+
+    /**
+     * The active rule version of a company and domain.
+     * @param companyId The company.
+     * @param domain The domain.
+     * @param version Versions activated so far, starting at 1.
+     * @param fingerprint Fingerprint of the active rule set (see {@link KieBaseCache#fingerprint(List)}
+     *                    and {@link KieBaseCache#layeredFingerprint(List, List)}).
+     * @param globalLayerFingerprint Fingerprint of the shared global layer; {@code null} when not layered.
+     * @param ruleCount DRL sources in the active version.
+     * @param activatedAt When the version was swapped in.
+     * @param compileMillis Time to compile and warm the version.
+     * @param pendingFingerprint Fingerprint of a version waiting to be compiled or compiling; {@code null} for none.
+     * @param lastError The latest compile error; {@code null} when the latest compile succeeded.
+     */
+    public record RuleSetVersion(String companyId, String domain, int version, String fingerprint,
+                                 String globalLayerFingerprint, int ruleCount,
+                                 LocalDateTime activatedAt, long compileMillis, String pendingFingerprint,
+                                 String lastError) {
+    }
+
+    private record ActiveVersion(int version, String fingerprint, String globalLayerFingerprint, int ruleCount,
+                                 PooledKieBase kieBase,
+                                 LocalDateTime activatedAt, long compileMillis) {
+    }
+
+    // Guarded by its own monitor
+    private static final class RuleSet {
+        private final String companyId;
+        private final String domain;
+        private volatile ActiveVersion active;
+        private int versions;
+        private String pendingFingerprint;
+        private RuleLayers pendingRules;
+        private boolean compiling;
+        private String failedFingerprint;
+        private String lastError;
+
+        private RuleSet(String companyId, String domain) {
+            this.companyId = companyId;
+            this.domain = domain;
+        }
+    }
+
+    @Autowired
+    public RuleSetManager(KieBaseCache kieBaseCache, ObjectMapper objectMapper,
+                          @Value("${mdm.drools.rule-sets.compile-threads:1}") int compileThreads) {
+        this.kieBaseCache = kieBaseCache;
+        this.objectMapper = objectMapper;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.compileExecutor = Executors.newFixedThreadPool(Math.max(1, compileThreads), runnable -> {
+            Thread thread = new Thread(runnable, "rule-set-compiler-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the compiled rule set to run a request on. When the rules differ from the active
+     * version, the new version is compiled in the background and the active one is returned.
+     * @param companyId The company; {@code null} takes the rule set straight from the cache.
+     * @param domain The domain.
+     * @param rules The effective rules of the company and domain.
+     * @return The rule set to fire.
+     */
+    public PooledKieBase acquire(String companyId, String domain, RuleLayers rules) {
+        if (companyId == null) {
+            return compile(rules);
+        }
+        String fingerprint = fingerprint(rules);
+        RuleSet ruleSet = ruleSets.computeIfAbsent(key(companyId, domain), key -> new RuleSet(companyId, domain));
+        ActiveVersion active = ruleSet.active;
+        if (active != null) {
+            if (!active.fingerprint().equals(fingerprint) || active.kieBase().isClosed()) {
+                requestCompile(ruleSet, fingerprint, rules);
+            }
+            return active.kieBase();
+        }
+        // Nothing to fall back on yet: compile on the calling thread
+        long start = System.nanoTime();
+        PooledKieBase kieBase = compile(rules);
+        synchronized (ruleSet) {
+            if (ruleSet.active == null) {
+                activate(ruleSet, fingerprint, rules, kieBase, start);
+            }
+        }
+        return kieBase;
+    }
+
+    /**
+     * @return The active version of every company and domain, by company and domain.
+     */
+    public List<RuleSetVersion> getVersions() {
+        List<RuleSetVersion> versions = new ArrayList<>();
+        for (RuleSet ruleSet : ruleSets.values()) {
+            synchronized (ruleSet) {
+                ActiveVersion active = ruleSet.active;
+                if (active != null || ruleSet.lastError != null) {
+                    versions.add(new RuleSetVersion(ruleSet.companyId, ruleSet.domain,
+                            active != null ? active.version() : 0, active != null ? active.fingerprint() : null,
+                            active != null ? active.globalLayerFingerprint() : null,
+                            active != null ? active.ruleCount() : 0, active != null ? active.activatedAt() : null,
+                            active != null ? active.compileMillis() : 0, ruleSet.pendingFingerprint,
+                            ruleSet.lastError));
+                }
+            }
+        }
+        versions.sort((a, b) -> key(a.companyId(), a.domain()).compareTo(key(b.companyId(), b.domain())));
+        return versions;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compileExecutor.shutdownNow();
+    }
+
+    private void requestCompile(RuleSet ruleSet, String fingerprint, RuleLayers rules) {
+        synchronized (ruleSet) {
+            if (fingerprint.equals(ruleSet.pendingFingerprint) || fingerprint.equals(ruleSet.failedFingerprint)) {
+                return;
+            }
+            ruleSet.pendingFingerprint = fingerprint;
+            ruleSet.pendingRules = rules;
+            if (ruleSet.compiling) {
+                // The compiling thread picks up the latest pending version when done
+                return;
+            }
+            ruleSet.compiling = true;
+        }
+        try {
+            compileExecutor.execute(() -> compilePending(ruleSet));
+        } catch (RejectedExecutionException e) {
+            synchronized (ruleSet) {
+                ruleSet.compiling = false;
+            }
+        }
+    }
+
+    private void compilePending(RuleSet ruleSet) {
+        while (true) {
+            String fingerprint;
+            RuleLayers rules;
+            synchronized (ruleSet) {
+                fingerprint = ruleSet.pendingFingerprint;
+                rules = ruleSet.pendingRules;
+                if (fingerprint == null) {
+                    ruleSet.compiling = false;
+                    return;
+                }
+            }
+            long start = System.nanoTime();
+            PooledKieBase kieBase = null;
+            String error = null;
+            try {
+                kieBase = compile(rules);
+                warmUp(kieBase);
+            } catch (RuntimeException e) {
+                error = e.getMessage();
+            }
+            synchronized (ruleSet) {
+                if (fingerprint.equals(ruleSet.pendingFingerprint)) {
+                    ruleSet.pendingFingerprint = null;
+                    ruleSet.pendingRules = null;
+                }
+                if (kieBase != null) {
+                    activate(ruleSet, fingerprint, rules, kieBase, start);
+                } else {
+                    ruleSet.failedFingerprint = fingerprint;
+                    ruleSet.lastError = error;
+                    System.err.println("RuleSets: Compiling rule set " + fingerprint.substring(0, 12) + " of "
+                            + key(ruleSet.companyId, ruleSet.domain) + " failed, keeping version "
+                            + (ruleSet.active != null ? ruleSet.active.version() : 0) + ": " + error);
+                }
+            }
+        }
+    }
+
+    // Caller holds the rule set's monitor
+    private void activate(RuleSet ruleSet, String fingerprint, RuleLayers rules, PooledKieBase kieBase, long start) {
+        long compileMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        ruleSet.versions++;
+        ruleSet.active = new ActiveVersion(ruleSet.versions, fingerprint,
+                isLayered(rules) ? KieBaseCache.fingerprint(rules.globalRules()) : null,
+                rules.effectiveRules().size(), kieBase, LocalDateTime.now(), compileMillis);
+        ruleSet.failedFingerprint = null;
+        ruleSet.lastError = null;
+        System.out.println("RuleSets: Activated version " + ruleSet.versions + " (" + fingerprint.substring(0, 12)
+                + ") of " + key(ruleSet.companyId, ruleSet.domain) + " after " + compileMillis + " ms");
+    }
+
+    private boolean isLayered(RuleLayers rules) {
+        return rules.isLayered() && kieBaseCache.isLayered();
+    }
+
+    private String fingerprint(RuleLayers rules) {
+        return isLayered(rules) ? KieBaseCache.layeredFingerprint(rules.globalRules(), rules.companyRules())
+                : KieBaseCache.fingerprint(rules.effectiveRules());
+    }
+
+    private PooledKieBase compile(RuleLayers rules) {
+        return isLayered(rules) ? kieBaseCache.get(rules.globalRules(), rules.companyRules())
+                : kieBaseCache.get(rules.effectiveRules());
+    }
+
+    // Fires the new version once on a pooled session so the first request does not pay for lazy setup
+    private void warmUp(PooledKieBase kieBase) {
+        try {
+            DroolsRuleEngine.fire(kieBase, warmUpBatch(), objectMapper);
+        } catch (RuntimeException e) {
+            // Rules may not expect synthetic data; the version itself compiled fine
+            System.err.println("RuleSets: Warm-up batch failed: " + e.getMessage());
+        }
+    }
+
+    private static List<MDMEntity> warmUpBatch() {
+        List<MDMEntity> entities = new ArrayList<>();
+        for (int i = 1; i <= 2; i++) {
+            MDMEntity entity = new MDMEntity();
+            entity.setId("warm-up-" + i);
+            entity.setType("Organization");
+            entity.setName("Warm-up Organization");
+            entity.setAddress("1 Warm-up Street, Springfield");
+            entity.setPhone("555-000-000" + i);
+            entity.setEmail("warm-up" + i + "@example.com");
+            entity.setSourceSystem("WARM_UP");
+            entities.add(entity);
+        }
+        MatchFeatures.prepare(entities);
+        return entities;
+    }
+
+    private static String key(String companyId, String domain) {
+        return companyId + "/" + domain;
+    }
+}
@@ -0,0 +1,130 @@
+package com.mdm.botcore.service;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.matching.LongPairSet;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Groups merge suggestions by unordered entity-id pair.
+ * When several rules match the same two entities (or a DRL rule fires for both orderings),
+ * the pair becomes a single candidate that records every matching rule once.
+ */
+public final class SuggestionAggregator {
+
+    private SuggestionAggregator() {}
+
+    /**
+     * @param suggestions Suggestions as produced by a rule engine.
+     * @return One entry per unordered entity pair, in order of first appearance.
+     */
+    public static List<PairSuggestions> aggregate(List<MergeService.MergeSuggestion> suggestions) {
+        return aggregate(suggestions, new EntityOrdinals(), new LongPairSet());
+    }
+
+    /**
+     * @param suggestions Suggestions as produced by a rule engine.
+     * @param ordinals Numbering of entity ids that {@code excluded} refers to; new ids are added to it.
+     * @param excluded Pairs of id ordinals never to suggest again, e.g. pairs a reviewer rejected.
+     * @return The suggestions whose pair is not excluded, in their original order.
+     */
+    public static List<MergeService.MergeSuggestion> withoutExcluded(List<MergeService.MergeSuggestion> suggestions,
+                                                                     EntityOrdinals ordinals, LongPairSet excluded) {
+        if (excluded.size() == 0) {
+            return suggestions;
+        }
+        List<MergeService.MergeSuggestion> kept = new ArrayList<>(suggestions.size());
+        for (MergeService.MergeSuggestion suggestion : suggestions) {
+            if (!excluded.contains(ordinals.of(suggestion.getEntity1().getId()), ordinals.of(suggestion.getEntity2().getId()))) {
+                kept.add(suggestion);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Aggregates the suggestions, dropping every pair in {@code excluded}.
+     * @param suggestions Suggestions as produced by a rule engine.
+     * @param ordinals Numbering of entity ids that {@code excluded} refers to; new ids are added to it.
+     * @param excluded Pairs of id ordinals never to suggest again, e.g. pairs a reviewer rejected.
+     * @return One entry per unordered entity pair, in order of first appearance.
+     */
+    public static List<PairSuggestions> aggregate(List<MergeService.MergeSuggestion> suggestions,
+                                                  EntityOrdinals ordinals, LongPairSet excluded) {
+        // Pairs are keyed by their packed id ordinals; the set's insertion index is the pair's position in the result
+        LongPairSet seen = new LongPairSet(suggestions.size());
+        List<PairSuggestions> pairs = new ArrayList<>();
+        for (MergeService.MergeSuggestion suggestion : suggestions) {
+            int ordinal1 = ordinals.of(suggestion.getEntity1().getId());
+            int ordinal2 = ordinals.of(suggestion.getEntity2().getId());
+            if (excluded.contains(ordinal1, ordinal2)) {
+                continue;
+            }
+            int index = seen.indexOf(ordinal1, ordinal2);
+            if (index < 0) {
+                seen.add(ordinal1, ordinal2);
+                index = pairs.size();
+                pairs.add(new PairSuggestions(suggestion.getEntity1(), suggestion.getEntity2()));
+            }
+            pairs.get(index).add(suggestion);
+        }
+        return pairs;
+    }
+
+    /**
+     * All suggestions for one entity pair, oriented like the first suggestion seen.
+     */
+    public static final class PairSuggestions {
+        private final MDMEntity entity1;
+        private final MDMEntity entity2;
+        private final List<MergeService.MergeSuggestion> suggestions = new ArrayList<>();
+
+        private PairSuggestions(MDMEntity entity1, MDMEntity entity2) {
+            this.entity1 = entity1;
+            this.entity2 = entity2;
+        }
+
+        private void add(MergeService.MergeSuggestion suggestion) {
+            // The same rule matching the pair again (e.g. in the reverse orientation) adds no evidence
+            for (MergeService.MergeSuggestion existing : suggestions) {
+                if (Objects.equals(existing.getRuleName(), suggestion.getRuleName())) {
+                    return;
+                }
+            }
+            suggestions.add(suggestion);
+        }
+
+        public MDMEntity getEntity1() { return entity1; }
+        public MDMEntity getEntity2() { return entity2; }
+        public List<MergeService.MergeSuggestion> getSuggestions() { return suggestions; }
+
+        public List<String> getRuleNames() {
+            List<String> ruleNames = new ArrayList<>();
+            for (MergeService.MergeSuggestion suggestion : suggestions) {
+                ruleNames.add(suggestion.getRuleName());
+            }
+            return ruleNames;
+        }
+
+        /**
+         * @return The combined reasoning persisted on the candidate pair: the matching rules and each rule's evidence.
+         */
+        public Map<String, Object> getReasoning() {
+            List<Map<String, String>> evidence = new ArrayList<>();
+            for (MergeService.MergeSuggestion suggestion : suggestions) {
+                Map<String, String> entry = new LinkedHashMap<>();
+                entry.put("rule", suggestion.getRuleName());
+                entry.put("reasoning", suggestion.getReasoningJson());
+                evidence.add(entry);
+            }
+            Map<String, Object> reasoning = new LinkedHashMap<>();
+            reasoning.put("rules", getRuleNames());
+            reasoning.put("evidence", evidence);
+            return reasoning;
+        }
+    }
+}
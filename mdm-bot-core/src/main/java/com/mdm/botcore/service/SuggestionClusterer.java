@@ -0,0 +1,117 @@
+package com.mdm.botcore.service;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.matching.UnionFind;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Clusters matched entity pairs into merge groups.
+ * Every pair is an edge between two entity ids; the connected components of that graph
+ * (found with a {@link UnionFind}) are the groups, so A~B, B~C and A~C become one group
+ * {A, B, C} with a single golden record instead of three conflicting pairwise proposals.
+ */
+public final class SuggestionClusterer {
+
+    private SuggestionClusterer() {}
+
+    /**
+     * @param pairs Aggregated pair suggestions (see {@link SuggestionAggregator}).
+     * @return One cluster per connected component, in order of first appearance.
+     */
+    public static List<EntityCluster> cluster(List<SuggestionAggregator.PairSuggestions> pairs) {
+        // Number the entities in order of first appearance
+        Map<String, Integer> positions = new HashMap<>();
+        List<MDMEntity> entities = new ArrayList<>();
+        int[][] edges = new int[pairs.size()][];
+        for (int p = 0; p < pairs.size(); p++) {
+            SuggestionAggregator.PairSuggestions pair = pairs.get(p);
+            edges[p] = new int[] {position(pair.getEntity1(), positions, entities), position(pair.getEntity2(), positions, entities)};
+        }
+
+        UnionFind components = new UnionFind(entities.size());
+        for (int[] edge : edges) {
+            components.union(edge[0], edge[1]);
+        }
+
+        Map<Integer, EntityCluster> clusters = new LinkedHashMap<>();
+        for (int p = 0; p < pairs.size(); p++) {
+            clusters.computeIfAbsent(components.find(edges[p][0]), root -> new EntityCluster()).pairs.add(pairs.get(p));
+        }
+        for (int e = 0; e < entities.size(); e++) {
+            clusters.get(components.find(e)).members.add(entities.get(e));
+        }
+        return new ArrayList<>(clusters.values());
+    }
+
+    private static int position(MDMEntity entity, Map<String, Integer> positions, List<MDMEntity> entities) {
+        return positions.computeIfAbsent(entity.getId(), id -> {
+            entities.add(entity);
+            return entities.size() - 1;
+        });
+    }
+
+    /**
+     * One connected component: its member entities and the matched pairs connecting them.
+     */
+    public static final class EntityCluster {
+        private final List<MDMEntity> members = new ArrayList<>();
+        private final List<SuggestionAggregator.PairSuggestions> pairs = new ArrayList<>();
+
+        private EntityCluster() {}
+
+        /** @return The members, in order of first appearance. */
+        public List<MDMEntity> getMembers() { return members; }
+        /** @return The matched pairs (edges) inside the cluster. */
+        public List<SuggestionAggregator.PairSuggestions> getPairs() { return pairs; }
+
+        public List<String> getMemberIds() {
+            List<String> ids = new ArrayList<>();
+            for (MDMEntity member : members) {
+                ids.add(member.getId());
+            }
+            return ids;
+        }
+
+        /** @return Every rule that matched at least one pair, in order of first appearance. */
+        public List<String> getRuleNames() {
+            Set<String> ruleNames = new LinkedHashSet<>();
+            for (SuggestionAggregator.PairSuggestions pair : pairs) {
+                ruleNames.addAll(pair.getRuleNames());
+            }
+            return new ArrayList<>(ruleNames);
+        }
+
+        /**
+         * @return The golden record of the cluster (see {@link Survivorship}).
+         */
+        public MDMEntity getGoldenRecord() {
+            return Survivorship.goldenRecord(members);
+        }
+
+        /**
+         * @return The reasoning persisted on the merge group: the members, the matching rules and each edge's reasoning.
+         */
+        public Map<String, Object> getReasoning() {
+            List<Map<String, Object>> edges = new ArrayList<>();
+            for (SuggestionAggregator.PairSuggestions pair : pairs) {
+                Map<String, Object> edge = new LinkedHashMap<>();
+                edge.put("entity1Id", pair.getEntity1().getId());
+                edge.put("entity2Id", pair.getEntity2().getId());
+                edge.putAll(pair.getReasoning());
+                edges.add(edge);
+            }
+            Map<String, Object> reasoning = new LinkedHashMap<>();
+            reasoning.put("members", getMemberIds());
+            reasoning.put("rules", getRuleNames());
+            reasoning.put("edges", edges);
+            return reasoning;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.mdm.botcore.service;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the golden record of a group of matched entities.
+ *
+ * Each field takes the value most members agree on; ties go to the member that appears first,
+ * so a two-member group resolves exactly like the pairwise merge (first entity takes precedence).
+ * Attributes are the union of all members' attributes, earlier members winning on conflicts.
+ */
+public final class Survivorship {
+
+    private Survivorship() {}
+
+    /**
+     * @param members The group members, in priority order; at least one.
+     * @return The golden record, identified by the member ids joined with "-".
+     */
+    public static MDMEntity goldenRecord(List<MDMEntity> members) {
+        MDMEntity golden = new MDMEntity();
+        golden.setId(members.stream().map(MDMEntity::getId).collect(Collectors.joining("-")));
+        golden.setType(mostCommon(members, MDMEntity::getType));
+        golden.setName(mostCommon(members, MDMEntity::getName));
+        golden.setAddress(mostCommon(members, MDMEntity::getAddress));
+        golden.setEmail(mostCommon(members, MDMEntity::getEmail));
+        golden.setPhone(mostCommon(members, MDMEntity::getPhone));
+        golden.setSourceSystem(mostCommon(members, MDMEntity::getSourceSystem));
+
+        Map<String, Object> attributes = null;
+        for (MDMEntity member : members) {
+            if (member.getAttributes() != null) {
+                if (attributes == null) {
+                    attributes = new LinkedHashMap<>();
+                }
+                member.getAttributes().forEach(attributes::putIfAbsent);
+            }
+        }
+        golden.setAttributes(attributes);
+        return golden;
+    }
+
+    // Most frequent non-null value; among equally frequent values the earliest member's wins
+    private static String mostCommon(List<MDMEntity> members, Function<MDMEntity, String> field) {
+        Map<String, Integer> counts = new HashMap<>();
+        int maxCount = 0;
+        for (MDMEntity member : members) {
+            String value = field.apply(member);
+            if (value != null) {
+                maxCount = Math.max(maxCount, counts.merge(value, 1, Integer::sum));
+            }
+        }
+        for (MDMEntity member : members) {
+            String value = field.apply(member);
+            if (value != null && counts.get(value) == maxCount) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,51 @@
+package com.mdm.botcore;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+
+/**
+ * Entities shared by the unit tests. Entities compare by their fields, so tests that put several
+ * entities with the same data in one batch give each its own id.
+ */
+public final class TestEntities {
+
+    private TestEntities() {
+    }
+
+    /**
+     * @return An entity with only an id, for tests that pair entities without matching them.
+     */
+    public static MDMEntity entity(String id) {
+        MDMEntity entity = new MDMEntity();
+        entity.setId(id);
+        return entity;
+    }
+
+    public static MDMEntity organization(String id, String name) {
+        MDMEntity entity = new MDMEntity();
+        entity.setId(id);
+        entity.setType("Organization");
+        entity.setName(name);
+        return entity;
+    }
+
+    public static MDMEntity organization(String id, String name, String phone) {
+        MDMEntity entity = organization(id, name);
+        entity.setPhone(phone);
+        return entity;
+    }
+
+    public static MDMEntity organizationWithEmail(String id, String name, String email) {
+        MDMEntity entity = organization(id, name);
+        entity.setEmail(email);
+        return entity;
+    }
+
+    public static MDMEntity person(String id, String phone, String email) {
+        MDMEntity entity = new MDMEntity();
+        entity.setId(id);
+        entity.setType("Person");
+        entity.setPhone(phone);
+        entity.setEmail(email);
+        return entity;
+    }
+}
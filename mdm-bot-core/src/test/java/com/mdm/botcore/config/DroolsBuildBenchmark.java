@@ -0,0 +1,163 @@
+package com.mdm.botcore.config;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.matching.MatchFeatures;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of the two Drools build paths, executable model versus interpreted DRL: compile time
+ * of a rule set, latency of the first fire on a fresh KieBase, and steady-state fire time, plus the
+ * executable model loaded from its stored kjar instead of being compiled. Also
+ * compares small-batch throughput on a fresh session per batch with pooled sessions.
+ * Not part of the test suite; run with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mdm.botcore.config.DroolsBuildBenchmark
+ * </pre>
+ */
+public class DroolsBuildBenchmark {
+
+    private static final int ENTITIES = 500;
+    private static final int ROUNDS = 5;
+    private static final int WARM_FIRES = 20;
+    private static final int SMALL_BATCH = 10;
+    private static final int SMALL_BATCHES = 5_000;
+
+    // The standard equality rules, written the way company rule sets are stored
+    private static final String RULES = """
+            package com.mdm.rules;
+
+            import com.mdm.botcore.domain.model.MDMEntity;
+
+            global java.util.List matches;
+
+            rule "ExactCompanyNameMatch"
+            when
+                $entity1 : MDMEntity(type == "Organization", name != null)
+                $entity2 : MDMEntity(type == "Organization", this != $entity1, matchFeatures.foldedName == $entity1.matchFeatures.foldedName)
+            then
+                matches.add("ExactCompanyNameMatch:" + $entity1.getId() + "-" + $entity2.getId());
+            end
+
+            rule "AddressMatch"
+            when
+                $entity1 : MDMEntity(address != null, address.length() > 10)
+                $entity2 : MDMEntity(this != $entity1, address != null, matchFeatures.foldedAddress == $entity1.matchFeatures.foldedAddress)
+            then
+                matches.add("AddressMatch:" + $entity1.getId() + "-" + $entity2.getId());
+            end
+
+            rule "PhoneNumberMatch"
+            when
+                $entity1 : MDMEntity(phone != null, phone.length() >= 10)
+                $entity2 : MDMEntity(this != $entity1, phone != null, phone.length() >= 10, matchFeatures.phoneDigits == $entity1.matchFeatures.phoneDigits)
+            then
+                matches.add("PhoneNumberMatch:" + $entity1.getId() + "-" + $entity2.getId());
+            end
+
+            rule "EmailDomainMatch"
+            when
+                $entity1 : MDMEntity(email != null, matchFeatures.emailDomain != null)
+                $entity2 : MDMEntity(this != $entity1, email != null, matchFeatures.emailDomain == $entity1.matchFeatures.emailDomain)
+            then
+                matches.add("EmailDomainMatch:" + $entity1.getId() + "-" + $entity2.getId());
+            end
+            """;
+
+    public static void main(String[] args) throws IOException {
+        List<MDMEntity> entities = randomEntities(new Random(42));
+        MatchFeatures.prepare(entities);
+        DroolsConfig executableModel = new DroolsConfig(true);
+        DroolsConfig interpreted = new DroolsConfig(false);
+        Path kjarDirectory = Files.createTempDirectory("rule-sets");
+        DroolsConfig storedKjar = new DroolsConfig(true, kjarDirectory.toString());
+        storedKjar.releaseKieContainer(storedKjar.kieContainer(List.of(RULES)));
+
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.printf("Round %d%n", round + 1);
+            measure("executable model", executableModel, entities);
+            measure("stored kjar", storedKjar, entities);
+            measure("DRL (interpreted)", interpreted, entities);
+        }
+
+        List<MDMEntity> smallBatch = entities.subList(0, SMALL_BATCH);
+        PooledKieBase pooled = new PooledKieBase(interpreted.kieContainer(List.of(RULES)), 2, 0);
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.printf("Sessions, round %d%n", round + 1);
+            long start = System.nanoTime();
+            for (int i = 0; i < SMALL_BATCHES; i++) {
+                fire(pooled.getKieBase(), smallBatch);
+            }
+            report("new session per batch", start);
+            start = System.nanoTime();
+            for (int i = 0; i < SMALL_BATCHES; i++) {
+                pooled.execute(kieSession -> fire(kieSession, smallBatch));
+            }
+            report("pooled sessions", start);
+        }
+        pooled.close();
+        interpreted.releaseKieContainer(pooled.getKieContainer());
+    }
+
+    private static void report(String label, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("  %-22s %9.0f batches/s%n", label, SMALL_BATCHES / seconds);
+    }
+
+    private static void measure(String label, DroolsConfig droolsConfig, List<MDMEntity> entities) {
+        long start = System.nanoTime();
+        KieContainer kieContainer = droolsConfig.kieContainer(List.of(RULES));
+        KieBase kieBase = kieContainer.getKieBase();
+        long compiled = System.nanoTime();
+        int matches = fire(kieBase, entities);
+        long firstFire = System.nanoTime();
+        for (int i = 0; i < WARM_FIRES; i++) {
+            fire(kieBase, entities);
+        }
+        long warm = (System.nanoTime() - firstFire) / WARM_FIRES;
+        droolsConfig.releaseKieContainer(kieContainer);
+        System.out.printf("  %-20s compile %7.1f ms, first fire %7.1f ms, warm fire %7.1f ms (%d matches)%n", label,
+                (compiled - start) / 1e6, (firstFire - compiled) / 1e6, warm / 1e6, matches);
+    }
+
+    private static int fire(KieBase kieBase, List<MDMEntity> entities) {
+        KieSession kieSession = kieBase.newKieSession();
+        try {
+            return fire(kieSession, entities);
+        } finally {
+            kieSession.dispose();
+        }
+    }
+
+    private static int fire(KieSession kieSession, List<MDMEntity> entities) {
+        List<String> matches = new ArrayList<>();
+        kieSession.setGlobal("matches", matches);
+        entities.forEach(kieSession::insert);
+        kieSession.fireAllRules();
+        return matches.size();
+    }
+
+    private static List<MDMEntity> randomEntities(Random random) {
+        String[] domains = {"@acme.com", "@globex.com", "@initech.com", "@umbrella.com", "@hooli.com"};
+        List<MDMEntity> entities = new ArrayList<>();
+        for (int i = 0; i < ENTITIES; i++) {
+            MDMEntity entity = new MDMEntity();
+            entity.setId("E" + i);
+            entity.setType(random.nextInt(4) == 0 ? "Person" : "Organization");
+            entity.setName("Company " + random.nextInt(ENTITIES / 2));
+            entity.setAddress(random.nextInt(200) + " Main Street, Springfield");
+            entity.setPhone("555-" + (100 + random.nextInt(900)) + "-" + (1000 + random.nextInt(50)));
+            entity.setEmail("user" + i + domains[random.nextInt(domains.length)]);
+            entities.add(entity);
+        }
+        return entities;
+    }
+}
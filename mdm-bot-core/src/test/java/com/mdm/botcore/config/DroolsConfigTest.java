@@ -0,0 +1,129 @@
+package com.mdm.botcore.config;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieSession;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.mdm.botcore.TestEntities.organization;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DroolsConfigTest {
+
+    private static final String RULES = """
+            package com.mdm.rules;
+
+            import com.mdm.botcore.domain.model.MDMEntity;
+
+            global java.util.List matches;
+
+            rule "ExactCompanyNameMatch"
+            when
+                $entity1 : MDMEntity(type == "Organization", name != null)
+                $entity2 : MDMEntity(type == "Organization", this != $entity1, name == $entity1.name)
+            then
+                matches.add($entity1.getId() + "-" + $entity2.getId());
+            end
+            """;
+
+    @TempDir
+    Path kjarDirectory;
+
+    @Test
+    void testExecutableModel_StoresTheKjarAndLoadsItOnTheNextCompilation() throws Exception {
+        DroolsConfig first = new DroolsConfig(true, kjarDirectory.toString());
+        KieContainer compiled = first.kieContainer(List.of(RULES));
+        Path kjar = kjarDirectory.resolve("ruleset-" + KieBaseCache.fingerprint(List.of(RULES)) + ".jar");
+        assertTrue(Files.size(kjar) > 0);
+        assertEquals(2, fire(compiled).size());
+        first.releaseKieContainer(compiled);
+
+        // A new configuration stands for a restart
+        DroolsConfig restarted = new DroolsConfig(true, kjarDirectory.toString());
+        long modified = Files.getLastModifiedTime(kjar).toMillis();
+        KieContainer loaded = restarted.kieContainer(List.of(RULES));
+        assertEquals(compiled.getReleaseId(), loaded.getReleaseId());
+        assertEquals(modified, Files.getLastModifiedTime(kjar).toMillis());
+        assertEquals(2, fire(loaded).size());
+        restarted.releaseKieContainer(loaded);
+    }
+
+    @Test
+    void testExecutableModel_CompilesAgainWhenTheKjarIsUnreadable() throws Exception {
+        Path kjar = kjarDirectory.resolve("ruleset-" + KieBaseCache.fingerprint(List.of(RULES)) + ".jar");
+        Files.write(kjar, new byte[] {1, 2, 3});
+
+        DroolsConfig droolsConfig = new DroolsConfig(true, kjarDirectory.toString());
+        KieContainer kieContainer = droolsConfig.kieContainer(List.of(RULES));
+        assertEquals(2, fire(kieContainer).size());
+        assertTrue(Files.size(kjar) > 3);
+        droolsConfig.releaseKieContainer(kieContainer);
+    }
+
+    @Test
+    void testKieContainer_ConcurrentRuleSetsStayApartAndReleaseIndependently() throws Exception {
+        DroolsConfig droolsConfig = new DroolsConfig(false);
+        String nameRules = RULES.replace("matches.add(", "matches.add(drools.getRule().getName() + \":\" + ");
+        String phoneRules = nameRules.replace("ExactCompanyNameMatch", "SameNamePhoneMatch")
+                .replace("name == $entity1.name", "name == $entity1.name, phone == null");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<KieContainer> names = executor.submit(() -> {
+                start.await();
+                return droolsConfig.kieContainer(List.of(nameRules));
+            });
+            Future<KieContainer> phones = executor.submit(() -> {
+                start.await();
+                return droolsConfig.kieContainer(List.of(phoneRules));
+            });
+            start.countDown();
+            KieContainer nameContainer = names.get(60, TimeUnit.SECONDS);
+            KieContainer phoneContainer = phones.get(60, TimeUnit.SECONDS);
+
+            // Each container fires only the rules it was compiled from
+            assertNotEquals(nameContainer.getReleaseId(), phoneContainer.getReleaseId());
+            assertEquals(List.of("ExactCompanyNameMatch:1-2", "ExactCompanyNameMatch:2-1"), sorted(fire(nameContainer)));
+            assertEquals(List.of("SameNamePhoneMatch:1-2", "SameNamePhoneMatch:2-1"), sorted(fire(phoneContainer)));
+
+            droolsConfig.releaseKieContainer(nameContainer);
+            assertEquals(List.of("SameNamePhoneMatch:1-2", "SameNamePhoneMatch:2-1"), sorted(fire(phoneContainer)));
+            droolsConfig.releaseKieContainer(phoneContainer);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<String> sorted(List<String> matches) {
+        List<String> sorted = new ArrayList<>(matches);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static List<String> fire(KieContainer kieContainer) {
+        List<String> matches = new ArrayList<>();
+        KieSession kieSession = kieContainer.getKieBase().newKieSession();
+        try {
+            kieSession.setGlobal("matches", matches);
+            kieSession.insert(organization("1", "Acme"));
+            kieSession.insert(organization("2", "Acme"));
+            kieSession.insert(organization("3", "Globex"));
+            kieSession.fireAllRules();
+        } finally {
+            kieSession.dispose();
+        }
+        return matches;
+    }
+}
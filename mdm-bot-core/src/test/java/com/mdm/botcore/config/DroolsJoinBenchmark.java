@@ -0,0 +1,103 @@
+package com.mdm.botcore.config;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.matching.BlockingKey;
+import com.mdm.botcore.matching.MatchFeatures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of pairwise DRL joins as the batch grows: the self-join of two {@code MDMEntity}
+ * patterns with a method-call constraint, which Drools evaluates for every pair, against the
+ * equality join of {@link BlockingKey} facts, which Drools hash-indexes.
+ * Not part of the test suite; run with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mdm.botcore.config.DroolsJoinBenchmark
+ * </pre>
+ */
+public class DroolsJoinBenchmark {
+
+    private static final int[] BATCH_SIZES = {500, 1_000, 2_000, 4_000};
+    private static final int ROUNDS = 3;
+
+    private static final String SELF_JOIN = """
+            package com.mdm.rules;
+
+            import com.mdm.botcore.domain.model.MDMEntity;
+
+            global java.util.List matches;
+
+            rule "ExactCompanyNameMatch"
+            when
+                $entity1 : MDMEntity(type == "Organization", name != null)
+                $entity2 : MDMEntity(type == "Organization", name != null, this != $entity1, name.equalsIgnoreCase($entity1.name))
+            then
+                matches.add($entity1.getId() + "-" + $entity2.getId());
+            end
+            """;
+
+    private static final String KEY_JOIN = """
+            package com.mdm.rules;
+
+            import com.mdm.botcore.domain.model.MDMEntity;
+            import com.mdm.botcore.matching.BlockingKey;
+
+            global java.util.List matches;
+
+            rule "ExactCompanyNameMatch"
+            when
+                $key1 : BlockingKey(kind == "companyName")
+                $key2 : BlockingKey(kind == "companyName", value == $key1.value, position > $key1.position)
+                $entity1 : MDMEntity() from $key1.entity
+                $entity2 : MDMEntity() from $key2.entity
+            then
+                matches.add($entity1.getId() + "-" + $entity2.getId());
+            end
+            """;
+
+    public static void main(String[] args) {
+        DroolsConfig droolsConfig = new DroolsConfig(false);
+        PooledKieBase selfJoin = new PooledKieBase(droolsConfig.kieContainer(List.of(SELF_JOIN)), 1, 0);
+        PooledKieBase keyJoin = new PooledKieBase(droolsConfig.kieContainer(List.of(KEY_JOIN)), 1, 0);
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.printf("Round %d%n", round + 1);
+            for (int size : BATCH_SIZES) {
+                List<MDMEntity> entities = randomEntities(new Random(size), size);
+                MatchFeatures.prepare(entities);
+                measure("self join", selfJoin, entities, false);
+                measure("blocking key join", keyJoin, entities, true);
+            }
+        }
+        selfJoin.close();
+        keyJoin.close();
+    }
+
+    private static void measure(String label, PooledKieBase kieBase, List<MDMEntity> entities, boolean keys) {
+        List<String> matches = new ArrayList<>();
+        long start = System.nanoTime();
+        kieBase.execute(kieSession -> {
+            kieSession.setGlobal("matches", matches);
+            entities.forEach(kieSession::insert);
+            if (keys) {
+                BlockingKey.forBatch(entities).forEach(kieSession::insert);
+            }
+            kieSession.fireAllRules();
+        });
+        System.out.printf("  %-18s %5d entities %9.1f ms (%d matches)%n", label, entities.size(),
+                (System.nanoTime() - start) / 1e6, matches.size());
+    }
+
+    private static List<MDMEntity> randomEntities(Random random, int size) {
+        List<MDMEntity> entities = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            MDMEntity entity = new MDMEntity();
+            entity.setId("E" + i);
+            entity.setType("Organization");
+            entity.setName((random.nextBoolean() ? "Company " : "COMPANY ") + random.nextInt(size / 2));
+            entities.add(entity);
+        }
+        return entities;
+    }
+}
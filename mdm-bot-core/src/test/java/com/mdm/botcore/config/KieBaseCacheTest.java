@@ -0,0 +1,85 @@
+package com.mdm.botcore.config;
+
+import org.junit.jupiter.api.Test;
+import org.kie.api.KieBase;
+import org.kie.api.runtime.KieContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class KieBaseCacheTest {
+
+    @Test
+    void testGetKieBase_CompilesOncePerRuleSetAndEvictsLeastRecentlyUsed() {
+        List<List<String>> compiled = new ArrayList<>();
+        List<KieContainer> released = new ArrayList<>();
+        KieBaseCache cache = new KieBaseCache(2, 0, TimeUnit.MINUTES, (fingerprint, drls) -> {
+            assertEquals(KieBaseCache.fingerprint(drls), fingerprint);
+            compiled.add(drls);
+            return container();
+        }, released::add, 1, 0);
+        List<String> rulesA = List.of("rule A", "rule B");
+        List<String> rulesB = List.of("rule B", "rule A");
+        List<String> rulesC = List.of("rule Arule B");
+
+        KieBase kieBaseA = cache.getKieBase(rulesA);
+        assertSame(kieBaseA, cache.getKieBase(List.of("rule A", "rule B")));
+        KieBase kieBaseB = cache.getKieBase(rulesB);
+        assertNotSame(kieBaseA, kieBaseB);
+        assertNotEquals(KieBaseCache.fingerprint(List.of("rule A", "rule B")), KieBaseCache.fingerprint(rulesC));
+
+        cache.getKieBase(rulesA);
+        cache.getKieBase(rulesC); // evicts rulesB, the least recently used
+        assertEquals(1, released.size());
+        assertSame(kieBaseB, released.get(0).getKieBase());
+        assertSame(kieBaseA, cache.getKieBase(rulesA));
+        cache.getKieBase(rulesB);
+
+        assertEquals(List.of(rulesA, rulesB, rulesC, rulesB), compiled);
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getHits());
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.getEvictions());
+
+        cache.close();
+        assertEquals(0, cache.size());
+        assertEquals(4, released.size());
+    }
+
+    @Test
+    void testGetKieBase_DropsIdleRuleSetsAndFailedCompilations() {
+        AtomicLong now = new AtomicLong();
+        List<String> broken = List.of("rule broken");
+        List<KieContainer> released = new ArrayList<>();
+        KieBaseCache cache = new KieBaseCache(10, 5, TimeUnit.NANOSECONDS, (fingerprint, drls) -> {
+            if (drls.equals(broken)) {
+                throw new RuntimeException("Error building Drools KieBase");
+            }
+            return container();
+        }, released::add, 1, 0, now::get);
+
+        KieBase kieBase = cache.getKieBase(List.of("rule A"));
+        now.set(4);
+        assertSame(kieBase, cache.getKieBase(List.of("rule A")));
+        now.set(9);
+        assertNotSame(kieBase, cache.getKieBase(List.of("rule A")));
+        assertEquals(1, released.size());
+
+        assertThrows(RuntimeException.class, () -> cache.getKieBase(broken));
+        assertEquals(1, cache.size());
+        assertEquals(1, released.size());
+    }
+
+    private static KieContainer container() {
+        KieContainer kieContainer = mock(KieContainer.class);
+        KieBase kieBase = mock(KieBase.class);
+        when(kieContainer.getKieBase()).thenReturn(kieBase);
+        return kieContainer;
+    }
+}
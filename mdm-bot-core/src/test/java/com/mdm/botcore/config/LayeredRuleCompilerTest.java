@@ -0,0 +1,68 @@
+package com.mdm.botcore.config;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+import org.junit.jupiter.api.Test;
+import org.kie.api.KieBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LayeredRuleCompilerTest {
+
+    private static String rule(String name, String condition) {
+        return """
+                package com.mdm.rules;
+
+                import com.mdm.botcore.domain.model.MDMEntity;
+
+                global java.util.List fired;
+
+                rule "%s"
+                when
+                    $entity : MDMEntity(%s)
+                then
+                    fired.add("%s:" + $entity.getId());
+                end
+                """.formatted(name, condition, name);
+    }
+
+    @Test
+    void testCompile_SharesBaseLayerAndLetsDeltaReplaceRules() {
+        LayeredRuleCompiler compiler = new LayeredRuleCompiler(4);
+        List<String> global = List.of(rule("ExactCompanyNameMatch", "name == \"Acme\""), rule("PhoneNumberMatch", "phone != null"));
+
+        KieBase companyA = compiler.compile(global, List.of(rule("ExactCompanyNameMatch", "name == \"Globex\"")));
+        KieBase companyB = compiler.compile(global, List.of(rule("CompanyBRule", "name == \"Acme\"")));
+        KieBase companyC = compiler.compile(global, List.of());
+
+        // The global layer was compiled once, for the first company
+        assertEquals(1, compiler.getMisses());
+        assertEquals(2, compiler.getHits());
+        assertEquals(1, compiler.size());
+
+        // Company A's rule replaced the global rule of the same name; the other companies keep it
+        assertEquals(List.of("PhoneNumberMatch:1"), fire(companyA));
+        assertEquals(List.of("CompanyBRule:1", "ExactCompanyNameMatch:1", "PhoneNumberMatch:1"), fire(companyB));
+        assertEquals(List.of("ExactCompanyNameMatch:1", "PhoneNumberMatch:1"), fire(companyC));
+    }
+
+    private static List<String> fire(KieBase kieBase) {
+        MDMEntity entity = new MDMEntity();
+        entity.setId("1");
+        entity.setName("Acme");
+        entity.setPhone("555-123-4567");
+        List<String> fired = new ArrayList<>();
+        // Layered rule sets have no container; their sessions are pooled on the KieBase
+        try (PooledKieBase pooled = new PooledKieBase(kieBase, 1, 0)) {
+            pooled.execute(kieSession -> {
+                kieSession.setGlobal("fired", fired);
+                kieSession.insert(entity);
+                kieSession.fireAllRules();
+            });
+        }
+        fired.sort(null);
+        return fired;
+    }
+}
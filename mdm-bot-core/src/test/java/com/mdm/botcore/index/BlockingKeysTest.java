@@ -0,0 +1,76 @@
+package com.mdm.botcore.index;
+
+import com.mdm.botcore.config.MatchingProperties;
+import com.mdm.botcore.domain.model.MDMEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.mdm.botcore.TestEntities.organization;
+import static com.mdm.botcore.TestEntities.organizationWithEmail;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockingKeysTest {
+
+    @Test
+    void testOf_EqualRuleKeysShareHashesAndRulesStaySeparate() {
+        BlockingKeys blockingKeys = BlockingKeys.defaults();
+        MDMEntity e1 = organization("1", "Acme Corporation", "555-123-4567");
+        MDMEntity e2 = organization("2", "ACME CORPORATION", "(555) 123 4567");
+        MDMEntity e3 = organization("3", "5551234567", null);
+
+        long[] keys1 = blockingKeys.index(e1, key -> 0);
+        long[] keys2 = blockingKeys.index(e2, key -> 0);
+        assertEquals(2, keys1.length);
+        assertArrayEquals(keys1, keys2);
+        assertArrayEquals(keys1, blockingKeys.lookup(e1, key -> 0));
+
+        // A name equal to another entity's phone digits must not land in the phone bucket
+        long[] keys3 = blockingKeys.index(e3, key -> 0);
+        assertEquals(1, keys3.length);
+        assertTrue(Arrays.stream(keys1).noneMatch(k -> k == keys3[0]));
+    }
+
+    @Test
+    void testLookup_SkipsStopKeysAndCapsStoredBlocks() {
+        BlockingKeys blockingKeys = new BlockingKeys(properties(Map.of(
+                "mdm.matching.rules.PhoneNumberMatch.max-block-size", "2")));
+        MDMEntity freeMail = organizationWithEmail("1", "Acme", "a@gmail.com");
+        assertEquals(1, blockingKeys.keys(List.of(freeMail)).size(), "Only the name key; @gmail.com is a stop key");
+        assertEquals(1, blockingKeys.index(freeMail, key -> 0).length);
+
+        MDMEntity phone = organization("2", null, "555-123-4567");
+        long[] phoneKey = blockingKeys.lookup(phone, key -> 2);
+        assertEquals(1, phoneKey.length);
+        assertEquals(0, blockingKeys.lookup(phone, key -> 3).length, "A key stored for more than 2 entities is capped");
+        assertEquals(0, blockingKeys.index(phone, key -> 3).length);
+    }
+
+    @Test
+    void testLookup_UsesTheSubBlockKeyOnceCapped() {
+        BlockingKeys blockingKeys = new BlockingKeys(properties(Map.of(
+                "mdm.matching.rules.PhoneNumberMatch.max-block-size", "2",
+                "mdm.matching.rules.PhoneNumberMatch.sub-block-key", "name:4")));
+        MDMEntity acme = organization("1", "Acme Corporation", "555-123-4567");
+        MDMEntity other = organization("2", "Acme Industries", "555-123-4567");
+
+        // Stored under the name, the phone and the phone with the name prefix
+        long[] indexed = blockingKeys.index(acme, key -> 0);
+        assertEquals(3, indexed.length);
+        long[] capped = blockingKeys.lookup(other, key -> 3);
+        assertEquals(2, capped.length);
+        assertTrue(Arrays.stream(indexed).anyMatch(k -> k == capped[1]), "Same phone and name prefix share the sub-key");
+        assertEquals(2, blockingKeys.lookup(other, key -> 0).length);
+    }
+
+    private static MatchingProperties properties(Map<String, Object> properties) {
+        MutablePropertySources sources = new MutablePropertySources();
+        sources.addFirst(new MapPropertySource("test", properties));
+        return new MatchingProperties(new PropertySourcesPropertyResolver(sources));
+    }
+}
@@ -0,0 +1,143 @@
+package com.mdm.botcore.index;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mdm.botcore.config.MatchingProperties;
+import com.mdm.botcore.domain.model.MDMEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static com.mdm.botcore.TestEntities.organization;
+import static com.mdm.botcore.TestEntities.organizationWithEmail;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedEntityIndexTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dataDirectory;
+
+    @Test
+    void testFindCandidates_SurvivesReopenAndHonoursScopeAndReplacement() {
+        try (MappedEntityIndex index = open()) {
+            index.index("company-a", "customer", List.of(
+                    organization("1", "Acme Corporation", "555-123-4567"),
+                    organization("2", "Globex", "555-000-0000")));
+            index.index("company-b", "customer", List.of(organization("9", "Acme Corporation", null)));
+            // Replacing entity 2 drops it from the Globex bucket
+            index.index("company-a", "customer", List.of(organization("2", "Initech", "555-000-0000")));
+        }
+
+        try (MappedEntityIndex index = open()) {
+            assertEquals(4, index.storedRecords());
+
+            List<MDMEntity> acme = index.findCandidates("company-a", "customer",
+                    List.of(organization("3", "ACME CORPORATION", null)));
+            assertEquals(List.of("1"), acme.stream().map(MDMEntity::getId).toList());
+            assertEquals("Acme Corporation", acme.get(0).getName());
+
+            assertTrue(index.findCandidates("company-a", "customer", List.of(organization("4", "Globex", null))).isEmpty());
+
+            // Shares the phone key with entity 2, whose latest version is returned
+            List<MDMEntity> phone = index.findCandidates("company-a", "customer",
+                    List.of(organization("5", "Other", "(555) 000 0000")));
+            assertEquals(List.of("Initech"), phone.stream().map(MDMEntity::getName).toList());
+
+            // Entities resubmitted in the batch are not returned as candidates
+            assertTrue(index.findCandidates("company-a", "customer",
+                    List.of(organization("1", "Acme Corporation", null))).isEmpty());
+        }
+    }
+
+    @Test
+    void testFindCandidates_LeavesOutStopKeysAndCappedKeys() {
+        MutablePropertySources sources = new MutablePropertySources();
+        sources.addFirst(new MapPropertySource("test", Map.of("mdm.matching.rules.PhoneNumberMatch.max-block-size", "2")));
+        BlockingKeys blockingKeys = new BlockingKeys(new MatchingProperties(new PropertySourcesPropertyResolver(sources)));
+        try (MappedEntityIndex index = new MappedEntityIndex(MappedEntityStore.open(dataDirectory), objectMapper, blockingKeys)) {
+            index.index("company-a", "customer", List.of(
+                    organizationWithEmail("1", "Acme", "a@gmail.com"),
+                    organization("2", "Globex", "555-000-0000"),
+                    organization("3", "Initech", "555-000-0000")));
+            index.index("company-a", "customer", List.of(organization("4", "Umbrella", "555-000-0000")));
+
+            assertTrue(index.findCandidates("company-a", "customer",
+                    List.of(organizationWithEmail("5", "Hooli", "b@GMAIL.com"))).isEmpty());
+            // Three entities share the phone, one more than the cap, so it is no longer looked up
+            assertTrue(index.findCandidates("company-a", "customer",
+                    List.of(organization("6", "Other", "(555) 000 0000"))).isEmpty());
+            assertEquals(List.of("2"), index.findCandidates("company-a", "customer",
+                    List.of(organization("7", "Globex", null))).stream().map(MDMEntity::getId).toList());
+        }
+    }
+
+    @Test
+    void testFindCandidates_AcceptsAMissingCompanyAndDomain() {
+        try (MappedEntityIndex index = open()) {
+            index.index(null, null, List.of(organization("1", "Acme Corporation", null)));
+            index.index(null, null, List.of(organization("1", "Acme Corp", null)));
+            index.index("company-a", null, List.of(organization("2", "Acme Corp", null)));
+
+            assertEquals(List.of("1"), index.findCandidates(null, null,
+                    List.of(organization("3", "ACME CORP", null))).stream().map(MDMEntity::getId).toList());
+        }
+    }
+
+    @Test
+    void testStore_ReadsEntriesFromMappedRecords() {
+        try (MappedEntityIndex index = open()) {
+            index.index("company-a", "customer", List.of(organization("1", "Acme Corporation", "555-123-4567")));
+        }
+        try (MappedEntityStore store = MappedEntityStore.open(dataDirectory)) {
+            assertEquals(1, store.size());
+            assertTrue(store.isLive(0));
+            assertEquals("company-a", store.companyId(0));
+            assertEquals("1", store.entityId(0));
+            assertTrue(store.entityJson(0).contains("Acme Corporation"));
+            assertEquals(2, store.keyCount(0));
+        }
+    }
+
+    @Test
+    void testCompact_DropsSupersededRecordsAndKeepsCandidates() {
+        try (MappedEntityIndex index = open()) {
+            index.index("company-a", "customer", List.of(organization("1", "Acme Corporation", null)));
+            for (int version = 0; version < 5; version++) {
+                index.index("company-a", "customer", List.of(organization("2", "Globex " + version, "555-000-0000")));
+            }
+        }
+        int stringBytes;
+        try (MappedEntityStore store = MappedEntityStore.open(dataDirectory)) {
+            stringBytes = store.stringBytes();
+        }
+
+        try (MappedEntityIndex index = open()) {
+            assertEquals(6, index.storedRecords());
+            index.compact();
+            assertEquals(2, index.storedRecords());
+            assertEquals(List.of("Globex 4"), index.findCandidates("company-a", "customer",
+                    List.of(organization("3", "Other", "555-000-0000"))).stream().map(MDMEntity::getName).toList());
+        }
+
+        try (MappedEntityStore store = MappedEntityStore.open(dataDirectory)) {
+            assertEquals(2, store.size());
+            assertTrue(store.stringBytes() * 2 < stringBytes,
+                    "Strings of superseded records are dropped: " + store.stringBytes() + " of " + stringBytes);
+        }
+        try (MappedEntityIndex index = open()) {
+            assertEquals(List.of("1"), index.findCandidates("company-a", "customer",
+                    List.of(organization("4", "Acme Corporation", null))).stream().map(MDMEntity::getId).toList());
+        }
+    }
+
+    private MappedEntityIndex open() {
+        return new MappedEntityIndex(MappedEntityStore.open(dataDirectory), objectMapper);
+    }
+}
@@ -0,0 +1,203 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.config.MatchingProperties;
+import com.mdm.botcore.domain.model.MDMEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockingIndexTest {
+
+    @Test
+    void testForEachPair_MatchesNestedLoopOrder() {
+        Random random = new Random(42);
+        String[] names = {"Acme Corp", "ACME CORP", "acme corp", "Globex", "GLOBEX", "Initech", null};
+        String[] phones = {"555-123-4567", "(555) 123 4567", "5551234567", "555-987-6543", "123", null};
+        String[] emails = {"a@acme.com", "b@acme.com", "c@ACME.com", "d@globex.com", "invalid", null};
+
+        List<MDMEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            MDMEntity entity = new MDMEntity();
+            entity.setId(String.valueOf(i));
+            entity.setType(random.nextInt(4) == 0 ? "Person" : "Organization");
+            entity.setName(names[random.nextInt(names.length)]);
+            entity.setPhone(phones[random.nextInt(phones.length)]);
+            entity.setEmail(emails[random.nextInt(emails.length)]);
+            entities.add(entity);
+        }
+
+        assertSamePairs(entities, MatchKeys::companyName,
+                (a, b) -> "Organization".equals(a.getType()) && a.getName() != null
+                        && "Organization".equals(b.getType()) && b.getName() != null
+                        && a.getName().equalsIgnoreCase(b.getName()));
+        assertSamePairs(entities, MatchKeys::phoneNumber,
+                (a, b) -> a.getPhone() != null && a.getPhone().length() >= 10
+                        && b.getPhone() != null && b.getPhone().length() >= 10
+                        && a.getPhone().replaceAll("[^0-9]", "").equals(b.getPhone().replaceAll("[^0-9]", "")));
+        assertSamePairs(entities, MatchKeys::emailDomain,
+                (a, b) -> a.getEmail() != null && a.getEmail().contains("@")
+                        && b.getEmail() != null && b.getEmail().contains("@")
+                        && a.getEmail().substring(a.getEmail().indexOf("@")).equals(b.getEmail().substring(b.getEmail().indexOf("@"))));
+    }
+
+    @Test
+    void testForEachPair_AnchorRangesPartitionPairs() {
+        List<String> items = Arrays.asList("a", "b", "a", "c", "a", "b");
+        BlockingIndex<String> index = BlockingIndex.build(items, s -> s);
+
+        List<String> all = new ArrayList<>();
+        index.forEachPair((x, y) -> all.add(x + y));
+
+        List<String> split = new ArrayList<>();
+        index.forEachPair(0, 2, (x, y) -> split.add(x + y));
+        index.forEachPair(2, items.size(), (x, y) -> split.add(x + y));
+
+        assertEquals(Arrays.asList("aa", "aa", "bb", "aa"), all);
+        assertEquals(all, split);
+        assertEquals(3, index.bucketCount());
+    }
+
+    @Test
+    void testBuild_CapsOversizedKeys() {
+        List<String> items = Arrays.asList("a1", "b1", "a2", "a1", "c1", "a1", "b2");
+        Function<String, String> prefix = s -> s.substring(0, 1);
+
+        BlockingIndex<String> skipped = BlockingIndex.build(items, prefix, 3, null);
+        List<String> pairs = new ArrayList<>();
+        skipped.forEachPair((x, y) -> pairs.add(x + y));
+        assertEquals(List.of("b1b2"), pairs);
+        assertEquals(Map.of("a", 4), skipped.getCappedKeys());
+
+        BlockingIndex<String> subBlocked = BlockingIndex.build(items, prefix, 3, s -> s.substring(1));
+        pairs.clear();
+        subBlocked.forEachPair((x, y) -> pairs.add(x + y));
+        assertEquals(List.of("a1a1", "a1a1", "b1b2", "a1a1"), pairs);
+
+        BlockSizeHistogram histogram = subBlocked.histogram();
+        assertEquals(4, histogram.getBlocks());
+        assertEquals(4, histogram.getPairs());
+        assertEquals(3, histogram.getLargestBlock());
+        assertEquals(Map.of("1", 2L, "2-3", 2L), histogram.getBlocksBySize());
+    }
+
+    @Test
+    void testFactoryBlocking_StopsFreeMailAndLearnsCappedKeys() {
+        List<MDMEntity> entities = new ArrayList<>();
+        String[] emails = {"a@Gmail.com", "b@gmail.com", "c@acme.com", "d@acme.com", "e@acme.com", "f@globex.com", "g@globex.com"};
+        for (int i = 0; i < emails.length; i++) {
+            MDMEntity entity = new MDMEntity();
+            entity.setId(String.valueOf(i));
+            entity.setEmail(emails[i]);
+            entities.add(entity);
+        }
+        MutablePropertySources sources = new MutablePropertySources();
+        sources.addFirst(new MapPropertySource("test", Map.of(
+                "mdm.matching.rules.EmailDomainMatch.max-block-size", "2",
+                "mdm.matching.rules.EmailDomainMatch.stop-key-learn-after", "2")));
+        BlockingMonitor monitor = new BlockingMonitor();
+        CandidateIndexFactory factory = new CandidateIndexFactory(
+                new MatchingProperties(new PropertySourcesPropertyResolver(sources)), monitor);
+
+        for (int batch = 0; batch < 2; batch++) {
+            List<String> pairs = new ArrayList<>();
+            factory.blocking(StandardPairRules.EMAIL_DOMAIN, entities).forEachPair((a, b) -> pairs.add(a.getId() + "-" + b.getId()));
+            assertEquals(List.of("5-6"), pairs);
+        }
+        assertEquals(Set.of("@acme.com"), monitor.getLearnedStopKeys("EmailDomainMatch"));
+
+        BlockingMonitor.BlockingReport report = monitor.getReports().get(0);
+        assertEquals("EmailDomainMatch", report.ruleName());
+        assertEquals(Map.of("@acme.com", 3), report.cappedKeys());
+        assertEquals(1, report.histogram().getBlocks());
+
+        factory.blocking(StandardPairRules.EMAIL_DOMAIN, entities);
+        assertTrue(monitor.getReports().get(0).cappedKeys().isEmpty());
+    }
+
+    @Test
+    void testFactoryBlocking_SubBlockedKeysAreNotLearned() {
+        List<MDMEntity> entities = new ArrayList<>();
+        String[][] rows = {{"Acme", "c@acme.com"}, {"Acme", "d@acme.com"}, {"Globex", "e@acme.com"}};
+        for (int i = 0; i < rows.length; i++) {
+            MDMEntity entity = new MDMEntity();
+            entity.setId(String.valueOf(i));
+            entity.setName(rows[i][0]);
+            entity.setEmail(rows[i][1]);
+            entities.add(entity);
+        }
+        MutablePropertySources sources = new MutablePropertySources();
+        sources.addFirst(new MapPropertySource("test", Map.of(
+                "mdm.matching.rules.EmailDomainMatch.max-block-size", "2",
+                "mdm.matching.rules.EmailDomainMatch.sub-block-key", "name",
+                "mdm.matching.rules.EmailDomainMatch.stop-key-learn-after", "2")));
+        BlockingMonitor monitor = new BlockingMonitor();
+        CandidateIndexFactory factory = new CandidateIndexFactory(
+                new MatchingProperties(new PropertySourcesPropertyResolver(sources)), monitor);
+
+        // The capped domain keeps being sub-blocked on the name well past learnAfter batches
+        for (int batch = 0; batch < 4; batch++) {
+            List<String> pairs = new ArrayList<>();
+            factory.blocking(StandardPairRules.EMAIL_DOMAIN, entities).forEachPair((a, b) -> pairs.add(a.getId() + "-" + b.getId()));
+            assertEquals(List.of("0-1"), pairs);
+        }
+        assertTrue(monitor.getLearnedStopKeys("EmailDomainMatch").isEmpty());
+        assertEquals(Map.of("@acme.com", 3), monitor.getReports().get(0).cappedKeys());
+    }
+
+    @Test
+    void testFactoryBlocking_LearnsStopKeysPerCompanyAndDomain() {
+        List<MDMEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            MDMEntity entity = new MDMEntity();
+            entity.setId(String.valueOf(i));
+            entity.setEmail(i + "@acme.com");
+            entities.add(entity);
+        }
+        MutablePropertySources sources = new MutablePropertySources();
+        sources.addFirst(new MapPropertySource("test", Map.of(
+                "mdm.matching.rules.EmailDomainMatch.max-block-size", "2",
+                "mdm.matching.rules.EmailDomainMatch.stop-key-learn-after", "1")));
+        BlockingMonitor monitor = new BlockingMonitor();
+        CandidateIndexFactory factory = new CandidateIndexFactory(
+                new MatchingProperties(new PropertySourcesPropertyResolver(sources)), monitor);
+
+        factory.forCompany("c1", "customer").blocking(StandardPairRules.EMAIL_DOMAIN, entities);
+        assertEquals(Set.of("@acme.com"), monitor.getLearnedStopKeys("c1", "customer", "EmailDomainMatch"));
+        assertTrue(monitor.getLearnedStopKeys("c2", "customer", "EmailDomainMatch").isEmpty());
+        assertTrue(monitor.getLearnedStopKeys("c1", "supplier", "EmailDomainMatch").isEmpty());
+        assertTrue(monitor.getLearnedStopKeys("EmailDomainMatch").isEmpty());
+
+        // A small block of the same domain in another company is still paired
+        List<String> pairs = new ArrayList<>();
+        factory.forCompany("c2", "customer").blocking(StandardPairRules.EMAIL_DOMAIN, entities.subList(0, 2))
+                .forEachPair((a, b) -> pairs.add(a.getId() + "-" + b.getId()));
+        assertEquals(List.of("0-1"), pairs);
+
+        List<BlockingMonitor.BlockingReport> reports = monitor.getReports();
+        assertEquals(List.of("c1", "c2"), reports.stream().map(BlockingMonitor.BlockingReport::companyId).toList());
+        assertEquals("customer", reports.get(0).domain());
+    }
+
+    private void assertSamePairs(List<MDMEntity> entities,
+                                 Function<MDMEntity, String> key,
+                                 BiPredicate<MDMEntity, MDMEntity> predicate) {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < entities.size(); i++) {
+            for (int j = i + 1; j < entities.size(); j++) {
+                if (predicate.test(entities.get(i), entities.get(j))) {
+                    expected.add(entities.get(i).getId() + "-" + entities.get(j).getId());
+                }
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        BlockingIndex.build(entities, key).forEachPair((a, b) -> actual.add(a.getId() + "-" + b.getId()));
+        assertEquals(expected, actual);
+    }
+}
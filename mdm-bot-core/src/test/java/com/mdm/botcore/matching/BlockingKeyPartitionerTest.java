@@ -0,0 +1,46 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static com.mdm.botcore.TestEntities.person;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockingKeyPartitionerTest {
+
+    @Test
+    void testPartition_KeepsEntitiesLinkedByAnyKeyTogether() {
+        // 0-2 share a phone, 2-4 share an email domain, 1 and 3 share nothing with anyone
+        List<MDMEntity> entities = List.of(
+                person("0", "555-123-4567", null),
+                person("1", null, null),
+                person("2", "(555) 123 4567", "a@acme.com"),
+                person("3", "555-987-6543", "b@globex.com"),
+                person("4", null, "c@acme.com"));
+        MatchFeatures.prepare(entities);
+
+        List<List<MDMEntity>> partitions = BlockingKeyPartitioner.partition(entities, Set.of(), 5);
+        assertEquals(List.of(List.of("0", "2", "4"), List.of("1"), List.of("3")), ids(partitions));
+
+        // Without the email domain kind, 4 is no longer linked to 0 and 2
+        partitions = BlockingKeyPartitioner.partition(entities, Set.of(BlockingKey.PHONE), 5);
+        assertEquals(List.of(List.of("0", "2"), List.of("1"), List.of("3"), List.of("4")), ids(partitions));
+
+        // Small components are packed together, in batch order
+        partitions = BlockingKeyPartitioner.partition(entities, Set.of(BlockingKey.PHONE), 2);
+        assertEquals(List.of(List.of("0", "1", "2"), List.of("3", "4")), ids(partitions));
+    }
+
+
+    private static List<List<String>> ids(List<List<MDMEntity>> partitions) {
+        List<List<String>> ids = new ArrayList<>();
+        for (List<MDMEntity> partition : partitions) {
+            ids.add(partition.stream().map(MDMEntity::getId).toList());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,61 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.config.MatchingProperties;
+import com.mdm.botcore.domain.model.MDMEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.mdm.botcore.TestEntities.organizationWithEmail;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockingKeyTest {
+
+    @Test
+    void testForBatch_LeavesOutFreeMailDomains() {
+        List<MDMEntity> entities = List.of(
+                organizationWithEmail("0", "Acme", "a@gmail.com"),
+                organizationWithEmail("1", "Acme", "b@GMAIL.com"),
+                organizationWithEmail("2", "Globex", "c@globex.com"));
+        MatchFeatures.prepare(entities);
+
+        assertEquals(List.of("emailDomain=@globex.com@2"), keys(BlockingKey.forBatch(entities), BlockingKey.EMAIL_DOMAIN));
+    }
+
+    @Test
+    void testForBatch_CapsBlocksUnderTheRulePolicy() {
+        List<MDMEntity> entities = List.of(
+                organizationWithEmail("0", "Acme Corporation", "a@acme.com"),
+                organizationWithEmail("1", "Acme Industries", "b@acme.com"),
+                organizationWithEmail("2", "Acme Holdings", "c@acme.com"),
+                organizationWithEmail("3", "Globex", "d@globex.com"));
+        MatchFeatures.prepare(entities);
+        MutablePropertySources sources = new MutablePropertySources();
+        sources.addFirst(new MapPropertySource("test", Map.of(
+                "mdm.matching.rules.EmailDomainMatch.max-block-size", "2",
+                "mdm.matching.rules.FuzzyNameMatch.max-block-size", "2",
+                "mdm.matching.rules.FuzzyNameMatch.sub-block-key", "name:5")));
+        List<BlockingKey> keys = BlockingKey.forBatch(entities,
+                BlockingKey.policies(new MatchingProperties(new PropertySourcesPropertyResolver(sources))));
+
+        // Three entities share @acme.com, so none of them gets a fact; the name prefix "acm" is sub-blocked
+        assertEquals(List.of("emailDomain=@globex.com@3"), keys(keys, BlockingKey.EMAIL_DOMAIN));
+        assertEquals(List.of("namePrefix=acm\u0000acmec@0", "namePrefix=acm\u0000acmei@1",
+                "namePrefix=acm\u0000acmeh@2", "namePrefix=glo@3"), keys(keys, BlockingKey.NAME_PREFIX));
+    }
+
+    private static List<String> keys(List<BlockingKey> keys, String kind) {
+        List<String> ofKind = new ArrayList<>();
+        for (BlockingKey key : keys) {
+            if (kind.equals(key.getKind())) {
+                ofKind.add(key.toString());
+            }
+        }
+        return ofKind;
+    }
+}
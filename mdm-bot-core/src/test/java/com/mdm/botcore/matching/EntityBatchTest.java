@@ -0,0 +1,66 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.mdm.botcore.TestEntities.organization;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityBatchTest {
+
+    @Test
+    void testStandardRules_ColumnarPredicatesAgreeWithEntityPredicates() {
+        Random random = new Random(5);
+        String[] names = {"Acme Corp", "ACME CORP", "Globex", "", null};
+        String[] addresses = {"123 Main Street", "123 MAIN STREET", "9 Elm", null};
+        String[] phones = {"555-123-4567", "(555) 123-4567", "555-1234", null};
+        String[] emails = {"a@acme.com", "b@ACME.com", "c@globex.com", "no-at-sign", null};
+        String[] types = {"Organization", "Person", null};
+
+        List<MDMEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            MDMEntity entity = new MDMEntity();
+            entity.setId(String.valueOf(i));
+            entity.setType(types[random.nextInt(types.length)]);
+            entity.setName(names[random.nextInt(names.length)]);
+            entity.setAddress(addresses[random.nextInt(addresses.length)]);
+            entity.setPhone(phones[random.nextInt(phones.length)]);
+            entity.setEmail(emails[random.nextInt(emails.length)]);
+            entities.add(entity);
+        }
+        MatchFeatures.prepare(entities);
+        EntityBatch batch = EntityBatch.of(entities);
+
+        for (PairRule rule : StandardPairRules.ALL) {
+            for (int i = 0; i < entities.size(); i++) {
+                assertEquals(rule.qualifies(entities.get(i)), rule.qualifies(batch, i), rule + " qualifies " + i);
+                for (int j = i + 1; j < entities.size(); j++) {
+                    assertEquals(rule.matches(entities.get(i), entities.get(j)), rule.matches(batch, i, j),
+                            rule + " matches " + i + "-" + j);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testNameColumn_IsDictionaryEncoded() {
+        MDMEntity e1 = organization(null, "Acme Corp");
+        MDMEntity e2 = organization(null, "ACME CORP");
+        MDMEntity e3 = organization(null, "Globex");
+        MDMEntity e4 = organization(null, null);
+        EntityBatch batch = EntityBatch.of(List.of(e1, e2, e3, e4));
+
+        assertEquals(2, batch.distinctNames());
+        assertEquals(batch.nameCode(0), batch.nameCode(1));
+        assertSame(batch.foldedName(0), batch.foldedName(1));
+        assertTrue(batch.sameName(0, 1));
+        assertFalse(batch.sameName(0, 2));
+        assertEquals(-1, batch.nameCode(3));
+        assertFalse(batch.sameName(3, 3));
+        assertSame(e3, batch.entity(2));
+    }
+}
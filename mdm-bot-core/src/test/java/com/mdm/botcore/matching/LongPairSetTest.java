@@ -0,0 +1,60 @@
+package com.mdm.botcore.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongPairSetTest {
+
+    @Test
+    void testAdd_UnorderedPairsInInsertionOrder() {
+        LongPairSet pairs = new LongPairSet();
+        assertTrue(pairs.add(3, 1));
+        assertFalse(pairs.add(1, 3));
+        assertTrue(pairs.add(0, 0));
+        assertTrue(pairs.add(Integer.MAX_VALUE, 0));
+
+        assertEquals(3, pairs.size());
+        assertEquals(0, pairs.indexOf(1, 3));
+        assertEquals(2, pairs.indexOf(0, Integer.MAX_VALUE));
+        assertEquals(-1, pairs.indexOf(1, 2));
+        assertEquals(1, LongPairSet.low(pairs.pairAt(0)));
+        assertEquals(3, LongPairSet.high(pairs.pairAt(0)));
+        assertThrows(IllegalArgumentException.class, () -> pairs.add(-1, 2));
+    }
+
+    @Test
+    void testAdd_AgreesWithHashSetAcrossResizes() {
+        Random random = new Random(3);
+        LongPairSet pairs = new LongPairSet();
+        Set<String> expected = new HashSet<>();
+        for (int k = 0; k < 20_000; k++) {
+            int a = random.nextInt(300);
+            int b = random.nextInt(300);
+            String key = Math.min(a, b) + "-" + Math.max(a, b);
+            assertEquals(expected.add(key), pairs.add(a, b));
+        }
+        assertEquals(expected.size(), pairs.size());
+        for (int index = 0; index < pairs.size(); index++) {
+            long pair = pairs.pairAt(index);
+            assertEquals(index, pairs.indexOf(LongPairSet.high(pair), LongPairSet.low(pair)));
+        }
+    }
+
+    @Test
+    void testComparisonBudget_ChargesDistinctPairsOnce() {
+        ComparisonBudget budget = new ComparisonBudget(2);
+        assertTrue(budget.tryCharge(0, 1));
+        assertTrue(budget.tryCharge(1, 0));
+        assertTrue(budget.tryCharge(0, 2));
+        assertFalse(budget.tryCharge(1, 2));
+        assertTrue(budget.tryCharge(2, 0), "Already charged pairs stay free");
+        assertEquals(2, budget.getCharged());
+        assertEquals(1, budget.getRefused());
+        assertTrue(new ComparisonBudget(0).tryCharge(5, 6));
+    }
+}
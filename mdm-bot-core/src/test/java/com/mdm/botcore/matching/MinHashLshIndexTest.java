@@ -0,0 +1,66 @@
+package com.mdm.botcore.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinHashLshIndexTest {
+
+    @Test
+    void testForEachPair_FindsSimilarNamesWithFewComparisons() {
+        Random random = new Random(7);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String base = randomWord(random, 8) + randomWord(random, 7) + "corporation";
+            names.add(base);
+            // A near-duplicate with a single substituted character
+            char[] typo = base.toCharArray();
+            typo[random.nextInt(typo.length)] = 'x';
+            names.add(new String(typo));
+        }
+
+        MinHashLshIndex<String> index = MinHashLshIndex.build(names, s -> s, 3, 16, 4);
+        Set<String> candidates = new HashSet<>();
+        long[] emitted = new long[1];
+        index.forEachPair((a, b) -> {
+            candidates.add(a + "|" + b);
+            emitted[0]++;
+        });
+
+        int duplicates = 0;
+        int found = 0;
+        for (int i = 0; i < names.size(); i += 2) {
+            if (!names.get(i).equals(names.get(i + 1))) {
+                duplicates++;
+                if (candidates.contains(names.get(i) + "|" + names.get(i + 1))) {
+                    found++;
+                }
+            }
+        }
+        assertTrue(found >= duplicates * 0.95, "Expected most near-duplicates as candidates, found " + found + " of " + duplicates);
+
+        MinHashLshIndex.LshReport report = index.report(0.8);
+        assertEquals(emitted[0], report.candidatePairs());
+        assertTrue(report.reductionRatio() > 0.95, "Expected LSH to prune most pairs: " + report);
+        assertEquals(index.candidateProbability(0.8), report.thresholdProbability());
+        assertTrue(report.thresholdProbability() > 0.9);
+    }
+
+    @Test
+    void testForEachPair_SkipsEmptyText() {
+        List<String> values = Arrays.asList("", null, "acme", "acme");
+        List<String> pairs = new ArrayList<>();
+        MinHashLshIndex.build(values, s -> s, 3, 4, 2).forEachPair((a, b) -> pairs.add(a + "|" + b));
+        assertEquals(Collections.singletonList("acme|acme"), pairs);
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,31 @@
+package com.mdm.botcore.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelPairMatcherTest {
+
+    @Test
+    void testCollect_ParallelResultKeepsSequentialOrder() {
+        Random random = new Random(3);
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            items.add("key" + random.nextInt(200));
+        }
+        BlockingIndex<String> index = BlockingIndex.build(items, s -> s);
+
+        List<String> sequential = ParallelPairMatcher.sequential().collect(index, (a, b) -> a + "|" + b);
+
+        ParallelPairMatcher parallel = new ParallelPairMatcher(4);
+        try {
+            List<String> parallelResult = parallel.collect(index, (a, b) -> a + "|" + b);
+            assertEquals(sequential, parallelResult);
+            assertFalse(sequential.isEmpty());
+        } finally {
+            parallel.shutdown();
+        }
+    }
+}
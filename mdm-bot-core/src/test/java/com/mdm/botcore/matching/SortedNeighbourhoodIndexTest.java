@@ -0,0 +1,50 @@
+package com.mdm.botcore.matching;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.mdm.botcore.TestEntities.organization;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortedNeighbourhoodIndexTest {
+
+    @Test
+    void testForEachPair_FindsNeighboursAcrossPasses() {
+        List<MDMEntity> entities = Arrays.asList(
+                organization("1", "Acme Corp", "555-000-1111"),
+                organization("2", "Zenith Labs", "555-000-2222"),
+                organization("3", "Acme Corporation", "555-999-3333"),
+                organization("4", "Beta Industries", "555-000-1111"),
+                organization("5", "Zenith Laboratories", null));
+
+        // Window 1 on the name pass pairs sorted neighbours; the phone pass adds 1-4
+        SortedNeighbourhoodIndex<MDMEntity> index = SortedNeighbourhoodIndex.build(
+                entities, SortKey.parseAll("name:4,phone:-4"), 1);
+
+        List<String> pairs = new ArrayList<>();
+        index.forEachPair((a, b) -> pairs.add(a.getId() + "-" + b.getId()));
+
+        assertTrue(pairs.contains("1-3"), "Acme Corp and Acme Corporation are name neighbours");
+        assertTrue(pairs.contains("2-5"), "Zenith Labs and Zenith Laboratories are name neighbours");
+        assertTrue(pairs.contains("1-4"), "Entities sharing a phone suffix are phone neighbours");
+        assertEquals(new HashSet<>(pairs).size(), pairs.size(), "Pairs found by several passes are emitted once");
+
+        List<String> sorted = new ArrayList<>(pairs);
+        sorted.sort(Comparator.comparingInt((String p) -> Integer.parseInt(p.split("-")[0]))
+                .thenComparingInt(p -> Integer.parseInt(p.split("-")[1])));
+        assertEquals(sorted, pairs, "Pairs follow anchor order");
+    }
+
+    @Test
+    void testSortKey_ParsesPrefixAndSuffixComponents() {
+        SortKey key = SortKey.parse("name:4+phone:-4");
+        assertEquals("acme4567", key.apply(organization("1", "ACME, Inc.", "(555) 123-4567")));
+        assertEquals("ab  4567", key.apply(organization("2", "Ab", "555-123-4567")));
+        assertNull(key.apply(organization("3", null, null)));
+        assertThrows(IllegalArgumentException.class, () -> SortKey.parse("nickname:3"));
+        IllegalArgumentException badLength = assertThrows(IllegalArgumentException.class, () -> SortKey.parse("name:four"));
+        assertTrue(badLength.getMessage().contains("sort-keys"), badLength.getMessage());
+    }
+}
@@ -0,0 +1,83 @@
+package com.mdm.botcore.matching;
+
+import java.util.Random;
+
+/**
+ * Microbenchmark for the similarity functions, comparing the bit-parallel Levenshtein distance
+ * with the classic two-row dynamic programming it replaced. Not part of the test suite; run with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mdm.botcore.matching.StringSimilarityBenchmark
+ * </pre>
+ */
+public class StringSimilarityBenchmark {
+
+    private static final int NAMES = 2_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        String[] names = new String[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            names[i] = randomName(random);
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.printf("Round %d%n", round + 1);
+            measure("levenshtein (bit-parallel)", names, StringSimilarity::levenshteinSimilarity);
+            measure("levenshtein (two-row DP)", names, StringSimilarityBenchmark::dynamicProgrammingSimilarity);
+            measure("levenshtein ignore case", names, StringSimilarity::levenshteinSimilarityIgnoreCase);
+            measure("jaro-winkler", names, StringSimilarity::jaroWinkler);
+            measure("trigram jaccard", names, (a, b) -> StringSimilarity.ngramJaccard(a, b, 3));
+        }
+    }
+
+    private interface Measure {
+        double apply(String a, String b);
+    }
+
+    private static void measure(String label, String[] names, Measure measure) {
+        long start = System.nanoTime();
+        double checksum = 0;
+        long pairs = 0;
+        for (int i = 0; i < names.length; i++) {
+            for (int j = i + 1; j < names.length; j++) {
+                checksum += measure.apply(names[i], names[j]);
+                pairs++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("  %-28s %8.1f ns/pair (checksum %.3f)%n", label, (double) elapsed / pairs, checksum);
+    }
+
+    // The previous implementation: two freshly allocated rows per comparison
+    private static double dynamicProgrammingSimilarity(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        int maxLength = Math.max(a.length(), b.length());
+        return maxLength == 0 ? 1.0 : 1.0 - (double) previous[b.length()] / maxLength;
+    }
+
+    private static String randomName(Random random) {
+        String[] suffixes = {" Inc", " Corporation", " Labs", " Global", " Pharma", ""};
+        StringBuilder name = new StringBuilder();
+        int length = 6 + random.nextInt(14);
+        for (int i = 0; i < length; i++) {
+            name.append((char) ((i == 0 ? 'A' : 'a') + random.nextInt(26)));
+        }
+        return name.append(suffixes[random.nextInt(suffixes.length)]).toString();
+    }
+}
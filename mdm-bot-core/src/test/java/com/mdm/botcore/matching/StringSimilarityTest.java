@@ -0,0 +1,77 @@
+package com.mdm.botcore.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringSimilarityTest {
+
+    @Test
+    void testLevenshteinDistance_BitParallelMatchesDynamicProgramming() {
+        Random random = new Random(11);
+        for (int round = 0; round < 2000; round++) {
+            String a = randomString(random, random.nextInt(80));
+            String b = randomString(random, random.nextInt(80));
+            assertEquals(referenceDistance(a, b), StringSimilarity.levenshteinDistance(a, b), a + " / " + b);
+        }
+        // Characters outside the bit-parallel alphabet fall back to the DP
+        assertEquals(1, StringSimilarity.levenshteinDistance("Z\u00fcrich\u4e2d", "Z\u00fcrich\u4e8c"));
+        assertEquals(3, StringSimilarity.levenshteinDistance("kitten", "sitting"));
+        assertEquals(5, StringSimilarity.levenshteinDistance("", "acme."));
+    }
+
+    @Test
+    void testIgnoreCaseVariants() {
+        assertEquals(1.0, StringSimilarity.levenshteinSimilarityIgnoreCase("ACME Corp", "acme corp"));
+        assertEquals(1.0, StringSimilarity.calculateSimilarity("Acme Corporation", "ACME CORPORATION"));
+        assertEquals(0.0, StringSimilarity.calculateSimilarity(null, "Acme"));
+        assertEquals(1.0, StringSimilarity.jaroWinklerIgnoreCase("Martha", "MARTHA"));
+        assertEquals(1.0, StringSimilarity.ngramJaccardIgnoreCase("Acme", "aCME", 3));
+    }
+
+    @Test
+    void testJaroWinkler_KnownValues() {
+        assertEquals(0.961, StringSimilarity.jaroWinkler("MARTHA", "MARHTA"), 0.001);
+        assertEquals(0.840, StringSimilarity.jaroWinkler("DWAYNE", "DUANE"), 0.001);
+        assertEquals(0.813, StringSimilarity.jaroWinkler("DIXON", "DICKSONX"), 0.001);
+        assertEquals(0.0, StringSimilarity.jaroWinkler("abc", "xyz"));
+    }
+
+    @Test
+    void testNgramJaccard() {
+        // Trigrams {acm, cme} vs {acm, cmi}: one shared of three distinct
+        assertEquals(1.0 / 3, StringSimilarity.ngramJaccard("acme", "acmi", 3), 1e-9);
+        assertEquals(1.0, StringSimilarity.ngramJaccard("ab", "ab", 3));
+        assertEquals(0.0, StringSimilarity.ngramJaccard("ab", "", 3));
+        // 4-grams differing only in the top bits of their first character are different grams
+        assertEquals(0.0, StringSimilarity.ngramJaccard("\u2041bcd", "Abcd", 4));
+        assertEquals(1.0, StringSimilarity.ngramJaccard("abcd", "abcd", 4));
+    }
+
+    private static int referenceDistance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            value.append((char) ('a' + random.nextInt(4)));
+        }
+        return value.toString();
+    }
+}
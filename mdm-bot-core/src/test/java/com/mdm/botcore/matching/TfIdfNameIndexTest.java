@@ -0,0 +1,43 @@
+package com.mdm.botcore.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TfIdfNameIndexTest {
+
+    @Test
+    void testForEachPair_StopTokensDoNotGenerateCandidates() {
+        List<String> names = Arrays.asList(
+            "Acme Global Labs Inc",
+            "ACME Labs, Inc.",
+            "Zenith Global Labs Inc",
+            "Orbit Global Labs Inc");
+
+        List<String> pairs = new ArrayList<>();
+        TfIdfNameIndex.build(names, s -> s, 0.5).forEachPairIndex(0, names.size(), (i, j) -> pairs.add(i + "|" + j));
+
+        // Only the two Acme names share an informative token
+        assertEquals(Collections.singletonList("0|1"), pairs);
+    }
+
+    @Test
+    void testCosine_RareTokensOutweighCommonOnes() {
+        List<String> names = Arrays.asList(
+            "Acme Pharma Corporation",
+            "Acme Pharma",
+            "Zenith Pharma Corporation",
+            "Orbit Pharma Corporation",
+            "Nova Pharma Corporation");
+        TfIdfNameIndex<String> index = TfIdfNameIndex.build(names, s -> s, 1.0);
+
+        double sameCompany = index.cosine(0, 1);
+        double sameSuffix = index.cosine(0, 2);
+        assertTrue(sameCompany > 0.8, "Expected high similarity, got " + sameCompany);
+        assertTrue(sameSuffix < 0.5, "Expected common tokens to carry little weight, got " + sameSuffix);
+        assertEquals(1.0, index.similarity("Acme Pharma", "ACME pharma"), 1e-9);
+        assertEquals(sameCompany, index.similarity(names.get(0), names.get(1)), 1e-9);
+    }
+}
@@ -0,0 +1,45 @@
+package com.mdm.botcore.matching;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKSelectorTest {
+
+    @Test
+    void testSelect_HubKeepsOnlyItsBestPairs() {
+        // Entity 0 is a hub matched with 1..6; 1 and 2 also match each other
+        int[] ordinals1 = {0, 0, 0, 0, 0, 0, 1};
+        int[] ordinals2 = {1, 2, 3, 4, 5, 6, 2};
+        double[] scores = {0.5, 0.9, 0.7, 0.9, 0.6, 0.8, 0.4};
+
+        TopKSelector.Result result = TopKSelector.select(7, ordinals1, ordinals2, scores, 3);
+
+        // The hub keeps 0-2 and 0-4 (0.9, earliest first) and 0-6 (0.8)
+        boolean[] expected = {false, true, false, true, false, true, true};
+        for (int p = 0; p < expected.length; p++) {
+            assertEquals(expected[p], result.isKept(p), "pair " + p);
+        }
+        assertEquals(4, result.getKeptCount());
+        assertEquals(3, result.getDroppedCount());
+        assertTrue(result.isOversized(0));
+        assertEquals(6, result.candidateCount(0));
+        assertFalse(result.isOversized(1));
+    }
+
+    @Test
+    void testSelect_TiesFavourEarlierPairsAndZeroKeepsAll() {
+        int[] ordinals1 = {0, 0, 0};
+        int[] ordinals2 = {1, 2, 3};
+        double[] scores = {1.0, 1.0, 1.0};
+
+        TopKSelector.Result limited = TopKSelector.select(4, ordinals1, ordinals2, scores, 2);
+        assertTrue(limited.isKept(0));
+        assertTrue(limited.isKept(1));
+        assertFalse(limited.isKept(2));
+
+        TopKSelector.Result unlimited = TopKSelector.select(4, ordinals1, ordinals2, scores, 0);
+        assertEquals(3, unlimited.getKeptCount());
+        assertFalse(unlimited.isOversized(0));
+    }
+}
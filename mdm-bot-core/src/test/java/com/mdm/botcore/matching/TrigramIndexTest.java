@@ -0,0 +1,58 @@
+package com.mdm.botcore.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+
+    @Test
+    void testForEachPair_OnlyPairsWithEnoughSharedTrigrams() {
+        List<String> addresses = Arrays.asList(
+            MatchKeys.normalizedAddress("123 Main Street, Springfield"),
+            MatchKeys.normalizedAddress("123 Main St., Springfeld"),
+            MatchKeys.normalizedAddress("9 Harbour View Road, Portsmouth"),
+            null,
+            MatchKeys.normalizedAddress("9 Harbor View Rd, Portsmouth"));
+
+        List<String> pairs = new ArrayList<>();
+        TrigramIndex.build(addresses, s -> s, 0.6).forEachPairIndex(0, addresses.size(), (i, j) -> pairs.add(i + "|" + j));
+
+        assertEquals(Arrays.asList("0|1", "2|4"), pairs);
+    }
+
+    @Test
+    void testForEachPair_MatchesAllPairsAtFullOverlapForIdenticalText() {
+        List<String> values = Arrays.asList("acme", "acme", "acne", "acme");
+        List<String> pairs = new ArrayList<>();
+        TrigramIndex.build(values, s -> s, 1.0).forEachPair((a, b) -> pairs.add(a + "|" + b));
+        assertEquals(Arrays.asList("acme|acme", "acme|acme", "acme|acme"), pairs);
+    }
+
+    @Test
+    void testUnion_EmitsEachPairOnceInAnchorOrderAcrossAnchorBlocks() {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            values.add("company " + (i % 1500));
+        }
+        TrigramIndex<String> trigrams = TrigramIndex.build(values, s -> s, 1.0);
+        List<Long> expected = new ArrayList<>();
+        trigrams.forEachPairIndex(0, values.size(), (i, j) -> expected.add(((long) i << 32) | j));
+
+        List<Long> pairs = new ArrayList<>();
+        new UnionCandidateIndex<>(List.of(trigrams, trigrams)).forEachPairIndex(0, values.size(),
+                (i, j) -> pairs.add(((long) i << 32) | j));
+
+        assertTrue(expected.size() >= 1500);
+        assertEquals(expected, pairs);
+    }
+
+    @Test
+    void testNormalizedAddress_AbbreviatesAndCollapsesPunctuation() {
+        assertEquals("123 main st", MatchKeys.normalizedAddress("123 Main Street"));
+        assertEquals("123 main st", MatchKeys.normalizedAddress("  123 MAIN ST. "));
+        assertEquals("", MatchKeys.normalizedAddress(null));
+    }
+}
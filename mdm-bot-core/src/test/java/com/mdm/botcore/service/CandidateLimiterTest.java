@@ -0,0 +1,61 @@
+package com.mdm.botcore.service;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.matching.LongPairSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mdm.botcore.TestEntities.entity;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CandidateLimiterTest {
+
+    @Test
+    void testLimitPerRule_ReportsOversizedBlocksAndKeepsOtherRules() {
+        MDMEntity hub = entity("HQ");
+        List<MergeService.MergeSuggestion> suggestions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            suggestions.add(new MergeService.MergeSuggestion(hub, entity("E" + i), "PhoneNumberMatch", "phones", null));
+        }
+        suggestions.add(new MergeService.MergeSuggestion(hub, entity("E0"), "ExactCompanyNameMatch", "names", null));
+        MatchStatistics statistics = new MatchStatistics("COMPANY_A", "lifescience");
+
+        List<MergeService.MergeSuggestion> kept = CandidateLimiter.limitPerRule(suggestions, new EntityOrdinals(),
+                rule -> "PhoneNumberMatch".equals(rule) ? 2 : 0, statistics);
+
+        assertEquals(List.of("E0", "E1", "E0"), kept.stream().map(s -> s.getEntity2().getId()).toList());
+        assertEquals(3, statistics.getDroppedSuggestions());
+        assertEquals(1, statistics.getOversizedBlockCount());
+        MatchStatistics.OversizedBlock block = statistics.getOversizedBlocks().get(0);
+        assertEquals("HQ", block.entityId());
+        assertEquals("PhoneNumberMatch", block.scope());
+        assertEquals(5, block.candidates());
+        assertEquals(2, block.limit());
+    }
+
+    @Test
+    void testLimit_RejectedPairDoesNotTakeTheTopKSlot() {
+        MDMEntity hub = entity("HQ");
+        List<MergeService.MergeSuggestion> suggestions = new ArrayList<>();
+        double[] scores = {0.9, 0.8, 0.7};
+        for (int i = 0; i < scores.length; i++) {
+            MergeService.MergeSuggestion suggestion =
+                    new MergeService.MergeSuggestion(hub, entity("E" + i), "FuzzyNameMatch", "names", null);
+            suggestion.setScore(scores[i]);
+            suggestions.add(suggestion);
+        }
+        // The reviewer rejected the best-scoring pair
+        EntityOrdinals ordinals = new EntityOrdinals();
+        LongPairSet rejected = new LongPairSet();
+        rejected.add(ordinals.of("HQ"), ordinals.of("E0"));
+        MatchStatistics statistics = new MatchStatistics("COMPANY_A", "lifescience");
+
+        List<SuggestionAggregator.PairSuggestions> pairs = CandidateLimiter.limit(suggestions, ordinals, rejected,
+                rule -> 1, 1, statistics);
+
+        assertEquals(List.of("E1"), pairs.stream().map(p -> p.getEntity2().getId()).toList());
+        assertEquals(1, statistics.getDroppedSuggestions());
+    }
+}
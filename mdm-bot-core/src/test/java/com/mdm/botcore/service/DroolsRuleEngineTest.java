@@ -0,0 +1,234 @@
+package com.mdm.botcore.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mdm.botcore.config.DroolsConfig;
+import com.mdm.botcore.config.KieBaseCache;
+import com.mdm.botcore.config.MatchingProperties;
+import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.config.PooledKieBase;
+import com.mdm.botcore.matching.BlockingKey;
+import com.mdm.botcore.matching.MatchFeatures;
+import org.junit.jupiter.api.Test;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.AgendaEventListener;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.mdm.botcore.TestEntities.organization;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DroolsRuleEngineTest {
+
+    static final String EXACT_NAME_RULE = """
+            package com.mdm.rules;
+
+            import com.mdm.botcore.domain.model.MDMEntity;
+
+            global java.util.List mergeSuggestions;
+            global com.fasterxml.jackson.databind.ObjectMapper objectMapper;
+
+            rule "ExactCompanyNameMatch"
+            when
+                $entity1 : MDMEntity(type == "Organization", name != null)
+                $entity2 : MDMEntity(type == "Organization", id > $entity1.id, matchFeatures.foldedName == $entity1.matchFeatures.foldedName)
+            then
+                mergeSuggestions.add(new com.mdm.botcore.service.MergeService.MergeSuggestion($entity1, $entity2,
+                        "ExactCompanyNameMatch", "Company names match exactly: " + $entity1.getName(), null));
+            end
+            """;
+
+    private static final String KEY_JOIN_RULE = """
+            package com.mdm.rules;
+
+            import com.mdm.botcore.domain.model.MDMEntity;
+            import com.mdm.botcore.matching.BlockingKey;
+
+            global java.util.List mergeSuggestions;
+            global com.fasterxml.jackson.databind.ObjectMapper objectMapper;
+
+            rule "PhoneNumberMatch"
+            when
+                $key1 : BlockingKey(kind == "phone")
+                $key2 : BlockingKey(kind == "phone", value == $key1.value, position > $key1.position)
+                $entity1 : MDMEntity() from $key1.entity
+                $entity2 : MDMEntity() from $key2.entity
+            then
+                mergeSuggestions.add(new com.mdm.botcore.service.MergeService.MergeSuggestion($entity1, $entity2,
+                        "PhoneNumberMatch", "Phone numbers match: " + $key1.getValue(), null));
+            end
+            """;
+
+    @Test
+    void testProcessEntities_JoinsOnBlockingKeysOncePerPair() {
+        KieBaseCache cache = new DroolsConfig(false).kieBaseCache(4, 60, 1, 1, 4);
+        RuleSetManager ruleSetManager = new RuleSetManager(cache, new ObjectMapper(), 1);
+        DroolsRuleEngine engine = new DroolsRuleEngine(ruleSetManager, new ObjectMapper());
+        MDMEntity first = organization("1", "Acme");
+        first.setPhone("(555) 123-4567");
+        MDMEntity second = organization("2", "Acme Corp");
+        second.setPhone("555.123.4567");
+        MDMEntity shortPhone = organization("3", "Globex");
+        shortPhone.setPhone("5551234");
+
+        List<MergeService.MergeSuggestion> suggestions = engine.processEntities(
+                List.of(first, second, shortPhone), List.of(KEY_JOIN_RULE));
+
+        // Digits-only keys match across formats; the short phone has no key
+        assertEquals(1, suggestions.size());
+        assertSame(first, suggestions.get(0).getEntity1());
+        assertSame(second, suggestions.get(0).getEntity2());
+        ruleSetManager.shutdown();
+        cache.close();
+    }
+
+    @Test
+    void testProcessEntities_PartitionedFindsTheSamePairs() {
+        KieBaseCache cache = new DroolsConfig(false).kieBaseCache(4, 60, 1, 4, 4);
+        RuleSetManager ruleSetManager = new RuleSetManager(cache, new ObjectMapper(), 1);
+        DroolsRuleEngine single = new DroolsRuleEngine(ruleSetManager, new ObjectMapper());
+        DroolsPartitionExecutor partitionExecutor = new DroolsPartitionExecutor(4);
+        DroolsRuleEngine partitioned = new DroolsRuleEngine(ruleSetManager, new ObjectMapper(),
+                MatchingProperties.defaults(), partitionExecutor, true, BlockingKey.PHONE);
+        Random random = new Random(7);
+        List<MDMEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            MDMEntity entity = organization(String.valueOf(i), "Company " + i);
+            entity.setPhone("555-123-" + (1000 + random.nextInt(60)));
+            entities.add(entity);
+        }
+
+        Set<String> expected = pairs(single.processEntities(entities, List.of(KEY_JOIN_RULE)));
+        List<MergeService.MergeSuggestion> suggestions = partitioned.processEntities(entities, List.of(KEY_JOIN_RULE));
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.size(), suggestions.size());
+        assertEquals(expected, pairs(suggestions));
+        partitionExecutor.shutdown();
+        ruleSetManager.shutdown();
+        cache.close();
+    }
+
+    @Test
+    void testProcessEntities_PartitionedFiresSelfJoinsWhole() {
+        KieBaseCache cache = new DroolsConfig(false).kieBaseCache(4, 60, 1, 4, 4);
+        RuleSetManager ruleSetManager = new RuleSetManager(cache, new ObjectMapper(), 1);
+        DroolsPartitionExecutor partitionExecutor = new DroolsPartitionExecutor(4);
+        DroolsRuleEngine partitioned = new DroolsRuleEngine(ruleSetManager, new ObjectMapper(),
+                MatchingProperties.defaults(), partitionExecutor, true, BlockingKey.PHONE);
+        // Equal names on different phones fall into different phone partitions
+        MDMEntity acme = organization("1", "Acme");
+        acme.setPhone("555-123-1000");
+        MDMEntity acmeUpper = organization("2", "ACME");
+        acmeUpper.setPhone("555-123-2000");
+        MDMEntity globex = organization("3", "Globex");
+        globex.setPhone("555-123-1000");
+
+        List<MergeService.MergeSuggestion> suggestions = partitioned.processEntities(
+                List.of(acme, acmeUpper, globex), List.of(KEY_JOIN_RULE, EXACT_NAME_RULE));
+
+        assertEquals(Set.of("1-2", "1-3"), pairs(suggestions));
+        assertTrue(DroolsRuleEngine.joinsOnBlockingKeys(List.of(KEY_JOIN_RULE)));
+        assertFalse(DroolsRuleEngine.joinsOnBlockingKeys(List.of(KEY_JOIN_RULE, EXACT_NAME_RULE)));
+        partitionExecutor.shutdown();
+        ruleSetManager.shutdown();
+        cache.close();
+    }
+
+    @Test
+    void testPartitionExecutor_UncappedSessionsUseTheAvailableProcessors() {
+        DroolsPartitionExecutor partitionExecutor = new DroolsPartitionExecutor(0);
+
+        assertEquals(Runtime.getRuntime().availableProcessors(), partitionExecutor.getThreads());
+        partitionExecutor.shutdown();
+    }
+
+    @Test
+    void testShippedGlobalRules_MatchTheExpectedPairs() throws IOException {
+        // The numbered rules in test/global-rules only log in their consequence, so matches are read from the agenda
+        List<String> rules = new ArrayList<>();
+        for (String file : List.of("01-exact-company-name.json", "02-address-based.json", "03-phone-number.json",
+                "04-email-domain.json", "05-fuzzy-name.json")) {
+            rules.add(new ObjectMapper().readTree(Files.readString(Path.of("../test/global-rules", file)))
+                    .get("ruleLogic").asText());
+        }
+        MDMEntity acme = organization("1", "Acme Pharma Group");
+        acme.setPhone("(555) 123-4567");
+        acme.setEmail("info@acme.com");
+        acme.setAddress("1 Main Street, Springfield");
+        MDMEntity acmeUpper = organization("2", "ACME PHARMA GROUP");
+        acmeUpper.setPhone("555.123.4567");
+        acmeUpper.setEmail("sales@acme.com");
+        MDMEntity theAcme = organization("3", "The Acme Pharma Group");
+        theAcme.setAddress("1 Main Street, Springfield");
+        theAcme.setEmail("a@gmail.com");
+        MDMEntity globex = organization("4", "Globex");
+        globex.setEmail("b@gmail.com");
+        List<MDMEntity> entities = List.of(acme, acmeUpper, theAcme, globex);
+        MatchFeatures.prepare(entities);
+
+        KieBaseCache cache = new DroolsConfig(false).kieBaseCache(4, 60, 1, 1, 4);
+        PooledKieBase kieBase = cache.get(rules);
+        Set<String> matches = new TreeSet<>();
+        AgendaEventListener listener = new DefaultAgendaEventListener() {
+            @Override
+            public void afterMatchFired(AfterMatchFiredEvent event) {
+                String id1 = ((MDMEntity) event.getMatch().getDeclarationValue("$entity1")).getId();
+                String id2 = ((MDMEntity) event.getMatch().getDeclarationValue("$entity2")).getId();
+                matches.add(event.getMatch().getRule().getName() + ":" + (id1.compareTo(id2) < 0 ? id1 + "-" + id2 : id2 + "-" + id1));
+            }
+        };
+        kieBase.execute(kieSession -> {
+            kieSession.addEventListener(listener);
+            entities.forEach(kieSession::insert);
+            BlockingKey.forBatch(entities).forEach(kieSession::insert);
+            kieSession.fireAllRules();
+            kieSession.removeEventListener(listener);
+        });
+
+        // Free-mail domains are stop keys; the fuzzy rule also pairs names that differ in their first letters
+        assertEquals(Set.of("AddressBasedMatch:1-3", "EmailDomainMatch:1-2", "ExactCompanyNameMatch:1-2",
+                "FuzzyNameMatch:1-2", "FuzzyNameMatch:1-3", "FuzzyNameMatch:2-3", "PhoneNumberMatch:1-2"), matches);
+        cache.close();
+    }
+
+    private static Set<String> pairs(List<MergeService.MergeSuggestion> suggestions) {
+        Set<String> pairs = new HashSet<>();
+        for (MergeService.MergeSuggestion suggestion : suggestions) {
+            pairs.add(suggestion.getEntity1().getId() + "-" + suggestion.getEntity2().getId());
+        }
+        return pairs;
+    }
+
+    @Test
+    void testProcessEntities_ReusesPooledSessionsWithoutLeakingFacts() {
+        KieBaseCache cache = new DroolsConfig(false).kieBaseCache(4, 60, 1, 1, 4);
+        RuleSetManager ruleSetManager = new RuleSetManager(cache, new ObjectMapper(), 1);
+        DroolsRuleEngine engine = new DroolsRuleEngine(ruleSetManager, new ObjectMapper());
+        List<String> rules = List.of(EXACT_NAME_RULE);
+
+        for (int batch = 0; batch < 3; batch++) {
+            List<MergeService.MergeSuggestion> suggestions = engine.processEntities(List.of(
+                    organization(batch + "-1", "Acme Corp " + batch),
+                    organization(batch + "-2", "ACME CORP " + batch),
+                    organization(batch + "-3", "Globex")), rules);
+
+            // Only this batch's pair: facts of earlier batches were reset with their session
+            assertEquals(1, suggestions.size());
+            assertEquals(batch + "-1", suggestions.get(0).getEntity1().getId());
+            assertEquals(batch + "-2", suggestions.get(0).getEntity2().getId());
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        ruleSetManager.shutdown();
+        cache.close();
+    }
+}
@@ -0,0 +1,63 @@
+package com.mdm.botcore.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mdm.botcore.config.MatchingProperties;
+import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.matching.ParallelPairMatcher;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EasyRulesRuleEngineTest {
+
+    @Test
+    void testProcessEntities_FusedMatchesSequential() {
+        Random random = new Random(11);
+        String[] names = {"Acme Corp", "ACME CORP", "Globex", "Initech", null};
+        String[] addresses = {"123 Main Street", "123 MAIN STREET", "9 Elm", null};
+        String[] phones = {"555-123-4567", "(555) 123-4567", "555-987-6543", null};
+        // Free-mail domains are stop keys of EmailDomainMatch, but their entities still share phones and names
+        String[] emails = {"a@acme.com", "b@acme.com", "c@globex.com", "d@gmail.com", "e@GMAIL.com", null};
+
+        List<MDMEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            MDMEntity entity = new MDMEntity();
+            entity.setId(String.valueOf(i));
+            entity.setType(random.nextBoolean() ? "Organization" : "Person");
+            entity.setName(names[random.nextInt(names.length)]);
+            entity.setAddress(addresses[random.nextInt(addresses.length)]);
+            entity.setPhone(phones[random.nextInt(phones.length)]);
+            entity.setEmail(emails[random.nextInt(emails.length)]);
+            entities.add(entity);
+        }
+
+        List<String> fused = describe(engine(true).processEntities(entities, Collections.emptyList()));
+        List<String> sequential = describe(engine(false).processEntities(entities, Collections.emptyList()));
+
+        assertFalse(sequential.isEmpty());
+        assertTrue(fused.stream().noneMatch(s -> s.startsWith("EmailDomainMatch:") && s.toLowerCase().contains("gmail")),
+                "A pair from another rule's block must not match EmailDomainMatch on a stop key");
+        assertEquals(sequential, fused, "Fused evaluation must produce the same suggestions in the same order");
+    }
+
+    private static EasyRulesRuleEngine engine(boolean fused) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("mdm.matching.fused-evaluation", String.valueOf(fused));
+        MutablePropertySources propertySources = new MutablePropertySources();
+        propertySources.addFirst(new MapPropertySource("test", properties));
+        return new EasyRulesRuleEngine(new ObjectMapper(),
+                new MatchingProperties(new PropertySourcesPropertyResolver(propertySources)), ParallelPairMatcher.sequential());
+    }
+
+    private static List<String> describe(List<MergeService.MergeSuggestion> suggestions) {
+        return suggestions.stream()
+                .map(s -> s.getRuleName() + ":" + s.getEntity1().getId() + "-" + s.getEntity2().getId() + ":" + s.getReasoningJson())
+                .collect(Collectors.toList());
+    }
+}
@@ -1,8 +1,13 @@
 package com.mdm.botcore.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mdm.botcore.config.MatchingProperties;
 import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.matching.ParallelPairMatcher;
 import org.junit.jupiter.api.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
 
 import java.util.*;
 
@@ -52,4 +57,94 @@ class RuleBookRuleEngineTest {
         );
         assertFalse(foundWrongMatch, "Should not match unrelated entities");
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testProcessEntities_FuzzyNameMatchWhenEnabled() {
+        RuleBookRuleEngine engine = engine(Map.of(
+            "mdm.matching.rules.FuzzyNameMatch.enabled", "true",
+            "mdm.matching.rules.FuzzyNameMatch.window", "2"));
+
+        MDMEntity e1 = new MDMEntity();
+        e1.setId("1");
+        e1.setType("Organization");
+        e1.setName("Acme Corporation");
+
+        MDMEntity e2 = new MDMEntity();
+        e2.setId("2");
+        e2.setType("Organization");
+        e2.setName("Acme Corporaton");
+
+        MDMEntity e3 = new MDMEntity();
+        e3.setId("3");
+        e3.setType("Organization");
+        e3.setName("Different Company");
+
+        List<MergeService.MergeSuggestion> suggestions = engine.processEntities(Arrays.asList(e1, e2, e3), Collections.emptyList());
+
+        List<MergeService.MergeSuggestion> fuzzy = suggestions.stream()
+            .filter(s -> "FuzzyNameMatch".equals(s.getRuleName()))
+            .toList();
+        assertEquals(1, fuzzy.size(), "Only the misspelled name should fuzzy-match");
+        assertEquals("1", fuzzy.get(0).getEntity1().getId());
+        assertEquals("2", fuzzy.get(0).getEntity2().getId());
+    }
+
+    @Test
+    void testProcessEntities_FuzzyAddressMatchWhenEnabled() {
+        RuleBookRuleEngine engine = engine(Map.of("mdm.matching.rules.FuzzyAddressMatch.enabled", "true"));
+
+        MDMEntity e1 = new MDMEntity();
+        e1.setId("1");
+        e1.setAddress("123 Main Street");
+
+        MDMEntity e2 = new MDMEntity();
+        e2.setId("2");
+        e2.setAddress("123 Main St.");
+
+        MDMEntity e3 = new MDMEntity();
+        e3.setId("3");
+        e3.setAddress("77 Harbour View Road");
+
+        List<MergeService.MergeSuggestion> suggestions = engine.processEntities(Arrays.asList(e1, e2, e3), Collections.emptyList());
+
+        assertTrue(suggestions.stream().noneMatch(s -> "AddressMatch".equals(s.getRuleName())),
+            "Exact address matching should not catch the abbreviation");
+        List<MergeService.MergeSuggestion> fuzzy = suggestions.stream()
+            .filter(s -> "FuzzyAddressMatch".equals(s.getRuleName()))
+            .toList();
+        assertEquals(1, fuzzy.size());
+        assertEquals("1", fuzzy.get(0).getEntity1().getId());
+        assertEquals("2", fuzzy.get(0).getEntity2().getId());
+    }
+
+    @Test
+    void testProcessEntities_FuzzyNameMatchWithTfIdfCosine() {
+        RuleBookRuleEngine engine = engine(Map.of(
+            "mdm.matching.rules.FuzzyNameMatch.enabled", "true",
+            "mdm.matching.rules.FuzzyNameMatch.similarity", "tfidf-cosine"));
+
+        List<MDMEntity> entities = new ArrayList<>();
+        String[] names = {"Acme Biologics Inc", "ACME Biologics", "Zenith Biotech Inc", "Orbit Biotech Inc"};
+        for (int i = 0; i < names.length; i++) {
+            MDMEntity entity = new MDMEntity();
+            entity.setId(String.valueOf(i + 1));
+            entity.setType("Organization");
+            entity.setName(names[i]);
+            entities.add(entity);
+        }
+
+        List<MergeService.MergeSuggestion> fuzzy = engine.processEntities(entities, Collections.emptyList()).stream()
+            .filter(s -> "FuzzyNameMatch".equals(s.getRuleName()))
+            .toList();
+        assertEquals(1, fuzzy.size(), "Names sharing only legal forms or common words should not match");
+        assertEquals("1", fuzzy.get(0).getEntity1().getId());
+        assertEquals("2", fuzzy.get(0).getEntity2().getId());
+    }
+
+    private static RuleBookRuleEngine engine(Map<String, Object> properties) {
+        MutablePropertySources propertySources = new MutablePropertySources();
+        propertySources.addFirst(new MapPropertySource("test", properties));
+        return new RuleBookRuleEngine(new ObjectMapper(),
+            new MatchingProperties(new PropertySourcesPropertyResolver(propertySources)), ParallelPairMatcher.sequential());
+    }
+}
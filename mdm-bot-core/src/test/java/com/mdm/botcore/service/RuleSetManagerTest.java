@@ -0,0 +1,53 @@
+package com.mdm.botcore.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mdm.botcore.config.DroolsConfig;
+import com.mdm.botcore.config.KieBaseCache;
+import com.mdm.botcore.config.PooledKieBase;
+import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.matching.MatchFeatures;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.mdm.botcore.TestEntities.organization;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleSetManagerTest {
+
+    @Test
+    void testAcquire_ServesActiveVersionWhileNewVersionCompiles() throws InterruptedException {
+        KieBaseCache cache = new DroolsConfig(false).kieBaseCache(4, 60, 1, 1, 4);
+        RuleSetManager manager = new RuleSetManager(cache, new ObjectMapper(), 1);
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String> v1 = List.of(DroolsRuleEngineTest.EXACT_NAME_RULE);
+        List<String> v2 = List.of(DroolsRuleEngineTest.EXACT_NAME_RULE.replace("ExactCompanyNameMatch", "NameMatchV2"));
+
+        // The first version has nothing to fall back on and compiles on the calling thread
+        PooledKieBase first = manager.acquire("COMPANY_A", "lifescience", RuleLayers.flat(v1));
+        assertEquals(1, manager.getVersions().get(0).version());
+
+        // Changed rules: the active version keeps serving while the new one compiles
+        assertSame(first, manager.acquire("COMPANY_A", "lifescience", RuleLayers.flat(v2)));
+
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (manager.getVersions().get(0).version() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        RuleSetManager.RuleSetVersion version = manager.getVersions().get(0);
+        assertEquals(2, version.version());
+        assertEquals(KieBaseCache.fingerprint(v2), version.fingerprint());
+        assertNull(version.pendingFingerprint());
+
+        PooledKieBase second = manager.acquire("COMPANY_A", "lifescience", RuleLayers.flat(v2));
+        assertNotSame(first, second);
+        List<MDMEntity> entities = List.of(organization("1", "Acme Corp"),
+                organization("2", "ACME CORP"));
+        MatchFeatures.prepare(entities);
+        List<MergeService.MergeSuggestion> suggestions = DroolsRuleEngine.fire(second, entities, objectMapper);
+        assertEquals("NameMatchV2", suggestions.get(0).getRuleName());
+
+        manager.shutdown();
+        cache.close();
+    }
+}
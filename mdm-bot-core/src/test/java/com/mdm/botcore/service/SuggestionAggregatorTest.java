@@ -0,0 +1,53 @@
+package com.mdm.botcore.service;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+import com.mdm.botcore.matching.LongPairSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.mdm.botcore.TestEntities.entity;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuggestionAggregatorTest {
+
+    @Test
+    void testAggregate_GroupsRulesPerUnorderedPair() {
+        MDMEntity a = entity("A");
+        MDMEntity b = entity("B");
+        MDMEntity c = entity("C");
+
+        List<MergeService.MergeSuggestion> suggestions = Arrays.asList(
+                new MergeService.MergeSuggestion(a, b, "ExactCompanyNameMatch", "names", null),
+                new MergeService.MergeSuggestion(a, c, "PhoneNumberMatch", "phones", null),
+                new MergeService.MergeSuggestion(b, a, "PhoneNumberMatch", "phones", null),
+                new MergeService.MergeSuggestion(a, b, "PhoneNumberMatch", "phones again", null));
+
+        List<SuggestionAggregator.PairSuggestions> pairs = SuggestionAggregator.aggregate(suggestions);
+
+        assertEquals(2, pairs.size());
+        SuggestionAggregator.PairSuggestions ab = pairs.get(0);
+        assertEquals("A", ab.getEntity1().getId());
+        assertEquals("B", ab.getEntity2().getId());
+        assertEquals(Arrays.asList("ExactCompanyNameMatch", "PhoneNumberMatch"), ab.getRuleNames());
+        assertEquals(Collections.singletonList("PhoneNumberMatch"), pairs.get(1).getRuleNames());
+    }
+
+    @Test
+    void testAggregate_SkipsExcludedPairs() {
+        MDMEntity a = entity("A");
+        MDMEntity b = entity("B");
+        MDMEntity c = entity("C");
+        EntityOrdinals ordinals = new EntityOrdinals();
+        LongPairSet rejected = new LongPairSet();
+        rejected.add(ordinals.of("B"), ordinals.of("A"));
+
+        List<SuggestionAggregator.PairSuggestions> pairs = SuggestionAggregator.aggregate(Arrays.asList(
+                new MergeService.MergeSuggestion(a, b, "PhoneNumberMatch", "phones", null),
+                new MergeService.MergeSuggestion(c, a, "PhoneNumberMatch", "phones", null)), ordinals, rejected);
+
+        assertEquals(1, pairs.size());
+        assertEquals("C", pairs.get(0).getEntity1().getId());
+        assertEquals(3, ordinals.size());
+    }
+}
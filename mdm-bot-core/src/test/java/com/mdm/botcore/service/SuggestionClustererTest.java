@@ -0,0 +1,52 @@
+package com.mdm.botcore.service;
+
+import com.mdm.botcore.domain.model.MDMEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static com.mdm.botcore.TestEntities.organization;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuggestionClustererTest {
+
+    @Test
+    void testCluster_ConnectedPairsFormOneGroup() {
+        MDMEntity a = organization("A", "Acme Corp", "555-123-4567");
+        MDMEntity b = organization("B", "ACME Corporation", "555-123-4567");
+        MDMEntity c = organization("C", "ACME Corporation", null);
+        MDMEntity d = organization("D", "Zenith Labs", null);
+        MDMEntity e = organization("E", "Zenith Labs", null);
+
+        List<MergeService.MergeSuggestion> suggestions = Arrays.asList(
+                new MergeService.MergeSuggestion(a, b, "PhoneNumberMatch", "phones", null),
+                new MergeService.MergeSuggestion(d, e, "ExactCompanyNameMatch", "names", null),
+                new MergeService.MergeSuggestion(b, c, "ExactCompanyNameMatch", "names", null),
+                new MergeService.MergeSuggestion(a, c, "FuzzyNameMatch", "similar", null));
+
+        List<SuggestionClusterer.EntityCluster> clusters =
+                SuggestionClusterer.cluster(SuggestionAggregator.aggregate(suggestions));
+
+        assertEquals(2, clusters.size());
+        SuggestionClusterer.EntityCluster abc = clusters.get(0);
+        assertEquals(Arrays.asList("A", "B", "C"), abc.getMemberIds());
+        assertEquals(3, abc.getPairs().size());
+        assertEquals(Arrays.asList("PhoneNumberMatch", "ExactCompanyNameMatch", "FuzzyNameMatch"), abc.getRuleNames());
+        assertEquals(Arrays.asList("D", "E"), clusters.get(1).getMemberIds());
+
+        // Survivorship: the majority name wins, missing values are filled from other members
+        MDMEntity golden = abc.getGoldenRecord();
+        assertEquals("A-B-C", golden.getId());
+        assertEquals("ACME Corporation", golden.getName());
+        assertEquals("555-123-4567", golden.getPhone());
+        assertEquals("Organization", golden.getType());
+    }
+
+    @Test
+    void testGoldenRecord_TieGoesToFirstMember() {
+        MDMEntity golden = Survivorship.goldenRecord(Arrays.asList(
+                organization("1", "Acme Corp", null), organization("2", "Acme Corporation", "555-000-1111")));
+        assertEquals("Acme Corp", golden.getName());
+        assertEquals("555-000-1111", golden.getPhone());
+    }
+}
@@ -1,6 +1,7 @@
 package com.mdm.globalrules.api;
 
 import com.mdm.globalrules.domain.model.CompanyMergeRule;
+import com.mdm.globalrules.service.EffectiveRuleLayers;
 import com.mdm.globalrules.service.RuleManagementService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -74,6 +75,22 @@ public class CompanyRuleController {
         return new ResponseEntity<>(effectiveRules, HttpStatus.OK);
     }
 
+    /**
+     * Retrieves the effective rules of a company and domain split into the domain's global rules
+     * and the company's own rules, so that the bot can compile the global layer once for all
+     * companies of the domain.
+     * @param companyId The ID of the company.
+     * @param domain The domain (e.g., "lifescience").
+     * @return ResponseEntity with the rule layers and the flat effective rule set.
+     */
+    @GetMapping("/effective/{companyId}/{domain}/layers")
+    public ResponseEntity<EffectiveRuleLayers> getEffectiveRuleLayersForCompany(
+            @PathVariable String companyId,
+            @PathVariable String domain) {
+        EffectiveRuleLayers layers = ruleManagementService.getEffectiveRuleLayersForCompany(companyId, domain);
+        return new ResponseEntity<>(layers, HttpStatus.OK);
+    }
+
     /**
      * Updates an existing company-specific merge rule.
      * @param id The ID of the rule to update.
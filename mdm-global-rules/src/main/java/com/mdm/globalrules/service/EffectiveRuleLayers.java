@@ -0,0 +1,17 @@
+package com.mdm.globalrules.service;
+
+import java.util.List;
+
+/**
+ * The effective rules of a company and domain, split into the layer shared by the domain's
+ * companies and the company's own rules, so the bot can compile the shared layer once.
+ *
+ * @param globalRules DRLs of the domain's active global rules. A company rule replaces the global
+ *                    rule it shadows by declaring the same rule name in the same DRL package; when
+ *                    a shadowed rule is not replaced that way, this holds only the global rules
+ *                    that are in effect for the company.
+ * @param companyRules DRLs of the company's active rules.
+ * @param effectiveRules The flat effective rule set, as returned by the effective rules endpoint.
+ */
+public record EffectiveRuleLayers(List<String> globalRules, List<String> companyRules, List<String> effectiveRules) {
+}
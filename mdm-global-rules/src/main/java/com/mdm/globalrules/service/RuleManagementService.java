@@ -13,6 +13,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -23,6 +25,8 @@ import java.util.stream.Collectors;
 @Service
 public class RuleManagementService {
 
+    private static final Pattern DRL_PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)", Pattern.MULTILINE);
+
     private final GlobalMergeRuleRepository globalMergeRuleRepository;
     private final CompanyMergeRuleRepository companyMergeRuleRepository;
 
@@ -204,4 +208,44 @@ public class RuleManagementService {
         // For Drools, the priority is often handled by the `salience` attribute within the DRL.
         return effectiveRuleLogics;
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves the effective rules of a company and domain split into layers: the domain's global
+     * rules, shared by every company of the domain, and the company's own rules on top of them.
+     *
+     * A global rule is shadowed by a company rule of the same name (see
+     * {@link #getEffectiveRulesForCompany(String, String)}). When every shadowing company rule
+     * declares that rule name in the global rule's DRL package, loading the company rules after the
+     * global ones replaces the shadowed rules, and the global layer is the domain's full global rule
+     * set. Otherwise the global layer holds only the global rules in effect for the company.
+     *
+     * @param companyId The ID of the company.
+     * @param domain The domain (e.g., "lifescience").
+     * @return The rule layers together with the flat effective rule set.
+     */
+    @Transactional(readOnly = true)
+    public EffectiveRuleLayers getEffectiveRuleLayersForCompany(String companyId, String domain) {
+        List<GlobalMergeRule> globalRules = globalMergeRuleRepository.findByDomainAndActiveOrderByPriorityDesc(domain, true);
+        List<CompanyMergeRule> companyRules = companyMergeRuleRepository.findByCompanyIdAndActiveOrderByPriorityDesc(companyId, true);
+        List<String> effectiveRules = getEffectiveRulesForCompany(companyId, domain);
+
+        List<String> companyLayer = companyRules.stream().map(CompanyMergeRule::getRuleLogic).collect(Collectors.toList());
+        boolean replacedInPlace = globalRules.stream().allMatch(globalRule -> companyRules.stream()
+                .filter(rule -> rule.getRuleName().equals(globalRule.getRuleName()))
+                .allMatch(rule -> declaresRule(rule.getRuleLogic(), drlPackage(globalRule.getRuleLogic()), globalRule.getRuleName())));
+        List<String> globalLayer = replacedInPlace
+                ? globalRules.stream().map(GlobalMergeRule::getRuleLogic).collect(Collectors.toList())
+                : effectiveRules.subList(companyLayer.size(), effectiveRules.size());
+        return new EffectiveRuleLayers(globalLayer, companyLayer, effectiveRules);
+    }
+
+    private static String drlPackage(String drl) {
+        Matcher matcher = DRL_PACKAGE.matcher(drl);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    private static boolean declaresRule(String drl, String drlPackage, String ruleName) {
+        return drlPackage.equals(drlPackage(drl))
+                && Pattern.compile("^\\s*rule\\s+\"?" + Pattern.quote(ruleName) + "\"?\\s", Pattern.MULTILINE).matcher(drl).find();
+    }
+}